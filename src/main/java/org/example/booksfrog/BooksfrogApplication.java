@@ -2,8 +2,10 @@ package org.example.booksfrog;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class BooksfrogApplication {
 
     public static void main(String[] args) {
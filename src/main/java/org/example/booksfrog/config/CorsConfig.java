@@ -18,9 +18,13 @@ public class CorsConfig {
         corsConfiguration.setAllowedOrigins(List.of("http://localhost:4200"));
         corsConfiguration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS"));
         corsConfiguration.setAllowedHeaders(Arrays.asList(
-                "Authorization", "Cache-Control", "Content-Type", "Access-Control-Allow-Origin", "Access-Control-Allow-Headers"
+                "Authorization", "Cache-Control", "Content-Type", "Access-Control-Allow-Origin", "Access-Control-Allow-Headers",
+                "If-None-Match", "Range", "If-Range"
         ));
-        corsConfiguration.setExposedHeaders(Arrays.asList("Authorization", "Access-Control-Allow-Origin")); // Expose the necessary headers
+        corsConfiguration.setExposedHeaders(Arrays.asList(
+                "Authorization", "Access-Control-Allow-Origin", "ETag", "X-Total-Pages",
+                "Accept-Ranges", "Content-Range", "Content-Length"
+        )); // Expose the necessary headers
         corsConfiguration.setAllowCredentials(true); // Ensure cookies and authorization headers are included
 
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
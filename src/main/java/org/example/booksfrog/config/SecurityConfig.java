@@ -4,12 +4,13 @@ import org.example.booksfrog.filter.JwtAuthenticationFilter;
 import org.example.booksfrog.service.CustomUserDetailsService;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
@@ -35,6 +36,8 @@ public class SecurityConfig {
             .csrf(AbstractHttpConfigurer::disable)
             .cors() // Enable CORS
             .and()
+            // Every request carries its token, so no instance keeps sessions and any one can serve any request
+            .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
             .authorizeHttpRequests(auth -> auth
                 // Authentication APIs
                 .requestMatchers("/api/auth/**").permitAll()
@@ -43,6 +46,8 @@ public class SecurityConfig {
                 // Let’s allow retrieving book content publicly OR only if authenticated:
                 // If you want only logged-in users to see PDFs, switch this to .authenticated().
                 .requestMatchers("/api/books/*/content").permitAll()
+                // Covers are linked from book listings and loaded by <img> tags, which send no token
+                .requestMatchers(HttpMethod.GET, "/api/books/*/cover").permitAll()
                 
                 // You had this example to require auth for recalc:
                 .requestMatchers("/api/books/recalculate-total-pages").authenticated()
@@ -56,18 +61,16 @@ public class SecurityConfig {
         return http.build();
     }
 
+    // The password encoder is BoundedPasswordEncoder, which hashes on its own pool. As CustomUserDetailsService
+    // also updates passwords, hashes made with an outdated cost factor are replaced on login.
     @Bean
-    public AuthenticationManager authenticationManager(HttpSecurity http) throws Exception {
+    public AuthenticationManager authenticationManager(HttpSecurity http, PasswordEncoder passwordEncoder)
+            throws Exception {
         AuthenticationManagerBuilder builder = 
             http.getSharedObject(AuthenticationManagerBuilder.class);
         builder
             .userDetailsService(customUserDetailsService)
-            .passwordEncoder(passwordEncoder());
+            .passwordEncoder(passwordEncoder);
         return builder.build();
     }
-
-    @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
-    }
 }
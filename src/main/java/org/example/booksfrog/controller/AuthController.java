@@ -51,7 +51,7 @@ public class AuthController {
         UserDetails userDetails = userDetailsService.loadUserByUsername(authRequest.getUsername());
 
         // Generate JWT token
-        String token = jwtUtil.generateToken(userDetails.getUsername());
+        String token = jwtUtil.generateToken(userDetails);
 
         // Fetch user entity
         User user = userService.findByUsername(userDetails.getUsername());
@@ -94,7 +94,7 @@ public class AuthController {
 
         User createdUser = userService.createUser(newUser);
 
-        Token initialToken = new Token(createdUser, 50,0); // Default to 0 tokens
+        Token initialToken = new Token(createdUser, Token.dailyTokensFor(createdUser), 0); // Default to 0 tokens
         tokenService.createToken(initialToken); // Save the token entry
 
         return new ResponseEntity<>(createdUser, HttpStatus.CREATED);
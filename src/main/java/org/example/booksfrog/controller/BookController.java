@@ -1,20 +1,37 @@
 package org.example.booksfrog.controller;
 
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.*;
 import java.util.List;
 
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.rendering.ImageType;
-import org.apache.pdfbox.rendering.PDFRenderer;
+import org.example.booksfrog.dto.BookCursor;
 import org.example.booksfrog.dto.BookDTO;
+import org.example.booksfrog.dto.BookSuggestion;
+import org.example.booksfrog.dto.CursorPage;
+import org.example.booksfrog.dto.RenderedPage;
+import org.example.booksfrog.exception.PageOutOfRangeException;
+import org.example.booksfrog.exception.RenderOverloadedException;
 import org.example.booksfrog.mapper.BookMapper;
 import org.example.booksfrog.model.Book;
+import org.example.booksfrog.search.SearchField;
+import org.example.booksfrog.service.BookContentService;
 import org.example.booksfrog.service.BookService;
+import org.example.booksfrog.service.LatestBooksFeed;
+import org.example.booksfrog.service.PagePrefetcher;
+import org.example.booksfrog.service.PageRenderService;
 import org.example.booksfrog.service.TokenService;
+import org.example.booksfrog.service.ViewCounter;
+import org.example.booksfrog.storage.StoredContent;
+import org.example.booksfrog.trending.TrendingTracker;
+import org.example.booksfrog.trending.TrendingWindow;
+import org.example.booksfrog.util.ContentOpenTracker;
 import org.example.booksfrog.util.CustomUserDetails;
+import org.example.booksfrog.util.SendfileSupport;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.*;
@@ -22,29 +39,105 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
-import javax.imageio.ImageIO;
-
 @RestController
 @RequestMapping("/api/books")
 public class BookController {
 
+    private static final String TOTAL_PAGES_HEADER = "X-Total-Pages";
+
+    private static final Map<String, MediaType> PAGE_IMAGE_TYPES = Map.of(
+            "png", MediaType.IMAGE_PNG,
+            "jpeg", MediaType.IMAGE_JPEG
+    );
+
+    private static final int MIN_PAGE_DPI = 36;
+
+    private static final int MAX_PAGE_DPI = 300;
+
+    private static final Duration PAGE_IMAGE_MAX_AGE = Duration.ofDays(1);
+
+    private static final int MAX_QUERY_LIMIT = 100;
+
+    private static final int MAX_SUGGESTIONS = 20;
+
+    private static final int MAX_TRENDING = 50;
+
+    // Cover URLs carry the book's version, so a cover can be cached until the URL changes
+    private static final Duration COVER_MAX_AGE = Duration.ofDays(30);
+
     private final BookService bookService;
 
     private final TokenService tokenService;
 
+    private final PageRenderService pageRenderService;
+
+    private final PagePrefetcher pagePrefetcher;
+
+    private final BookContentService bookContentService;
+
+    private final ContentOpenTracker contentOpenTracker;
+
+    private final LatestBooksFeed latestBooksFeed;
+
+    private final ViewCounter viewCounter;
+
+    private final TrendingTracker trendingTracker;
+
     @Autowired
-    public BookController(BookService bookService, TokenService tokenService) {
+    public BookController(BookService bookService, TokenService tokenService,
+                          PageRenderService pageRenderService, PagePrefetcher pagePrefetcher,
+                          BookContentService bookContentService, ContentOpenTracker contentOpenTracker,
+                          LatestBooksFeed latestBooksFeed, ViewCounter viewCounter,
+                          TrendingTracker trendingTracker) {
         this.bookService = bookService;
         this.tokenService = tokenService;
+        this.pageRenderService = pageRenderService;
+        this.pagePrefetcher = pagePrefetcher;
+        this.bookContentService = bookContentService;
+        this.contentOpenTracker = contentOpenTracker;
+        this.latestBooksFeed = latestBooksFeed;
+        this.viewCounter = viewCounter;
+        this.trendingTracker = trendingTracker;
     }
 
     @GetMapping("/{id}")
     public ResponseEntity<BookDTO> getBookById(@PathVariable Long id) {
         Optional<Book> book = bookService.getBookById(id);
+        book.ifPresent(b -> viewCounter.record(id));
         return book.map(b -> ResponseEntity.ok(BookMapper.toDTO(b)))
                 .orElseGet(() -> new ResponseEntity<>(HttpStatus.NOT_FOUND));
     }
 
+    // Cover image referenced by BookDTO.coverImage; public so it can be used directly as an <img> source
+    @GetMapping("/{id}/cover")
+    public ResponseEntity<byte[]> getBookCover(
+            @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        Optional<Long> contentVersion = bookService.getContentVersion(id);
+        if (contentVersion.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        String etag = "\"" + id + "-v" + contentVersion.get() + "-cover\"";
+        CacheControl cacheControl = CacheControl.maxAge(COVER_MAX_AGE).cachePublic();
+        if (matchesEtag(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .cacheControl(cacheControl)
+                    .build();
+        }
+
+        Optional<byte[]> cover = bookService.getBookCoverById(id);
+        if (cover.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.IMAGE_JPEG)
+                .eTag(etag)
+                .cacheControl(cacheControl)
+                .body(cover.get());
+    }
+
     @PostMapping
     public ResponseEntity<Book> createBook(@RequestBody Book book) {
         Book createdBook = bookService.createBook(book);
@@ -69,9 +162,22 @@ public class BookController {
         return new ResponseEntity<>(HttpStatus.NO_CONTENT);
     }
 
+    // Served from memory; clients revalidate with the ETag instead of downloading the list again
     @GetMapping("/latest")
-    public List<BookDTO> getLast12Books() {
-        return bookService.getLast12Books();
+    public ResponseEntity<byte[]> getLast12Books(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        LatestBooksFeed.Snapshot feed = latestBooksFeed.get();
+        if (matchesEtag(ifNoneMatch, feed.getEtag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(feed.getEtag())
+                    .cacheControl(CacheControl.noCache())
+                    .build();
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(feed.getEtag())
+                .cacheControl(CacheControl.noCache())
+                .body(feed.getBody());
     }
 
     @GetMapping
@@ -82,6 +188,16 @@ public class BookController {
         return ResponseEntity.ok(books);
     }
 
+    // Keyset variant of the listing above: pass the previous page's nextCursor to get the next one
+    @GetMapping("/cursor")
+    public ResponseEntity<CursorPage<BookDTO>> getBooksAfter(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "ID") BookCursor.Order sort,
+            @RequestParam(defaultValue = "false") boolean count) {
+        return ResponseEntity.ok(bookService.getBooksAfter(cursor, size, sort, count));
+    }
+
     @PostMapping("/{bookId}/assign-category")
     public ResponseEntity<String> assignCategoryToBook(
             @PathVariable Long bookId,
@@ -117,22 +233,114 @@ public class BookController {
         return ResponseEntity.ok(books);
     }
 
+    // Keyset variant of /search, in id order
+    @GetMapping("/search/cursor")
+    public ResponseEntity<CursorPage<BookDTO>> searchBooksAfter(
+            @RequestParam(required = false) String title,
+            @RequestParam(required = false) String author,
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "false") boolean count) {
+        CursorPage<BookDTO> books;
+        if (title != null) {
+            books = bookService.searchBooksAfter(SearchField.TITLE, title, cursor, size, count);
+        } else if (author != null) {
+            books = bookService.searchBooksAfter(SearchField.AUTHOR, author, cursor, size, count);
+        } else if (category != null) {
+            books = bookService.searchBooksAfter(SearchField.CATEGORY, category, cursor, size, count);
+        } else {
+            books = new CursorPage<>(List.of(), null, count ? 0L : null);
+        }
+        return ResponseEntity.ok(books);
+    }
+
+    // Ranked search over title, author, category and summary at once
+    @GetMapping("/query")
+    public ResponseEntity<List<BookDTO>> queryBooks(@RequestParam String q,
+                                                    @RequestParam(defaultValue = "20") int limit) {
+        if (q.isBlank()) {
+            return ResponseEntity.ok(List.of());
+        }
+        int boundedLimit = Math.max(1, Math.min(limit, MAX_QUERY_LIMIT));
+        return ResponseEntity.ok(bookService.queryBooks(q, boundedLimit));
+    }
+
+    // Shelf of the books read the most recently, answered from in-memory counters
+    @GetMapping("/trending")
+    public ResponseEntity<List<BookDTO>> getTrendingBooks(
+            @RequestParam(defaultValue = "WEEK") TrendingWindow window,
+            @RequestParam(defaultValue = "12") int limit) {
+        int boundedLimit = Math.max(1, Math.min(limit, MAX_TRENDING));
+        return ResponseEntity.ok(bookService.getTrendingBooks(window, boundedLimit));
+    }
+
+    // Type-ahead for the search box; cheap enough to call on every keystroke
+    @GetMapping("/suggest")
+    public ResponseEntity<List<BookSuggestion>> suggest(@RequestParam String prefix,
+                                                        @RequestParam(defaultValue = "10") int limit) {
+        if (prefix.isBlank()) {
+            return ResponseEntity.ok(List.of());
+        }
+        int boundedLimit = Math.max(1, Math.min(limit, MAX_SUGGESTIONS));
+        return ResponseEntity.ok(bookService.suggest(prefix, boundedLimit));
+    }
+
     @PostMapping("/recalculate-total-pages")
     public ResponseEntity<String> recalculateTotalPages() {
         bookService.recalculateTotalPages();
         return ResponseEntity.ok("Total pages recalculated for all books.");
     }
 
-    // New endpoint to return PDF content
+    // PDF content, streamed in chunks; supports range requests so viewers like pdf.js can load it on demand
     @GetMapping("/{id}/content")
-    public ResponseEntity<byte[]> getBookContent(@PathVariable Long id) {
-        // Fetch the user's token
-        Long userId = getAuthenticatedUserId(); // Assuming this method retrieves the user ID
-        tokenService.deductTokens(userId, 10); // Deduct 5 tokens
-        byte[] content = bookService.getBookContentById(id);
-        if (content == null || content.length == 0) {
+    public ResponseEntity<Resource> getBookContent(
+            @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+            @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange) {
+        Optional<Long> contentVersion = bookService.getContentVersion(id);
+        if (contentVersion.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        Optional<StoredContent> stored = bookContentService.findContent(id);
+        if (stored.isEmpty() || stored.get().getLength() == 0) {
             return ResponseEntity.noContent().build();
         }
+        long length = stored.get().getLength();
+        String etag = "\"" + id + "-v" + contentVersion.get() + ".pdf\"";
+
+        // A range is only served if the client's partial copy is of the current version
+        HttpRange requested = null;
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            try {
+                List<HttpRange> ranges = HttpRange.parseRanges(range);
+                if (ranges.size() == 1) {
+                    requested = ranges.get(0); // Multiple ranges are answered with the whole file
+                }
+            } catch (IllegalArgumentException e) {
+                // A malformed Range header is ignored
+            }
+        }
+        long start = 0;
+        long end = length - 1;
+        if (requested != null) {
+            try {
+                start = requested.getRangeStart(length);
+                end = requested.getRangeEnd(length);
+            } catch (IllegalArgumentException e) {
+                start = length; // Treated as unsatisfiable below
+            }
+            if (start >= length || start > end) {
+                return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                        .header(HttpHeaders.CONTENT_RANGE, "bytes */" + length)
+                        .build();
+            }
+        }
+
+        // Fetch the user's token
+        Long userId = getAuthenticatedUserId(); // Assuming this method retrieves the user ID
+        chargeContentOpen(userId, id, contentVersion.get());
+
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_PDF);
 
@@ -140,9 +348,52 @@ public class BookController {
                 .filename("book-" + id + ".pdf")
                 .build();
         headers.setContentDisposition(contentDisposition);
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        headers.setETag(etag);
+        headers.setContentLength(end - start + 1);
+
+        HttpStatus status = HttpStatus.OK;
+        if (requested != null) {
+            headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            status = HttpStatus.PARTIAL_CONTENT;
+        }
 
-        return new ResponseEntity<>(content, headers, HttpStatus.OK);
+        // Files on the local disk are sent by the container without passing through the heap
+        Optional<Path> localFile = stored.get().getLocalFile();
+        if (localFile.isPresent() && SendfileSupport.tryServe(localFile.get(), start, end + 1)) {
+            return new ResponseEntity<>(headers, status);
+        }
+        // InputStreamResource is written as is, Spring MVC does not apply the Range header to it a second time
+        Resource body = new InputStreamResource(stored.get().open(start, end - start + 1));
+        return new ResponseEntity<>(body, headers, status);
     }
+
+    // Opening a PDF costs 10 tokens and counts as a view; the further range requests of the same open are free
+    private void chargeContentOpen(Long userId, Long bookId, long contentVersion) {
+        if (!contentOpenTracker.registerAccess(userId, bookId, contentVersion)) {
+            return;
+        }
+        try {
+            tokenService.deductTokens(userId, 10);
+        } catch (RuntimeException e) {
+            contentOpenTracker.forget(userId, bookId, contentVersion);
+            throw e;
+        }
+        recordOpen(bookId);
+    }
+
+    // Reading a book page by page counts as one open, when its first page is served
+    private void countPageView(Long bookId, int page) {
+        if (page == 0) {
+            recordOpen(bookId);
+        }
+    }
+
+    private void recordOpen(Long bookId) {
+        viewCounter.record(bookId);
+        trendingTracker.record(bookId);
+    }
+
     @GetMapping("/{id}/content-img/{page}")
     public ResponseEntity<Map<String, Object>> getBookContentImage(@PathVariable Long id, @PathVariable int page) {
         try {
@@ -150,34 +401,36 @@ public class BookController {
             Long userId = getAuthenticatedUserId(); // Assuming this method retrieves the user ID
             tokenService.deductTokens(userId, 5); // Deduct 5 tokens
 
-            byte[] content = bookService.getBookContentById(id);
-            if (content == null || content.length == 0) {
-                return ResponseEntity.noContent().build();
+            // Repeat views of a page are served from the shared render cache
+            Optional<RenderedPage> rendered;
+            try {
+                rendered = pageRenderService.renderPage(id, page);
+            } catch (RenderOverloadedException e) {
+                tokenService.addTokens(userId, 5); // Nothing was served, give the charge back
+                throw e;
             }
-
-            PDDocument document = PDDocument.load(content);
-            int totalPages = document.getNumberOfPages();
-
-            if (page >= totalPages) {
-                document.close();
-                return ResponseEntity.notFound().build();
+            if (rendered.isEmpty()) {
+                return ResponseEntity.noContent().build();
             }
 
-            PDFRenderer renderer = new PDFRenderer(document);
-            BufferedImage image = renderer.renderImageWithDPI(page, 80, ImageType.RGB);
-
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            ImageIO.write(image, "png", baos);
-            String base64Image = Base64.getEncoder().encodeToString(baos.toByteArray());
+            countPageView(id, page);
+            // Warm the next pages in the background; they are only charged once requested
+            pagePrefetcher.onPageViewed(userId, id, page, rendered.get().getTotalPages());
 
-            document.close();
+            String base64Image = Base64.getEncoder().encodeToString(rendered.get().getImage());
 
             // Create a response map containing the image data and total pages
             Map<String, Object> response = new HashMap<>();
             response.put("image", base64Image);
-            response.put("totalPages", totalPages);
+            response.put("totalPages", rendered.get().getTotalPages());
 
             return ResponseEntity.ok(response);
+        } catch (PageOutOfRangeException e) {
+            return ResponseEntity.notFound().build();
+        } catch (RenderOverloadedException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(Map.of("error", e.getMessage()));
         } catch (RuntimeException e) {
             // Handle token-related exceptions
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("error", e.getMessage()));
@@ -187,6 +440,77 @@ public class BookController {
         }
     }
 
+    // Raw page image with HTTP caching, a lighter alternative to the base64 JSON of /content-img/{page}
+    @GetMapping("/{id}/pages/{page}")
+    public ResponseEntity<byte[]> getBookPageImage(
+            @PathVariable Long id,
+            @PathVariable int page,
+            @RequestParam(required = false) Integer dpi,
+            @RequestParam(defaultValue = PageRenderService.DEFAULT_FORMAT) String format,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) throws IOException {
+        int resolution = dpi != null ? dpi : pageRenderService.getDefaultDpi();
+        MediaType mediaType = PAGE_IMAGE_TYPES.get(format);
+        if (mediaType == null || resolution < MIN_PAGE_DPI || resolution > MAX_PAGE_DPI) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        Optional<Long> contentVersion = bookService.getContentVersion(id);
+        if (contentVersion.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        // The validator only depends on metadata, so a revalidation is answered without rendering or charging
+        String etag = "\"" + id + "-v" + contentVersion.get() + "-p" + page + "-d" + resolution + "." + format + "\"";
+        CacheControl cacheControl = CacheControl.maxAge(PAGE_IMAGE_MAX_AGE).cachePrivate();
+        if (matchesEtag(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .cacheControl(cacheControl)
+                    .build();
+        }
+
+        Long userId = getAuthenticatedUserId();
+        tokenService.deductTokens(userId, 5);
+
+        Optional<RenderedPage> rendered;
+        try {
+            rendered = pageRenderService.renderPage(id, page, resolution, format);
+        } catch (RenderOverloadedException e) {
+            tokenService.addTokens(userId, 5); // Nothing was served, give the charge back
+            throw e;
+        }
+        if (rendered.isEmpty()) {
+            return ResponseEntity.noContent().build();
+        }
+        countPageView(id, page);
+        if (resolution == pageRenderService.getDefaultDpi() && PageRenderService.DEFAULT_FORMAT.equals(format)) {
+            pagePrefetcher.onPageViewed(userId, id, page, rendered.get().getTotalPages());
+        }
+
+        return ResponseEntity.ok()
+                .contentType(mediaType)
+                .eTag(etag)
+                .cacheControl(cacheControl)
+                .header(TOTAL_PAGES_HEADER, String.valueOf(rendered.get().getTotalPages()))
+                .body(rendered.get().getImage());
+    }
+
+    private static boolean matchesEtag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.startsWith("W/")) {
+                value = value.substring(2); // If-None-Match uses the weak comparison
+            }
+            if (value.equals("*") || value.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private Long getAuthenticatedUserId() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
             CustomUserDetails userDetails = (CustomUserDetails) authentication.getPrincipal();
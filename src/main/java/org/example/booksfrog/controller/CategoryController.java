@@ -1,7 +1,7 @@
 package org.example.booksfrog.controller;
 
 import org.example.booksfrog.dto.BookDTO;
-import org.example.booksfrog.mapper.BookMapper;
+import org.example.booksfrog.dto.CursorPage;
 import org.example.booksfrog.model.Category;
 import org.example.booksfrog.service.BookService;
 import org.example.booksfrog.service.CategoryService;
@@ -75,9 +75,7 @@ public class CategoryController {
 
     @GetMapping("/{categoryId}/books")
 public ResponseEntity<List<BookDTO>> getBooksByCategory(@PathVariable Long categoryId) {
-    List<BookDTO> books = bookService.getBooksByCategoryId(categoryId).stream()
-            .map(BookMapper::toDTO)
-            .toList();
+    List<BookDTO> books = bookService.getBooksByCategoryId(categoryId);
 
     if (books.isEmpty()) {
         return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
@@ -85,4 +83,14 @@ public ResponseEntity<List<BookDTO>> getBooksByCategory(@PathVariable Long categ
 
     return ResponseEntity.ok(books);
 }
+
+    // Keyset variant of the category listing; an empty page rather than 404 when the category has no books
+    @GetMapping("/{categoryId}/books/cursor")
+    public ResponseEntity<CursorPage<BookDTO>> getBooksByCategoryAfter(
+            @PathVariable Long categoryId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "false") boolean count) {
+        return ResponseEntity.ok(bookService.getBooksByCategoryIdAfter(categoryId, cursor, size, count));
+    }
 }
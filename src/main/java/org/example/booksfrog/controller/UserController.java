@@ -3,9 +3,12 @@ package org.example.booksfrog.controller;
 import org.example.booksfrog.model.User;
 import org.example.booksfrog.service.FavoriteService;
 import org.example.booksfrog.service.UserService;
+import org.example.booksfrog.util.CustomUserDetails;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -62,9 +65,29 @@ public class UserController {
     }
 
 
+    // Signs the user out everywhere: tokens issued until now are rejected. Users can only sign themselves out.
+    @PostMapping("/{id}/revoke-tokens")
+    public ResponseEntity<Void> revokeTokens(@PathVariable Long id) {
+        if (!id.equals(getAuthenticatedUserId())) {
+            return new ResponseEntity<>(HttpStatus.FORBIDDEN);
+        }
+        try {
+            userService.revokeTokens(id);
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        } catch (RuntimeException e) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteUser(@PathVariable Long id) {
         userService.deleteUser(id);
         return new ResponseEntity<>(HttpStatus.NO_CONTENT);
     }
+
+    private Long getAuthenticatedUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        CustomUserDetails userDetails = (CustomUserDetails) authentication.getPrincipal();
+        return userDetails.getId();
+    }
 }
@@ -0,0 +1,65 @@
+package org.example.booksfrog.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.example.booksfrog.exception.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position after the last book of a keyset page: the sort it belongs to, the sort key and the id of that book.
+ * Handed to clients as an opaque URL-safe token.
+ */
+@Getter
+@AllArgsConstructor
+public class BookCursor {
+
+    public enum Order {
+        // Oldest first
+        ID,
+        TITLE,
+        // Most viewed first
+        POPULAR
+    }
+
+    private final Order order;
+    private final long id;
+    // Title or view count of the last book; unused when ordering by id
+    private final String key;
+
+    public static BookCursor after(Order order, BookSummary book) {
+        String key = switch (order) {
+            case ID -> "";
+            case TITLE -> book.getTitle();
+            case POPULAR -> String.valueOf(book.getViews());
+        };
+        return new BookCursor(order, book.getId(), key);
+    }
+
+    public String encode() {
+        String raw = order.name() + ":" + id + ":" + key;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Read a cursor handed out by {@link #encode()}.
+     *
+     * @throws InvalidCursorException if the token is malformed or was issued for another sort order.
+     */
+    public static BookCursor decode(String token, Order expected) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split(":", 3);
+            BookCursor cursor = new BookCursor(Order.valueOf(parts[0]), Long.parseLong(parts[1]), parts[2]);
+            if (cursor.order != expected) {
+                throw new InvalidCursorException("The cursor belongs to a listing sorted by " + cursor.order + ".");
+            }
+            if (cursor.order == Order.POPULAR) {
+                Integer.parseInt(cursor.key);
+            }
+            return cursor;
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            throw new InvalidCursorException("The cursor is not valid.");
+        }
+    }
+}
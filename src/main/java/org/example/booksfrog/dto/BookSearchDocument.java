@@ -0,0 +1,17 @@
+package org.example.booksfrog.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// The searchable text of a book, as loaded into the in-memory search index
+@Getter
+@AllArgsConstructor
+public class BookSearchDocument {
+    private final Long id;
+    private final String title;
+    private final String author;
+    private final String summary;
+    private final Long categoryId;
+    private final String categoryName;
+    private final int views;
+}
@@ -0,0 +1,13 @@
+package org.example.booksfrog.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.example.booksfrog.search.SearchField;
+
+// A type-ahead completion, and the field to search it in
+@Getter
+@AllArgsConstructor
+public class BookSuggestion {
+    private final String text;
+    private final SearchField field;
+}
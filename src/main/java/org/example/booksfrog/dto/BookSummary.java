@@ -0,0 +1,20 @@
+package org.example.booksfrog.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// Catalog columns of a book, read with a constructor projection so listings never touch book_content
+@Getter
+@AllArgsConstructor
+public class BookSummary {
+    private final Long id;
+    private final String title;
+    private final String author;
+    private final String summary;
+    private final Boolean hasCover;
+    private final Long contentVersion;
+    private final Long categoryId;
+    private final String categoryName;
+    private final int views;
+    private final Integer totalPages;
+}
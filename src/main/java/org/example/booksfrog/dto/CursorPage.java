@@ -0,0 +1,17 @@
+package org.example.booksfrog.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+// One page of a keyset listing; nextCursor is null on the last page, and the total is only counted on request
+@Getter
+@AllArgsConstructor
+public class CursorPage<T> {
+    private final List<T> items;
+    private final String nextCursor;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private final Long totalElements;
+}
@@ -2,6 +2,7 @@ package org.example.booksfrog.dto;
 
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import org.example.booksfrog.mapper.BookMapper;
 import org.example.booksfrog.model.Book;
 import org.example.booksfrog.model.Category;
 import org.example.booksfrog.model.Favorite;
@@ -26,7 +27,7 @@ public class FavoriteFullDTO {
                 book.getTitle(),
                 book.getAuthor(),
                 book.getSummary(),
-                book.getCoverImage(),
+                BookMapper.coverUrl(book.getId(), book.getContentVersion(), book.getHasCover()),
                 category != null ? category.getId() : null,
                 category != null ? category.getName() : null
         );
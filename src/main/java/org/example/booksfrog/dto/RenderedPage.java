@@ -0,0 +1,12 @@
+package org.example.booksfrog.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class RenderedPage {
+    private final byte[] image;
+    private final int totalPages;
+    private final String format;
+}
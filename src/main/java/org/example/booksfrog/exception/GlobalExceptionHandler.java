@@ -1,5 +1,6 @@
 package org.example.booksfrog.exception;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -18,5 +19,44 @@ public class GlobalExceptionHandler {
             "message", ex.getMessage()
         ));
     }
-}
 
+    @ExceptionHandler(PageOutOfRangeException.class)
+    public ResponseEntity<Object> handlePageOutOfRangeException(PageOutOfRangeException ex) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of(
+            "status", HttpStatus.NOT_FOUND.value(),
+            "error", "Page Not Found",
+            "message", ex.getMessage()
+        ));
+    }
+
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<Object> handleInvalidCursorException(InvalidCursorException ex) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of(
+            "status", HttpStatus.BAD_REQUEST.value(),
+            "error", "Invalid Cursor",
+            "message", ex.getMessage()
+        ));
+    }
+
+    @ExceptionHandler(RenderOverloadedException.class)
+    public ResponseEntity<Object> handleRenderOverloadedException(RenderOverloadedException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+            .body(Map.of(
+                "status", HttpStatus.SERVICE_UNAVAILABLE.value(),
+                "error", "Service Unavailable",
+                "message", ex.getMessage()
+            ));
+    }
+
+    @ExceptionHandler(PasswordHashingOverloadedException.class)
+    public ResponseEntity<Object> handlePasswordHashingOverloadedException(PasswordHashingOverloadedException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+            .body(Map.of(
+                "status", HttpStatus.SERVICE_UNAVAILABLE.value(),
+                "error", "Service Unavailable",
+                "message", ex.getMessage()
+            ));
+    }
+}
@@ -0,0 +1,8 @@
+package org.example.booksfrog.exception;
+
+public class InvalidCursorException extends RuntimeException {
+
+    public InvalidCursorException(String message) {
+        super(message);
+    }
+}
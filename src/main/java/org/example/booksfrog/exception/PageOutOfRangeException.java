@@ -0,0 +1,8 @@
+package org.example.booksfrog.exception;
+
+public class PageOutOfRangeException extends RuntimeException {
+
+    public PageOutOfRangeException(String message) {
+        super(message);
+    }
+}
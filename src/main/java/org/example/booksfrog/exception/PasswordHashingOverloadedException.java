@@ -0,0 +1,15 @@
+package org.example.booksfrog.exception;
+
+public class PasswordHashingOverloadedException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public PasswordHashingOverloadedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
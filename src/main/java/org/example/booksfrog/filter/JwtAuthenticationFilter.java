@@ -1,7 +1,10 @@
 package org.example.booksfrog.filter;
 
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import org.example.booksfrog.service.CustomUserDetailsService;
+import org.example.booksfrog.service.TokenVersions;
+import org.example.booksfrog.util.CustomUserDetails;
 import org.example.booksfrog.util.JwtUtil;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -20,10 +23,13 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtUtil jwtUtil;
     private final CustomUserDetailsService userDetailsService;
+    private final TokenVersions tokenVersions;
 
-    public JwtAuthenticationFilter(JwtUtil jwtUtil, CustomUserDetailsService userDetailsService) {
+    public JwtAuthenticationFilter(JwtUtil jwtUtil, CustomUserDetailsService userDetailsService,
+                                   TokenVersions tokenVersions) {
         this.jwtUtil = jwtUtil;
         this.userDetailsService = userDetailsService;
+        this.tokenVersions = tokenVersions;
     }
 
     @Override
@@ -33,25 +39,38 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         final String authorizationHeader = request.getHeader("Authorization");
 
         String username = null;
-        String jwt = null;
+        Claims claims = null;
 
         if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
-            jwt = authorizationHeader.substring(7);
-            username = jwtUtil.extractUsername(jwt);
+            // Parsed and verified once; the claims are reused for validation below
+            claims = jwtUtil.verify(authorizationHeader.substring(7));
+            username = claims.getSubject();
         }
 
         if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
+            // Tokens carrying the user's details need no query, beyond a cached check that they weren't revoked
+            CustomUserDetails principal = jwtUtil.toPrincipal(claims);
+            if (principal != null) {
+                if (tokenVersions.isCurrent(principal.getId(), principal.getTokenVersion())) {
+                    authenticate(request, principal);
+                }
+            } else {
+                UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
 
-            if (jwtUtil.validateToken(jwt, userDetails.getUsername())) {
-                UsernamePasswordAuthenticationToken authentication =
-                        new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
-                authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-
-                SecurityContextHolder.getContext().setAuthentication(authentication);
+                if (jwtUtil.validateToken(claims, userDetails.getUsername())) {
+                    authenticate(request, userDetails);
+                }
             }
         }
 
         filterChain.doFilter(request, response);
     }
+
+    private void authenticate(HttpServletRequest request, UserDetails userDetails) {
+        UsernamePasswordAuthenticationToken authentication =
+                new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+        authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+    }
 }
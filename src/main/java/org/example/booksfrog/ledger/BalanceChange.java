@@ -0,0 +1,27 @@
+package org.example.booksfrog.ledger;
+
+import java.time.LocalDateTime;
+
+// Net change of one balance over a journal segment
+final class BalanceChange {
+
+    private int delta;
+
+    // Latest daily grant in the segment, null if none
+    private LocalDateTime grantedAt;
+
+    void add(int delta, LocalDateTime grantedAt) {
+        this.delta += delta;
+        if (grantedAt != null && (this.grantedAt == null || grantedAt.isAfter(this.grantedAt))) {
+            this.grantedAt = grantedAt;
+        }
+    }
+
+    int getDelta() {
+        return delta;
+    }
+
+    LocalDateTime getGrantedAt() {
+        return grantedAt;
+    }
+}
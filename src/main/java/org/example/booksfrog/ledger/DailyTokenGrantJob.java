@@ -0,0 +1,114 @@
+package org.example.booksfrog.ledger;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.example.booksfrog.model.Token;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Writes the daily tokens that are due into every balance, so the {@code tokens} table holds current balances for
+ * anything reading it directly. Balances served by the application already count due tokens, so this job is
+ * optional.
+ * <p>
+ * Token rows are walked in keyset-ordered chunks, each granted with one batch of two set-based updates, one per
+ * daily amount. An update only touches rows whose grant is still due, so a run that dies midway is simply run
+ * again, and a debit granting the same row concurrently can't make it grant twice.
+ */
+@Component
+@ConditionalOnProperty(name = "booksfrog.tokens.grant-job.enabled", havingValue = "true")
+public class DailyTokenGrantJob implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(DailyTokenGrantJob.class);
+
+    private static final String SELECT_CHUNK = "SELECT user_id FROM tokens WHERE user_id > ? ORDER BY user_id LIMIT ?";
+
+    // last_reset moves by whole days, as TokenLedger.grantedAt does, so the job keeps the users' grant schedules
+    private static final String GRANT = "UPDATE tokens SET total_tokens = total_tokens + ?, last_reset = CASE"
+            + " WHEN last_reset IS NULL THEN ?"
+            + " ELSE TIMESTAMPADD(DAY, FLOOR(TIMESTAMPDIFF(SECOND, last_reset, ?) / 86400), last_reset) END"
+            + " WHERE user_id > ? AND user_id <= ? AND (last_reset IS NULL OR last_reset < ?)"
+            + " AND EXISTS (SELECT 1 FROM user u WHERE u.id = tokens.user_id AND COALESCE(u.is_premium, FALSE) = ?)";
+
+    public record GrantReport(long users, int chunks, long millis) {
+
+        public double usersPerSecond() {
+            return millis == 0 ? users * 1000.0 : users * 1000.0 / millis;
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final int chunkSize;
+
+    private final boolean inMemoryLedger;
+
+    private volatile GrantReport lastRun = new GrantReport(0, 0, 0);
+
+    @Autowired
+    public DailyTokenGrantJob(JdbcTemplate jdbcTemplate,
+                              @Value("${booksfrog.tokens.grant-job.chunk-size:1000}") int chunkSize,
+                              @Value("${booksfrog.tokens.ledger:database}") String ledger) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.chunkSize = chunkSize;
+        this.inMemoryLedger = "memory".equals(ledger);
+    }
+
+    @Scheduled(cron = "${booksfrog.tokens.grant-job.cron:0 0 2 * * *}")
+    public void run() {
+        // Balances held in memory would not see the rows change
+        if (inMemoryLedger) {
+            log.warn("Skipping the daily token grant job, balances are kept in memory");
+            return;
+        }
+        GrantReport report = grantAll(LocalDateTime.now());
+        log.info("Granted daily tokens to {} users in {} chunks in {} ms ({} users/s)",
+                report.users(), report.chunks(), report.millis(), Math.round(report.usersPerSecond()));
+    }
+
+    public GrantReport grantAll(LocalDateTime now) {
+        long start = System.nanoTime();
+        LocalDateTime cutoff = now.minusDays(1);
+        long users = 0;
+        int chunks = 0;
+        long lastId = 0;
+        while (true) {
+            List<Long> ids = jdbcTemplate.queryForList(SELECT_CHUNK, Long.class, lastId, chunkSize);
+            if (ids.isEmpty()) {
+                break;
+            }
+            long upTo = ids.get(ids.size() - 1);
+            int[] granted = jdbcTemplate.batchUpdate(GRANT, List.of(
+                    new Object[]{Token.DAILY_TOKENS, now, now, lastId, upTo, cutoff, false},
+                    new Object[]{Token.PREMIUM_DAILY_TOKENS, now, now, lastId, upTo, cutoff, true}));
+            for (int rows : granted) {
+                users += Math.max(rows, 0); // Drivers may report SUCCESS_NO_INFO (-2) for batched statements
+            }
+            chunks++;
+            lastId = upTo;
+        }
+        lastRun = new GrantReport(users, chunks, (System.nanoTime() - start) / 1_000_000);
+        return lastRun;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("booksfrog.tokens.grant.users", this, job -> job.lastRun.users())
+                .description("Users granted daily tokens by the last bulk grant run")
+                .register(registry);
+        Gauge.builder("booksfrog.tokens.grant.rate", this, job -> job.lastRun.usersPerSecond())
+                .description("Users per second granted by the last bulk grant run")
+                .baseUnit("users/s")
+                .register(registry);
+    }
+}
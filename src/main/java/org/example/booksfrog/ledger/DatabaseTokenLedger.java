@@ -0,0 +1,68 @@
+package org.example.booksfrog.ledger;
+
+import org.example.booksfrog.exception.InsufficientTokensException;
+import org.example.booksfrog.model.Token;
+import org.example.booksfrog.repository.TokenRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+/**
+ * Balances read and changed in the {@code tokens} table on every call, each change a single conditional update.
+ */
+@Component
+@ConditionalOnProperty(name = "booksfrog.tokens.ledger", havingValue = "database", matchIfMissing = true)
+public class DatabaseTokenLedger implements TokenLedger {
+
+    private final TokenRepository tokenRepository;
+
+    @Autowired
+    public DatabaseTokenLedger(TokenRepository tokenRepository) {
+        this.tokenRepository = tokenRepository;
+    }
+
+    @Override
+    public int balance(Long userId) {
+        Token token = find(userId);
+        int balance = token.getTotalTokens();
+        if (TokenLedger.grantDue(token.getLastReset(), LocalDateTime.now())) {
+            balance += Token.dailyTokensFor(token.getUser());
+        }
+        return balance;
+    }
+
+    @Override
+    public LocalDateTime lastReset(Long userId) {
+        return find(userId).getLastReset();
+    }
+
+    @Override
+    @Transactional
+    public void debit(Long userId, int amount) {
+        LocalDateTime now = LocalDateTime.now();
+        if (tokenRepository.debit(userId, amount, now, now.minusDays(1)) == 1) {
+            return;
+        }
+        // Only a failed deduction pays for the second query telling the two failures apart
+        if (!tokenRepository.existsById(userId)) {
+            throw new RuntimeException("Token not found for user ID: " + userId);
+        }
+        throw new InsufficientTokensException("User ID " + userId + " has insufficient tokens.");
+    }
+
+    @Override
+    @Transactional
+    public void credit(Long userId, int amount) {
+        if (tokenRepository.credit(userId, amount) == 0) {
+            throw new RuntimeException("Token not found for user ID: " + userId);
+        }
+    }
+
+    private Token find(Long userId) {
+        return tokenRepository.findById(userId)
+                .orElseThrow(() -> new RuntimeException("Token not found for user ID: " + userId));
+    }
+}
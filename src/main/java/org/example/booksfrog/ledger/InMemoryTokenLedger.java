@@ -0,0 +1,249 @@
+package org.example.booksfrog.ledger;
+
+import jakarta.annotation.PreDestroy;
+import org.example.booksfrog.exception.InsufficientTokensException;
+import org.example.booksfrog.model.Token;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Balances kept in memory and debited with compare-and-set, so charging a page costs no database round trip.
+ * Every change is appended to a {@link TokenJournal} before it is acknowledged, and written behind to the
+ * {@code tokens} table in one batch per flush interval. At startup the segments left over by a crash are replayed
+ * into the table before any balance is served.
+ * <p>
+ * Each flush stamps the rows it updates with the segment's sequence number and skips rows already stamped with it
+ * or a later one, so replaying a segment that was partly or fully written is harmless. The table lags behind by
+ * up to one flush interval, and only one instance may run in this mode against a database.
+ */
+@Component
+@ConditionalOnProperty(name = "booksfrog.tokens.ledger", havingValue = "memory")
+public class InMemoryTokenLedger implements TokenLedger {
+
+    private static final Logger log = LoggerFactory.getLogger(InMemoryTokenLedger.class);
+
+    private static final String SELECT_TOKEN = "SELECT total_tokens, last_reset FROM tokens WHERE user_id = ?";
+
+    private static final String SELECT_PREMIUM = "SELECT is_premium FROM user WHERE id = ?";
+
+    private static final String SELECT_LAST_SEQUENCE = "SELECT MAX(ledger_seq) FROM tokens";
+
+    private static final String APPLY_CHANGE = "UPDATE tokens SET total_tokens = total_tokens + ?,"
+            + " last_reset = COALESCE(?, last_reset), ledger_seq = ?"
+            + " WHERE user_id = ? AND (ledger_seq IS NULL OR ledger_seq < ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TokenJournal journal;
+
+    // Loaded on first use and kept for the life of the process
+    private final Map<Long, Account> accounts = new ConcurrentHashMap<>();
+
+    // Guards the journal and the changes of its current segment, so a segment and its changes always match
+    private final Object journalLock = new Object();
+
+    private Map<Long, BalanceChange> unflushed = new HashMap<>();
+
+    // Segments closed but not yet written to the table, oldest first; only touched by flush
+    private final Deque<Segment> closed = new ArrayDeque<>();
+
+    @Autowired
+    public InMemoryTokenLedger(JdbcTemplate jdbcTemplate,
+                               @Value("${booksfrog.tokens.journal-dir:data/token-journal}") String journalDir) {
+        this.jdbcTemplate = jdbcTemplate;
+        try {
+            this.journal = new TokenJournal(Paths.get(journalDir).toAbsolutePath().normalize());
+            journal.open(recover() + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open the token journal in " + journalDir, e);
+        }
+    }
+
+    // Replays the segments left on disk and returns the highest sequence number in use
+    private long recover() throws IOException {
+        long last = 0;
+        for (long sequence : journal.segments()) {
+            apply(sequence, journal.read(sequence));
+            journal.delete(sequence);
+            last = sequence;
+        }
+        Long stamped = jdbcTemplate.queryForObject(SELECT_LAST_SEQUENCE, Long.class);
+        if (stamped != null && stamped > last) {
+            last = stamped;
+        }
+        log.info("Token journal recovered, continuing at segment {}", last + 1);
+        return last;
+    }
+
+    @Override
+    public int balance(Long userId) {
+        Account account = account(userId);
+        int balance = account.balance.get();
+        return TokenLedger.grantDue(account.lastReset, LocalDateTime.now()) ? balance + dailyTokens(userId) : balance;
+    }
+
+    @Override
+    public LocalDateTime lastReset(Long userId) {
+        return account(userId).lastReset;
+    }
+
+    @Override
+    public void debit(Long userId, int amount) {
+        Account account = account(userId);
+        grantIfDue(userId, account, LocalDateTime.now());
+        int balance;
+        do {
+            balance = account.balance.get();
+            if (balance < amount) {
+                throw new InsufficientTokensException("User ID " + userId + " has insufficient tokens.");
+            }
+        } while (!account.balance.compareAndSet(balance, balance - amount));
+        record(userId, account, -amount, null);
+    }
+
+    @Override
+    public void credit(Long userId, int amount) {
+        Account account = account(userId);
+        account.balance.addAndGet(amount);
+        record(userId, account, amount, null);
+    }
+
+    private void grantIfDue(Long userId, Account account, LocalDateTime now) {
+        if (!TokenLedger.grantDue(account.lastReset, now)) {
+            return;
+        }
+        synchronized (account) {
+            LocalDateTime lastReset = account.lastReset;
+            if (!TokenLedger.grantDue(lastReset, now)) {
+                return; // Granted by a concurrent debit
+            }
+            int dailyTokens = dailyTokens(userId);
+            LocalDateTime grantedAt = TokenLedger.grantedAt(lastReset, now);
+            account.lastReset = grantedAt;
+            account.balance.addAndGet(dailyTokens);
+            try {
+                record(userId, account, dailyTokens, grantedAt);
+            } catch (UncheckedIOException e) {
+                account.lastReset = lastReset;
+                throw e;
+            }
+        }
+    }
+
+    // Journal a change already applied to the account, undoing it if the journal can't take it
+    private void record(Long userId, Account account, int delta, LocalDateTime grantedAt) {
+        synchronized (journalLock) {
+            try {
+                journal.append(userId, delta, grantedAt);
+            } catch (IOException e) {
+                account.balance.addAndGet(-delta);
+                throw new UncheckedIOException("Cannot journal the token change of user ID " + userId, e);
+            }
+            unflushed.computeIfAbsent(userId, id -> new BalanceChange()).add(delta, grantedAt);
+        }
+    }
+
+    // Read when a grant is due rather than kept with the account, so upgrading or downgrading applies at once
+    private int dailyTokens(Long userId) {
+        List<Boolean> premium = jdbcTemplate.queryForList(SELECT_PREMIUM, Boolean.class, userId);
+        boolean isPremium = !premium.isEmpty() && Boolean.TRUE.equals(premium.get(0));
+        return isPremium ? Token.PREMIUM_DAILY_TOKENS : Token.DAILY_TOKENS;
+    }
+
+    private Account account(Long userId) {
+        Account account = accounts.get(userId);
+        if (account != null) {
+            return account;
+        }
+        // Only changes made through this ledger reach the row, so a row read before anyone used the account is current
+        List<Account> rows = jdbcTemplate.query(SELECT_TOKEN, (rs, rowNum) -> new Account(rs.getInt("total_tokens"),
+                rs.getObject("last_reset", LocalDateTime.class)), userId);
+        if (rows.isEmpty()) {
+            throw new RuntimeException("Token not found for user ID: " + userId);
+        }
+        Account existing = accounts.putIfAbsent(userId, rows.get(0));
+        return existing != null ? existing : rows.get(0);
+    }
+
+    @Scheduled(fixedDelayString = "${booksfrog.tokens.flush-interval-ms:1000}")
+    public synchronized void flush() {
+        synchronized (journalLock) {
+            if (!unflushed.isEmpty()) {
+                try {
+                    closed.add(new Segment(journal.rotate(), unflushed));
+                    unflushed = new HashMap<>();
+                } catch (IOException e) {
+                    log.warn("Could not rotate the token journal, retrying on the next flush", e);
+                }
+            }
+        }
+        // In order: a segment applied before an older one would make the older one's rows look already applied
+        while (!closed.isEmpty()) {
+            Segment segment = closed.peek();
+            try {
+                apply(segment.sequence(), segment.changes());
+                journal.delete(segment.sequence());
+            } catch (DataAccessException | IOException e) {
+                log.warn("Could not save token segment {}, retrying on the next flush", segment.sequence(), e);
+                return;
+            }
+            closed.remove();
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        flush();
+        synchronized (journalLock) {
+            journal.close();
+        }
+    }
+
+    private void apply(long sequence, Map<Long, BalanceChange> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        // Sorted by user id so the row locks are always taken in the same order
+        List<Object[]> updates = new ArrayList<>(changes.size());
+        new TreeMap<>(changes).forEach((userId, change) -> updates.add(
+                new Object[]{change.getDelta(), change.getGrantedAt(), sequence, userId, sequence}));
+        jdbcTemplate.batchUpdate(APPLY_CHANGE, updates);
+    }
+
+    private static final class Account {
+
+        private final AtomicInteger balance;
+
+        private volatile LocalDateTime lastReset;
+
+        private Account(int balance, LocalDateTime lastReset) {
+            this.balance = new AtomicInteger(balance);
+            this.lastReset = lastReset;
+        }
+    }
+
+    private record Segment(long sequence, Map<Long, BalanceChange> changes) {
+    }
+}
@@ -0,0 +1,113 @@
+package org.example.booksfrog.ledger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Append-only log of balance changes, split into numbered segment files. Each change is written to the file
+ * before the ledger acknowledges it, so it survives the process dying; a segment is forced to disk when it is
+ * closed. Not thread-safe.
+ */
+final class TokenJournal {
+
+    private static final String PREFIX = "tokens-";
+
+    private static final String SUFFIX = ".journal";
+
+    // user id, delta, grant time in epoch millis (or NO_GRANT)
+    static final int RECORD_BYTES = Long.BYTES + Integer.BYTES + Long.BYTES;
+
+    private static final long NO_GRANT = Long.MIN_VALUE;
+
+    private final Path directory;
+
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+
+    private FileChannel current;
+
+    private long currentSequence;
+
+    TokenJournal(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+    }
+
+    // Sequence numbers of the segments on disk, oldest first
+    List<Long> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith(PREFIX) && name.endsWith(SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    // Start appending to a new segment
+    void open(long sequence) throws IOException {
+        current = FileChannel.open(pathOf(sequence),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        currentSequence = sequence;
+    }
+
+    void append(long userId, int delta, LocalDateTime grantedAt) throws IOException {
+        record.clear();
+        record.putLong(userId).putInt(delta)
+                .putLong(grantedAt == null ? NO_GRANT : grantedAt.toInstant(ZoneOffset.UTC).toEpochMilli());
+        record.flip();
+        while (record.hasRemaining()) {
+            current.write(record);
+        }
+    }
+
+    // Close the current segment and continue in the next one; returns the closed segment's sequence number
+    long rotate() throws IOException {
+        FileChannel closed = current;
+        long closedSequence = currentSequence;
+        open(closedSequence + 1);
+        closed.force(false);
+        closed.close();
+        return closedSequence;
+    }
+
+    // The changes in a segment, per user; a record torn by a crash mid-write is ignored
+    Map<Long, BalanceChange> read(long sequence) throws IOException {
+        ByteBuffer records = ByteBuffer.wrap(Files.readAllBytes(pathOf(sequence)));
+        Map<Long, BalanceChange> changes = new TreeMap<>();
+        while (records.remaining() >= RECORD_BYTES) {
+            long userId = records.getLong();
+            int delta = records.getInt();
+            long grantedAt = records.getLong();
+            changes.computeIfAbsent(userId, id -> new BalanceChange()).add(delta, grantedAt == NO_GRANT
+                    ? null : LocalDateTime.ofInstant(Instant.ofEpochMilli(grantedAt), ZoneOffset.UTC));
+        }
+        return changes;
+    }
+
+    void delete(long sequence) throws IOException {
+        Files.deleteIfExists(pathOf(sequence));
+    }
+
+    void close() throws IOException {
+        if (current != null) {
+            current.force(false);
+            current.close();
+            current = null;
+        }
+    }
+
+    private Path pathOf(long sequence) {
+        return directory.resolve(PREFIX + String.format("%020d", sequence) + SUFFIX);
+    }
+}
@@ -0,0 +1,39 @@
+package org.example.booksfrog.ledger;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Token balances of the users. Every operation fails with a {@link RuntimeException} when the user has no token
+ * row yet; {@link org.example.booksfrog.service.TokenService} creates it.
+ * <p>
+ * Balances include the daily tokens once a day has passed since {@code lastReset}. They are written to the balance,
+ * and {@code lastReset} moved, only by the next debit, so granting them costs nothing. {@code lastReset} moves by
+ * whole days, so the grants stay on one daily schedule however late the debit taking them comes.
+ */
+public interface TokenLedger {
+
+    int balance(Long userId);
+
+    // When the daily tokens were last granted, null if never
+    LocalDateTime lastReset(Long userId);
+
+    // Throws InsufficientTokensException if the balance is lower than the amount
+    void debit(Long userId, int amount);
+
+    void credit(Long userId, int amount);
+
+    static boolean grantDue(LocalDateTime lastReset, LocalDateTime now) {
+        return lastReset == null || lastReset.isBefore(now.minusDays(1));
+    }
+
+    // Where lastReset moves when a due grant is taken: the last whole day after it, or now for the first grant
+    static LocalDateTime grantedAt(LocalDateTime lastReset, LocalDateTime now) {
+        return lastReset == null ? now : lastReset.plusDays(Duration.between(lastReset, now).toDays());
+    }
+
+    // When the daily tokens after those already counted in the balance become due
+    static LocalDateTime nextGrant(LocalDateTime lastReset, LocalDateTime now) {
+        return (grantDue(lastReset, now) ? grantedAt(lastReset, now) : lastReset).plusDays(1);
+    }
+}
@@ -1,11 +1,16 @@
 package org.example.booksfrog.mapper;
 
 import org.example.booksfrog.dto.BookDTO;
+import org.example.booksfrog.dto.BookSummary;
 import org.example.booksfrog.model.Book;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 
 public class BookMapper {
 
+    private static final String COVER_PATH = "/api/books/{id}/cover";
+
     // Private constructor to prevent instantiation
     private BookMapper() {
         throw new UnsupportedOperationException("Utility class");
@@ -21,11 +26,49 @@ public class BookMapper {
                 .title(book.getTitle())
                 .author(book.getAuthor())
                 .summary(book.getSummary())
-                .coverImage(book.getCoverImage()) // Already Base64 encoded in the `getCoverImage` method
+                .coverImage(coverUrl(book.getId(), book.getContentVersion(), book.getHasCover()))
                 .categoryId(book.getCategoryId())
                 .categoryName(book.getCategory() != null ? book.getCategory().getName() : null) // Add categoryName
                 .views(book.getViews())
                 .totalPages(book.getTotalPages())
                 .build();
     }
+
+    public static BookDTO toDTO(BookSummary summary) {
+        if (summary == null) {
+            return null;
+        }
+
+        return BookDTO.builder()
+                .id(summary.getId())
+                .title(summary.getTitle())
+                .author(summary.getAuthor())
+                .summary(summary.getSummary())
+                .coverImage(coverUrl(summary.getId(), summary.getContentVersion(), summary.getHasCover()))
+                .categoryId(summary.getCategoryId())
+                .categoryName(summary.getCategoryName())
+                .views(summary.getViews())
+                .totalPages(summary.getTotalPages())
+                .build();
+    }
+
+    /**
+     * URL of a book's cover image, or null if it has none. The version query parameter changes whenever the
+     * book is updated, so clients can cache the image for as long as the URL stays the same.
+     */
+    public static String coverUrl(Long bookId, Long contentVersion, Boolean hasCover) {
+        if (!Boolean.TRUE.equals(hasCover)) {
+            return null;
+        }
+        long version = contentVersion != null ? contentVersion : 0;
+        if (RequestContextHolder.getRequestAttributes() == null) {
+            // Outside of a request there is no host to resolve against
+            return COVER_PATH.replace("{id}", String.valueOf(bookId)) + "?v=" + version;
+        }
+        return ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path(COVER_PATH)
+                .queryParam("v", version)
+                .buildAndExpand(bookId)
+                .toUriString();
+    }
 }
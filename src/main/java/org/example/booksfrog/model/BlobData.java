@@ -0,0 +1,23 @@
+package org.example.booksfrog.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+// A stored file of the database blob store, keyed by the SHA-256 of its bytes
+@Entity
+@Table(name = "blob_data")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BlobData {
+
+    @Id
+    @Column(length = 64)
+    private String hash;
+
+    @Column(name = "byte_size", nullable = false)
+    private long size;
+
+    @Lob
+    private byte[] data;
+}
@@ -3,7 +3,6 @@ package org.example.booksfrog.model;
 import lombok.*;
 import jakarta.persistence.*;
 
-import java.util.Base64;
 import java.util.List;
 
 @Entity
@@ -11,6 +10,11 @@ import java.util.List;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
+// Keyset listings seek on (sort key, id); the category listing uses the foreign key index, which InnoDB extends with the id
+@Table(indexes = {
+        @Index(name = "idx_book_title_id", columnList = "title, id"),
+        @Index(name = "idx_book_views_id", columnList = "views, id")
+})
 public class Book {
 
     @Id
@@ -26,12 +30,16 @@ public class Book {
     @Lob
     private String summary;
 
-    @Lob
+    // Upload carriers only: the bytes are stored in BookContent, never loaded with the catalog row
+    @Transient
     private byte[] content;
 
-    @Lob
+    @Transient
     private byte[] cover;
 
+    @Column(name = "has_cover")
+    private Boolean hasCover;
+
     @ManyToOne(fetch = FetchType.EAGER)
     @JoinColumn(name = "category_id")
     private Category category;
@@ -39,12 +47,17 @@ public class Book {
     @OneToMany(mappedBy = "book")
     List<Favorite> favorites;
 
-    @Column(nullable = false, columnDefinition = "int default 0")
+    // Only ViewCounter's batched increment writes it, so saving an edited book can't wipe flushed views
+    @Column(nullable = false, updatable = false, columnDefinition = "int default 0")
     private int views;
 
     @Column(name = "total_pages", nullable = true)
     private Integer totalPages;
 
+    // Bumped whenever the book is updated, so clients can cache content derived from it
+    @Column(name = "content_version")
+    private Long contentVersion;
+
 
     public Book(Long id, String title, String author, String summary, byte[] cover, Long categoryId) {
         this.id = id;
@@ -52,6 +65,7 @@ public class Book {
         this.author = author;
         this.summary = summary;
         this.cover = cover;
+        this.hasCover = cover != null;
         this.category = new Category();
         this.category.setId(categoryId);
     }
@@ -59,8 +73,4 @@ public class Book {
     public Long getCategoryId() {
         return category != null ? category.getId() : null;
     }
-
-    public String getCoverImage() {
-        return cover != null ? "data:image/jpeg;base64," + Base64.getEncoder().encodeToString(cover) : null;
-    }
 }
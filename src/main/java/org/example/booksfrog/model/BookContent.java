@@ -0,0 +1,26 @@
+package org.example.booksfrog.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+// Which stored blobs hold a book's PDF and cover; the bytes themselves live in the blob store
+@Entity
+@Table(name = "book_content")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BookContent {
+
+    // Same value as the book's id; no association, so loading a book can never pull this row in
+    @Id
+    @Column(name = "book_id")
+    private Long bookId;
+
+    // SHA-256 of the PDF, null if the book has none
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    @Column(name = "cover_hash", length = 64)
+    private String coverHash;
+}
@@ -0,0 +1,29 @@
+package org.example.booksfrog.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+// A stored PDF or cover shared by every book that uploaded the same bytes, with what was derived from it once
+@Entity
+@Table(name = "content_blob")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ContentBlob {
+
+    @Id
+    @Column(length = 64)
+    private String hash;
+
+    // Book PDFs and covers pointing at this blob; it is deleted when this drops to zero
+    @Column(name = "ref_count", nullable = false)
+    private int refCount;
+
+    @Column(name = "byte_size", nullable = false)
+    private long size;
+
+    // Null for covers, and for PDFs stored before page counts were kept here
+    @Column(name = "page_count")
+    private Integer pageCount;
+}
@@ -12,6 +12,11 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 public class Token {
 
+    // Granted once a day; counted in the balance as soon as it is due, and written with the next debit
+    public static final int DAILY_TOKENS = 50;
+
+    public static final int PREMIUM_DAILY_TOKENS = 100;
+
     @Id
     @Column(name = "user_id")
     private Long userId;
@@ -30,6 +35,14 @@ public class Token {
     @Column(name = "last_reset")
     private LocalDateTime lastReset;
 
+    // Last token journal segment written to this row, when balances are kept in memory
+    @Column(name = "ledger_seq")
+    private Long ledgerSeq;
+
+    public static int dailyTokensFor(User user) {
+        return user.isPremium() ? PREMIUM_DAILY_TOKENS : DAILY_TOKENS;
+    }
+
     public Token(User user, int dailyTokens, int totalTokens) {
         this.user = user;
         this.dailyTokens = dailyTokens;
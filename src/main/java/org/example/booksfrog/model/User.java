@@ -1,5 +1,6 @@
 package org.example.booksfrog.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.*;
 import jakarta.persistence.*;
 import java.time.LocalDateTime;
@@ -30,6 +31,10 @@ public class User {
 
     private Boolean isPremium;
 
+    // Carried by the JWTs issued to the user; bumping it revokes them
+    @JsonIgnore
+    private Integer tokenVersion;
+
     @OneToOne(mappedBy = "user", cascade = CascadeType.ALL, orphanRemoval = true)
     private Token token;
 
@@ -47,4 +52,8 @@ public class User {
     public boolean isPremium() {
         return this.isPremium;
     }
+
+    public int currentTokenVersion() {
+        return tokenVersion == null ? 0 : tokenVersion;
+    }
 }
@@ -0,0 +1,30 @@
+package org.example.booksfrog.repository;
+
+import org.example.booksfrog.model.BlobData;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface BlobDataRepository extends JpaRepository<BlobData, String> {
+
+    @Query("SELECT b.data FROM BlobData b WHERE b.hash = :hash")
+    Optional<byte[]> findDataByHash(String hash);
+
+    @Query("SELECT b.size FROM BlobData b WHERE b.hash = :hash")
+    Optional<Long> findSizeByHash(String hash);
+
+    // Reads part of a blob in the database; offset is 1-based, as in SQL
+    @Query(value = "SELECT SUBSTRING(data, :offset, :length) FROM blob_data WHERE hash = :hash", nativeQuery = true)
+    byte[] findChunk(String hash, long offset, int length);
+
+    @Query("SELECT b.hash FROM BlobData b")
+    List<String> findAllHashes();
+
+    // Bulk delete, so the blob is not loaded just to be removed
+    @Modifying
+    @Query("DELETE FROM BlobData b WHERE b.hash = :hash")
+    void deleteByHash(String hash);
+}
@@ -0,0 +1,29 @@
+package org.example.booksfrog.repository;
+
+import org.example.booksfrog.model.BookContent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface BookContentRepository extends JpaRepository<BookContent, Long> {
+
+    @Query("SELECT c.contentHash FROM BookContent c WHERE c.bookId = :bookId")
+    Optional<String> findContentHashByBookId(Long bookId);
+
+    @Query("SELECT c.coverHash FROM BookContent c WHERE c.bookId = :bookId")
+    Optional<String> findCoverHashByBookId(Long bookId);
+
+    @Query("SELECT DISTINCT c.contentHash FROM BookContent c WHERE c.contentHash IS NOT NULL")
+    List<String> findReferencedContentHashes();
+
+    @Query("SELECT DISTINCT c.coverHash FROM BookContent c WHERE c.coverHash IS NOT NULL")
+    List<String> findReferencedCoverHashes();
+
+    // Bulk delete, so the row is not loaded just to be removed
+    @Modifying
+    @Query("DELETE FROM BookContent c WHERE c.bookId = :bookId")
+    void deleteByBookId(Long bookId);
+}
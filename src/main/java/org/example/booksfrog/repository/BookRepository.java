@@ -1,25 +1,112 @@
 package org.example.booksfrog.repository;
 
+import org.example.booksfrog.dto.BookSearchDocument;
+import org.example.booksfrog.dto.BookSummary;
 import org.example.booksfrog.model.Book;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface BookRepository extends JpaRepository<Book, Long> {
 
-    List<Book> findByCategory_Id(Long categoryId);
-    @Query(value = "SELECT * FROM book ORDER BY id DESC LIMIT 12", nativeQuery = true)
-    List<Book> findLast12Books();
+    // Catalog columns only; listings must never read book_content
+    String SUMMARY_SELECT = "SELECT new org.example.booksfrog.dto.BookSummary("
+            + "b.id, b.title, b.author, b.summary, b.hasCover, b.contentVersion, c.id, c.name, b.views, b.totalPages) "
+            + "FROM Book b LEFT JOIN b.category c";
 
-    // Custom query methods for searching with pagination
-    Page<Book> findByTitleContainingIgnoreCase(String title, Pageable pageable);
+    String SEARCH_DOCUMENT_SELECT = "SELECT new org.example.booksfrog.dto.BookSearchDocument("
+            + "b.id, b.title, b.author, b.summary, c.id, c.name, b.views) "
+            + "FROM Book b LEFT JOIN b.category c";
 
-    Page<Book> findByAuthorContainingIgnoreCase(String author, Pageable pageable);
+    String TITLE_MATCHES = "LOWER(b.title) LIKE LOWER(CONCAT('%', :title, '%'))";
 
-    @Query("SELECT b FROM Book b WHERE b.category.name LIKE %:categoryName%")
-    Page<Book> findByCategoryNameContainingIgnoreCase(String categoryName, Pageable pageable);
+    String AUTHOR_MATCHES = "LOWER(b.author) LIKE LOWER(CONCAT('%', :author, '%'))";
+
+    String CATEGORY_MATCHES = "c.name LIKE CONCAT('%', :categoryName, '%')";
+
+    @Query(SUMMARY_SELECT + " WHERE b.id IN :ids")
+    List<BookSummary> findSummariesByIds(Collection<Long> ids);
+
+    @Query(SUMMARY_SELECT + " WHERE c.id = :categoryId")
+    List<BookSummary> findSummariesByCategoryId(Long categoryId);
+
+    @Query(SUMMARY_SELECT + " ORDER BY b.id DESC")
+    List<BookSummary> findLatestSummaries(Pageable pageable);
+
+    @Query(value = SUMMARY_SELECT, countQuery = "SELECT COUNT(b) FROM Book b")
+    Page<BookSummary> findAllSummaries(Pageable pageable);
+
+    // Searches used until the in-memory index is built
+    @Query(value = SUMMARY_SELECT + " WHERE " + TITLE_MATCHES,
+            countQuery = "SELECT COUNT(b) FROM Book b WHERE " + TITLE_MATCHES)
+    Page<BookSummary> searchSummariesByTitle(String title, Pageable pageable);
+
+    @Query(value = SUMMARY_SELECT + " WHERE " + AUTHOR_MATCHES,
+            countQuery = "SELECT COUNT(b) FROM Book b WHERE " + AUTHOR_MATCHES)
+    Page<BookSummary> searchSummariesByAuthor(String author, Pageable pageable);
+
+    @Query(value = SUMMARY_SELECT + " WHERE " + CATEGORY_MATCHES,
+            countQuery = "SELECT COUNT(b) FROM Book b JOIN b.category c WHERE " + CATEGORY_MATCHES)
+    Page<BookSummary> searchSummariesByCategoryName(String categoryName, Pageable pageable);
+
+    @Query(SUMMARY_SELECT + " WHERE " + TITLE_MATCHES + " AND b.id > :afterId ORDER BY b.id")
+    List<BookSummary> searchSummariesByTitleAfter(String title, long afterId, Pageable pageable);
+
+    @Query(SUMMARY_SELECT + " WHERE " + AUTHOR_MATCHES + " AND b.id > :afterId ORDER BY b.id")
+    List<BookSummary> searchSummariesByAuthorAfter(String author, long afterId, Pageable pageable);
+
+    @Query(SUMMARY_SELECT + " WHERE " + CATEGORY_MATCHES + " AND b.id > :afterId ORDER BY b.id")
+    List<BookSummary> searchSummariesByCategoryNameAfter(String categoryName, long afterId, Pageable pageable);
+
+    // Type-ahead used until the in-memory index is built: distinct titles starting with the prefix, most viewed first
+    @Query("SELECT b.title FROM Book b WHERE LOWER(b.title) LIKE LOWER(CONCAT(:prefix, '%')) "
+            + "GROUP BY b.title ORDER BY MAX(b.views) DESC, b.title")
+    List<String> findTitlesStartingWith(String prefix, Pageable pageable);
+
+    @Query("SELECT COUNT(b) FROM Book b WHERE " + TITLE_MATCHES)
+    long countByTitleMatching(String title);
+
+    @Query("SELECT COUNT(b) FROM Book b WHERE " + AUTHOR_MATCHES)
+    long countByAuthorMatching(String author);
+
+    @Query("SELECT COUNT(b) FROM Book b JOIN b.category c WHERE " + CATEGORY_MATCHES)
+    long countByCategoryNameMatching(String categoryName);
+
+    // Keyset pages: each seeks past the (sort key, id) of the previous page's last book on an index in that order
+    @Query(SUMMARY_SELECT + " WHERE b.id > :afterId ORDER BY b.id")
+    List<BookSummary> findSummariesAfterId(long afterId, Pageable pageable);
+
+    @Query(SUMMARY_SELECT + " WHERE b.title >= :title AND (b.title > :title OR b.id > :afterId) ORDER BY b.title, b.id")
+    List<BookSummary> findSummariesAfterTitle(String title, long afterId, Pageable pageable);
+
+    @Query(SUMMARY_SELECT + " WHERE b.views <= :views AND (b.views < :views OR b.id < :beforeId)"
+            + " ORDER BY b.views DESC, b.id DESC")
+    List<BookSummary> findSummariesBeforeViews(int views, long beforeId, Pageable pageable);
+
+    @Query(SUMMARY_SELECT + " WHERE c.id = :categoryId AND b.id > :afterId ORDER BY b.id")
+    List<BookSummary> findSummariesByCategoryIdAfter(Long categoryId, long afterId, Pageable pageable);
+
+    long countByCategory_Id(Long categoryId);
+
+    // Keyset batches for building the search index
+    @Query(SEARCH_DOCUMENT_SELECT + " WHERE b.id > :afterId ORDER BY b.id")
+    List<BookSearchDocument> findSearchDocumentsAfter(Long afterId, Pageable pageable);
+
+    @Query(SEARCH_DOCUMENT_SELECT + " WHERE b.id = :id")
+    Optional<BookSearchDocument> findSearchDocumentById(Long id);
+
+    @Query(SEARCH_DOCUMENT_SELECT + " WHERE c.id = :categoryId")
+    List<BookSearchDocument> findSearchDocumentsByCategoryId(Long categoryId);
+
+    @Query("SELECT b.id FROM Book b WHERE b.totalPages IS NULL OR b.totalPages = 0")
+    List<Long> findIdsWithoutTotalPages();
+
+    @Query("SELECT COALESCE(b.contentVersion, 0) FROM Book b WHERE b.id = :id")
+    Optional<Long> findContentVersionById(Long id);
 
 }
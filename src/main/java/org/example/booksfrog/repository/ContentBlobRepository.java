@@ -0,0 +1,45 @@
+package org.example.booksfrog.repository;
+
+import org.example.booksfrog.model.ContentBlob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface ContentBlobRepository extends JpaRepository<ContentBlob, String> {
+
+    // Reference counts change in the database, so concurrent uploads of the same file can't lose an update. The
+    // upsert creates the row of a new blob or counts one more reference, and keeps the row locked until commit.
+    @Modifying
+    @Query(value = "INSERT INTO content_blob (hash, ref_count, byte_size, page_count) VALUES (:hash, 1, :size, NULL) "
+            + "ON DUPLICATE KEY UPDATE ref_count = ref_count + 1", nativeQuery = true)
+    void acquireReference(String hash, long size);
+
+    @Modifying
+    @Query("UPDATE ContentBlob b SET b.refCount = b.refCount - 1 WHERE b.hash = :hash")
+    int decrementRefCount(String hash);
+
+    // Locks the blob's row until commit and reads its latest reference count
+    @Query(value = "SELECT ref_count FROM content_blob WHERE hash = :hash FOR UPDATE", nativeQuery = true)
+    Optional<Integer> lockRefCount(String hash);
+
+    // Returns 1 if the blob had no reference left and its metadata was removed
+    @Modifying
+    @Query("DELETE FROM ContentBlob b WHERE b.hash = :hash AND b.refCount <= 0")
+    int deleteIfUnreferenced(String hash);
+
+    @Query("SELECT b.pageCount FROM ContentBlob b WHERE b.hash = :hash")
+    Optional<Integer> findPageCountByHash(String hash);
+
+    @Modifying
+    @Query("UPDATE ContentBlob b SET b.pageCount = :pageCount WHERE b.hash = :hash")
+    void updatePageCount(String hash, Integer pageCount);
+
+    @Query("SELECT b.pageCount FROM ContentBlob b, BookContent c WHERE c.bookId = :bookId AND b.hash = c.contentHash")
+    Optional<Integer> findPageCountByBookId(Long bookId);
+
+    @Query("SELECT b.hash FROM ContentBlob b")
+    List<String> findAllHashes();
+}
@@ -2,9 +2,36 @@ package org.example.booksfrog.repository;
 
 import org.example.booksfrog.model.Token;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+
 @Repository
 public interface TokenRepository extends JpaRepository<Token, Long> {
-}
 
+    String GRANT_DUE = "(t.lastReset IS NULL OR t.lastReset < :cutoff)";
+
+    // The daily tokens still owed to the row, 0 if they were granted since the cutoff
+    String DUE_TOKENS = "(CASE WHEN " + GRANT_DUE + " THEN (SELECT CASE WHEN u.isPremium = true THEN "
+            + Token.PREMIUM_DAILY_TOKENS + " ELSE " + Token.DAILY_TOKENS + " END FROM User u WHERE u.id = t.userId)"
+            + " ELSE 0 END)";
+
+    // TokenLedger.grantedAt: the last whole day after lastReset, or now for the first grant
+    String GRANTED_AT = "(CASE WHEN t.lastReset IS NULL THEN :now"
+            + " ELSE timestampadd(day, cast(floor(timestampdiff(second, t.lastReset, :now) / 86400) as integer),"
+            + " t.lastReset) END)";
+
+    // Balances change in the database in one statement, so concurrent charges can't lose an update or overdraw.
+    // A daily grant that is due is added by the same statement; totalTokens is set first, while lastReset is old.
+    @Modifying
+    @Query("UPDATE Token t SET t.totalTokens = t.totalTokens + " + DUE_TOKENS + " - :amount,"
+            + " t.lastReset = CASE WHEN " + GRANT_DUE + " THEN " + GRANTED_AT + " ELSE t.lastReset END"
+            + " WHERE t.userId = :userId AND t.totalTokens + " + DUE_TOKENS + " >= :amount")
+    int debit(Long userId, int amount, LocalDateTime now, LocalDateTime cutoff);
+
+    @Modifying
+    @Query("UPDATE Token t SET t.totalTokens = t.totalTokens + :amount WHERE t.userId = :userId")
+    int credit(Long userId, int amount);
+}
@@ -2,9 +2,19 @@ package org.example.booksfrog.repository;
 
 import org.example.booksfrog.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByUsername(String username);
     Optional<User> findByEmail(String email);
+
+    @Query("SELECT COALESCE(u.tokenVersion, 0) FROM User u WHERE u.id = :id")
+    Optional<Integer> findTokenVersionById(Long id);
+
+    @Modifying
+    @Query("UPDATE User u SET u.tokenVersion = COALESCE(u.tokenVersion, 0) + 1 WHERE u.id = :id")
+    int incrementTokenVersion(Long id);
 }
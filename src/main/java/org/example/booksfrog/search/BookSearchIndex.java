@@ -0,0 +1,546 @@
+package org.example.booksfrog.search;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.example.booksfrog.dto.BookSearchDocument;
+import org.example.booksfrog.dto.BookSuggestion;
+import org.example.booksfrog.repository.BookRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over the title, author, summary and category name of every book, so searches don't
+ * scan the book table with {@code LIKE '%term%'}. Built from the database at startup and kept current by
+ * re-reading a book once a transaction that changed it commits.
+ */
+@Component
+public class BookSearchIndex implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(BookSearchIndex.class);
+
+    private static final int REBUILD_BATCH_SIZE = 1000;
+
+    private final BookRepository bookRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Guarded by lock
+    private Segment segment = new Segment();
+
+    private volatile boolean ready;
+
+    private volatile boolean rebuilding;
+
+    // Books changed while a rebuild was reading the catalog; read again once the new segment is in place
+    private final Set<Long> changedDuringRebuild = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public BookSearchIndex(BookRepository bookRepository) {
+        this.bookRepository = bookRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        try {
+            rebuild();
+        } catch (DataAccessException e) {
+            // Searches keep going to the database until the index is built
+            log.warn("Could not build the search index", e);
+        }
+    }
+
+    // Load every book into a new segment and swap it in; searches use the old one in the meantime
+    public void rebuild() {
+        rebuilding = true;
+        changedDuringRebuild.clear();
+        try {
+            Segment fresh = new Segment();
+            long lastId = 0;
+            List<BookSearchDocument> batch;
+            do {
+                batch = bookRepository.findSearchDocumentsAfter(lastId, PageRequest.of(0, REBUILD_BATCH_SIZE));
+                for (BookSearchDocument document : batch) {
+                    fresh.put(document);
+                    lastId = document.getId();
+                }
+            } while (batch.size() == REBUILD_BATCH_SIZE);
+            fresh.trim();
+
+            lock.writeLock().lock();
+            try {
+                segment = fresh;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            ready = true;
+            log.info("Search index built with {} books", fresh.size());
+        } finally {
+            rebuilding = false;
+        }
+        for (Long bookId : changedDuringRebuild) {
+            refreshNow(bookId);
+        }
+        changedDuringRebuild.clear();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Ids of the matching books, in id order. Titles and authors match when they contain the query as a substring,
+     * ignoring case, accents and punctuation; other fields when they contain every word of it. An empty query
+     * matches every book.
+     */
+    public Page<Long> search(SearchField field, String query, Pageable pageable) {
+        long[] matches;
+        lock.readLock().lock();
+        try {
+            matches = segment.find(field, query);
+        } finally {
+            lock.readLock().unlock();
+        }
+        Arrays.sort(matches);
+        int from = pageable.isPaged() ? (int) Math.min(pageable.getOffset(), matches.length) : 0;
+        int to = pageable.isPaged() ? Math.min(from + pageable.getPageSize(), matches.length) : matches.length;
+        List<Long> ids = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            ids.add(matches[i]);
+        }
+        return new PageImpl<>(ids, pageable, matches.length);
+    }
+
+    // The first matches with an id above afterId, in id order, for keyset pages over search results
+    public List<Long> searchAfter(SearchField field, String query, long afterId, int limit) {
+        long[] matches;
+        lock.readLock().lock();
+        try {
+            matches = segment.find(field, query);
+        } finally {
+            lock.readLock().unlock();
+        }
+        Arrays.sort(matches);
+        int from = Arrays.binarySearch(matches, afterId);
+        from = from >= 0 ? from + 1 : -from - 1;
+        int to = (int) Math.min((long) from + limit, matches.length);
+        List<Long> ids = new ArrayList<>(Math.max(to - from, 0));
+        for (int i = from; i < to; i++) {
+            ids.add(matches[i]);
+        }
+        return ids;
+    }
+
+    // Re-read a book after the current transaction commits; a book that no longer exists is removed
+    public void refreshBook(Long bookId) {
+        afterCommit(() -> refreshNow(bookId));
+    }
+
+    // Re-read the books of a category, whose name is part of their indexed text
+    public void refreshCategory(Long categoryId) {
+        afterCommit(() -> bookRepository.findSearchDocumentsByCategoryId(categoryId)
+                .forEach(document -> refreshNow(document.getId())));
+    }
+
+    void refreshNow(Long bookId) {
+        if (rebuilding) {
+            changedDuringRebuild.add(bookId);
+        }
+        Optional<BookSearchDocument> document = bookRepository.findSearchDocumentById(bookId);
+        lock.writeLock().lock();
+        try {
+            if (document.isPresent()) {
+                segment.put(document.get());
+            } else {
+                segment.remove(bookId);
+            }
+            segment.compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Count views saved since the book was indexed towards its rank tie-breaker and its completions
+    public void addViews(Long bookId, long views) {
+        if (rebuilding) {
+            changedDuringRebuild.add(bookId);
+        }
+        lock.writeLock().lock();
+        try {
+            segment.addViews(bookId, views);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return segment.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("booksfrog.search.documents", this, BookSearchIndex::size)
+                .description("Books in the in-memory search index")
+                .register(registry);
+    }
+
+    /**
+     * Ids of the books best matching any word of the query across all fields, best first, at most {@code limit}.
+     */
+    public long[] rank(String query, int limit) {
+        List<String> terms = TextAnalyzer.tokenize(query);
+        lock.readLock().lock();
+        try {
+            return segment.rank(terms, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Type-ahead completions of titles, authors and category names starting with the prefix, most viewed first
+    public List<BookSuggestion> suggest(String prefix, int limit) {
+        lock.readLock().lock();
+        try {
+            return segment.suggest(prefix, limit).stream()
+                    .map(entry -> new BookSuggestion(entry.getText(), entry.getField()))
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The index data. Every book gets an ordinal, and each term maps to the ordinals of the books containing it.
+     * An updated book gets a new ordinal and the old one is marked dead; dead ordinals are squeezed out once they
+     * outnumber the live ones.
+     */
+    static final class Segment {
+
+        private static final int MIN_DEAD_TO_COMPACT = 1024;
+
+        // BM25 term frequency saturation and length normalisation
+        private static final double K1 = 1.2;
+        private static final double B = 0.75;
+
+        private static final SearchField[] FIELDS = SearchField.values();
+
+        // Fields users search with fragments of words
+        private static final Set<SearchField> SUBSTRING_FIELDS = EnumSet.of(SearchField.TITLE, SearchField.AUTHOR);
+
+        // Fields offered as type-ahead completions
+        private static final SearchField[] SUGGESTED_FIELDS = {SearchField.TITLE, SearchField.AUTHOR, SearchField.CATEGORY};
+
+        private final Map<SearchField, Map<String, IntPostingList>> postings = new EnumMap<>(SearchField.class);
+
+        private final Map<SearchField, TrigramIndex> substrings = new EnumMap<>(SearchField.class);
+
+        private final SuggestionTrie suggestions = new SuggestionTrie();
+
+        // The completions each live ordinal counts towards, to take back when it dies
+        private SuggestionTrie.Entry[][] suggested = new SuggestionTrie.Entry[16][];
+
+        private final Map<Long, Integer> ordinalsByBookId = new HashMap<>();
+
+        private long[] bookIds = new long[16];
+
+        private int[] views = new int[16];
+
+        // Words per field of every ordinal, and their sum over live books, for length normalisation
+        private final int[][] fieldLengths = new int[FIELDS.length][16];
+
+        private final long[] liveFieldLengths = new long[FIELDS.length];
+
+        private final BitSet live = new BitSet();
+
+        private int nextOrdinal;
+
+        private int deadCount;
+
+        Segment() {
+            for (SearchField field : SearchField.values()) {
+                postings.put(field, new HashMap<>());
+            }
+            for (SearchField field : SUBSTRING_FIELDS) {
+                substrings.put(field, new TrigramIndex());
+            }
+        }
+
+        void put(BookSearchDocument document) {
+            remove(document.getId());
+            int ordinal = nextOrdinal++;
+            if (ordinal == bookIds.length) {
+                resize(bookIds.length * 2);
+            }
+            bookIds[ordinal] = document.getId();
+            views[ordinal] = document.getViews();
+            ordinalsByBookId.put(document.getId(), ordinal);
+            live.set(ordinal);
+            for (SearchField field : FIELDS) {
+                Map<String, IntPostingList> terms = postings.get(field);
+                List<String> tokens = TextAnalyzer.tokenize(field.valueOf(document));
+                for (String term : tokens) {
+                    terms.computeIfAbsent(term, t -> IntPostingList.withFrequencies()).add(ordinal);
+                }
+                fieldLengths[field.ordinal()][ordinal] = tokens.size();
+                liveFieldLengths[field.ordinal()] += tokens.size();
+            }
+            substrings.forEach((field, index) -> index.add(ordinal, TextAnalyzer.fold(field.valueOf(document))));
+            SuggestionTrie.Entry[] entries = new SuggestionTrie.Entry[SUGGESTED_FIELDS.length];
+            for (int i = 0; i < SUGGESTED_FIELDS.length; i++) {
+                String text = SUGGESTED_FIELDS[i].valueOf(document);
+                entries[i] = text == null ? null : suggestions.add(text, SUGGESTED_FIELDS[i], document.getViews());
+            }
+            suggested[ordinal] = entries;
+        }
+
+        void remove(Long bookId) {
+            Integer ordinal = ordinalsByBookId.remove(bookId);
+            if (ordinal != null) {
+                live.clear(ordinal);
+                deadCount++;
+                for (SearchField field : FIELDS) {
+                    liveFieldLengths[field.ordinal()] -= fieldLengths[field.ordinal()][ordinal];
+                }
+                for (SuggestionTrie.Entry entry : suggested[ordinal]) {
+                    if (entry != null) {
+                        suggestions.remove(entry, views[ordinal]);
+                    }
+                }
+                suggested[ordinal] = null;
+            }
+        }
+
+        void addViews(Long bookId, long added) {
+            Integer ordinal = ordinalsByBookId.get(bookId);
+            if (ordinal == null) {
+                return;
+            }
+            int total = (int) Math.min((long) views[ordinal] + added, Integer.MAX_VALUE);
+            for (SuggestionTrie.Entry entry : suggested[ordinal]) {
+                if (entry != null) {
+                    suggestions.addWeight(entry, total - views[ordinal]);
+                }
+            }
+            views[ordinal] = total;
+        }
+
+        private void resize(int capacity) {
+            bookIds = Arrays.copyOf(bookIds, capacity);
+            views = Arrays.copyOf(views, capacity);
+            suggested = Arrays.copyOf(suggested, capacity);
+            for (int field = 0; field < FIELDS.length; field++) {
+                fieldLengths[field] = Arrays.copyOf(fieldLengths[field], capacity);
+            }
+        }
+
+        int size() {
+            return ordinalsByBookId.size();
+        }
+
+        List<SuggestionTrie.Entry> suggest(String prefix, int limit) {
+            return suggestions.complete(prefix, limit);
+        }
+
+        int suggestionCount() {
+            return suggestions.size();
+        }
+
+        long[] find(SearchField field, String query) {
+            TrigramIndex substringIndex = substrings.get(field);
+            if (substringIndex == null) {
+                return match(field, TextAnalyzer.tokenize(query));
+            }
+            String folded = TextAnalyzer.fold(query);
+            if (folded.isEmpty()) {
+                return match(field, List.of());
+            }
+            return Arrays.stream(substringIndex.match(folded, live)).mapToLong(ordinal -> bookIds[ordinal]).toArray();
+        }
+
+        long[] match(SearchField field, List<String> terms) {
+            if (terms.isEmpty()) {
+                return live.stream().mapToLong(ordinal -> bookIds[ordinal]).toArray();
+            }
+            List<IntPostingList> lists = new ArrayList<>(terms.size());
+            for (String term : terms) {
+                IntPostingList list = postings.get(field).get(term);
+                if (list == null) {
+                    return new long[0];
+                }
+                lists.add(list);
+            }
+            // Walk the rarest term and probe the others
+            lists.sort(Comparator.comparingInt(IntPostingList::size));
+            IntPostingList rarest = lists.get(0);
+            long[] matches = new long[rarest.size()];
+            int count = 0;
+            for (int i = 0; i < rarest.size(); i++) {
+                int ordinal = rarest.get(i);
+                if (live.get(ordinal) && containedInAll(lists, ordinal)) {
+                    matches[count++] = bookIds[ordinal];
+                }
+            }
+            return Arrays.copyOf(matches, count);
+        }
+
+        private static boolean containedInAll(List<IntPostingList> lists, int ordinal) {
+            for (int i = 1; i < lists.size(); i++) {
+                if (!lists.get(i).contains(ordinal)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * BM25 over every field, each weighted by its boost; books matching any term are candidates. Ties are
+         * broken by views, then by id. Only the best {@code limit} are kept while scoring.
+         */
+        long[] rank(List<String> terms, int limit) {
+            int liveCount = size();
+            if (liveCount == 0 || terms.isEmpty() || limit <= 0) {
+                return new long[0];
+            }
+            // Sparse, so a query only touches the books it matches
+            ScoreAccumulator scores = new ScoreAccumulator();
+            for (SearchField field : FIELDS) {
+                double averageLength = (double) liveFieldLengths[field.ordinal()] / liveCount;
+                if (averageLength == 0) {
+                    continue;
+                }
+                int[] lengths = fieldLengths[field.ordinal()];
+                for (String term : new LinkedHashSet<>(terms)) {
+                    IntPostingList list = postings.get(field).get(term);
+                    if (list == null) {
+                        continue;
+                    }
+                    // Dead ordinals still count towards the document frequency until the next compaction
+                    int documentFrequency = Math.min(list.size(), liveCount);
+                    double idf = Math.log(1 + (liveCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+                    for (int i = 0; i < list.size(); i++) {
+                        int ordinal = list.get(i);
+                        if (!live.get(ordinal)) {
+                            continue;
+                        }
+                        int tf = list.frequency(i);
+                        double norm = tf * (K1 + 1) / (tf + K1 * (1 - B + B * lengths[ordinal] / averageLength));
+                        scores.add(ordinal, field.getBoost() * idf * norm);
+                    }
+                }
+            }
+
+            // Ranks match numbers rather than ordinals, so scores are read without a lookup
+            TopK best = new TopK(Math.min(limit, scores.size()), (a, b) -> {
+                if (scores.score(a) != scores.score(b)) {
+                    return scores.score(a) < scores.score(b);
+                }
+                int ordinalA = scores.ordinal(a);
+                int ordinalB = scores.ordinal(b);
+                if (views[ordinalA] != views[ordinalB]) {
+                    return views[ordinalA] < views[ordinalB];
+                }
+                return bookIds[ordinalA] > bookIds[ordinalB];
+            });
+            for (int match = 0; match < scores.size(); match++) {
+                best.offer(match);
+            }
+            return Arrays.stream(best.drainBestFirst()).mapToLong(match -> bookIds[scores.ordinal(match)]).toArray();
+        }
+
+        // Release the spare capacity of the posting lists after a bulk load
+        void trim() {
+            postings.values().forEach(terms -> terms.values().forEach(IntPostingList::trim));
+            substrings.values().forEach(TrigramIndex::trim);
+        }
+
+        void compactIfNeeded() {
+            if (deadCount >= MIN_DEAD_TO_COMPACT && deadCount > ordinalsByBookId.size()) {
+                compact();
+            }
+        }
+
+        void compact() {
+            int[] remap = new int[nextOrdinal];
+            int next = 0;
+            for (int ordinal = 0; ordinal < nextOrdinal; ordinal++) {
+                remap[ordinal] = live.get(ordinal) ? next++ : -1;
+            }
+            for (Map<String, IntPostingList> terms : postings.values()) {
+                terms.values().forEach(list -> list.remap(remap));
+                terms.values().removeIf(list -> list.size() == 0);
+            }
+            for (TrigramIndex index : substrings.values()) {
+                index.remap(remap, next);
+            }
+            int capacity = Math.max(next, 16);
+            long[] compactedIds = new long[capacity];
+            int[] compactedViews = new int[capacity];
+            int[][] compactedLengths = new int[FIELDS.length][capacity];
+            SuggestionTrie.Entry[][] compactedSuggested = new SuggestionTrie.Entry[capacity][];
+            for (int ordinal = 0; ordinal < nextOrdinal; ordinal++) {
+                int mapped = remap[ordinal];
+                if (mapped >= 0) {
+                    compactedIds[mapped] = bookIds[ordinal];
+                    compactedViews[mapped] = views[ordinal];
+                    compactedSuggested[mapped] = suggested[ordinal];
+                    for (int field = 0; field < FIELDS.length; field++) {
+                        compactedLengths[field][mapped] = fieldLengths[field][ordinal];
+                    }
+                }
+            }
+            bookIds = compactedIds;
+            views = compactedViews;
+            suggested = compactedSuggested;
+            System.arraycopy(compactedLengths, 0, fieldLengths, 0, FIELDS.length);
+            ordinalsByBookId.replaceAll((bookId, ordinal) -> remap[ordinal]);
+            live.clear();
+            live.set(0, next);
+            nextOrdinal = next;
+            deadCount = 0;
+        }
+    }
+}
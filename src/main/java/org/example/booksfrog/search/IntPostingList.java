@@ -0,0 +1,91 @@
+package org.example.booksfrog.search;
+
+import java.util.Arrays;
+
+/**
+ * Ascending list of document ordinals in a plain {@code int[]}, four bytes per posting instead of a boxed
+ * {@code Long} per entry. Ordinals are handed out in increasing order, so appending keeps the list sorted.
+ * Lists of scored terms also count how often the term occurs in each document.
+ */
+final class IntPostingList {
+
+    private int[] docs = new int[2];
+
+    // Null when frequencies are not needed
+    private short[] frequencies;
+
+    private int size;
+
+    static IntPostingList withFrequencies() {
+        IntPostingList list = new IntPostingList();
+        list.frequencies = new short[2];
+        return list;
+    }
+
+    void add(int doc) {
+        if (size > 0 && docs[size - 1] >= doc) {
+            // Term repeated in the same document
+            if (frequencies != null && docs[size - 1] == doc && frequencies[size - 1] < Short.MAX_VALUE) {
+                frequencies[size - 1]++;
+            }
+            return;
+        }
+        if (size == docs.length) {
+            resize(size + (size >> 1) + 1);
+        }
+        docs[size] = doc;
+        if (frequencies != null) {
+            frequencies[size] = 1;
+        }
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int get(int index) {
+        return docs[index];
+    }
+
+    int frequency(int index) {
+        return frequencies == null ? 1 : frequencies[index];
+    }
+
+    boolean contains(int doc) {
+        return Arrays.binarySearch(docs, 0, size, doc) >= 0;
+    }
+
+    // Drop the spare capacity left by growing, once no more postings are expected soon
+    void trim() {
+        if (docs.length > size) {
+            resize(Math.max(size, 1));
+        }
+    }
+
+    // Renumber after a compaction; ordinals mapped to -1 are dropped. Remapping preserves the order.
+    void remap(int[] ordinals) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            int mapped = ordinals[docs[i]];
+            if (mapped >= 0) {
+                docs[kept] = mapped;
+                if (frequencies != null) {
+                    frequencies[kept] = frequencies[i];
+                }
+                kept++;
+            }
+        }
+        size = kept;
+        if (docs.length > size * 2) {
+            resize(Math.max(size, 2));
+        }
+    }
+
+    private void resize(int capacity) {
+        docs = Arrays.copyOf(docs, capacity);
+        if (frequencies != null) {
+            frequencies = Arrays.copyOf(frequencies, capacity);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package org.example.booksfrog.search;
+
+import java.util.Arrays;
+
+/**
+ * Scores of the documents matched by one query, in an open-addressing table keyed by ordinal, so scoring costs
+ * grow with the postings read rather than with the catalog. Matches are numbered in the order they were first
+ * scored, and read back by that number.
+ */
+final class ScoreAccumulator {
+
+    private static final int FREE = -1;
+
+    // Match number of each slot's ordinal, FREE if the slot is empty; kept at most half full
+    private int[] slots = newSlots(64);
+
+    private int[] ordinals = new int[32];
+
+    private double[] scores = new double[32];
+
+    private int size;
+
+    void add(int ordinal, double score) {
+        int mask = slots.length - 1;
+        int slot = mix(ordinal) & mask;
+        while (slots[slot] != FREE) {
+            int match = slots[slot];
+            if (ordinals[match] == ordinal) {
+                scores[match] += score;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size == ordinals.length) {
+            ordinals = Arrays.copyOf(ordinals, size * 2);
+            scores = Arrays.copyOf(scores, size * 2);
+        }
+        ordinals[size] = ordinal;
+        scores[size] = score;
+        slots[slot] = size++;
+        if (size * 2 > slots.length) {
+            rehash(slots.length * 2);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    int ordinal(int match) {
+        return ordinals[match];
+    }
+
+    double score(int match) {
+        return scores[match];
+    }
+
+    private void rehash(int capacity) {
+        slots = newSlots(capacity);
+        int mask = capacity - 1;
+        for (int match = 0; match < size; match++) {
+            int slot = mix(ordinals[match]) & mask;
+            while (slots[slot] != FREE) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = match;
+        }
+    }
+
+    private static int[] newSlots(int capacity) {
+        int[] slots = new int[capacity];
+        Arrays.fill(slots, FREE);
+        return slots;
+    }
+
+    // Ordinals are dense and sequential; spread them so neighbours don't probe the same run of slots
+    private static int mix(int ordinal) {
+        int hash = ordinal * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,30 @@
+package org.example.booksfrog.search;
+
+import org.example.booksfrog.dto.BookSearchDocument;
+
+import java.util.function.Function;
+
+// Book fields kept in the search index, with the weight a match in each carries in ranked queries
+public enum SearchField {
+    TITLE(BookSearchDocument::getTitle, 3.0),
+    AUTHOR(BookSearchDocument::getAuthor, 2.0),
+    SUMMARY(BookSearchDocument::getSummary, 1.0),
+    CATEGORY(BookSearchDocument::getCategoryName, 1.5);
+
+    private final Function<BookSearchDocument, String> extractor;
+
+    private final double boost;
+
+    SearchField(Function<BookSearchDocument, String> extractor, double boost) {
+        this.extractor = extractor;
+        this.boost = boost;
+    }
+
+    public double getBoost() {
+        return boost;
+    }
+
+    public String valueOf(BookSearchDocument document) {
+        return extractor.apply(document);
+    }
+}
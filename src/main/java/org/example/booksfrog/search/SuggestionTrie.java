@@ -0,0 +1,301 @@
+package org.example.booksfrog.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Radix trie over the folded titles, authors and category names, for type-ahead. Each distinct text is one entry
+ * weighted by the views of the books carrying it, and every node remembers the heaviest entry below it, so the top
+ * completions of a prefix are found best first without walking the whole subtree.
+ */
+final class SuggestionTrie {
+
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private static final Entry[] NO_ENTRIES = new Entry[0];
+
+    static final class Entry {
+
+        private final String text;
+
+        private final SearchField field;
+
+        private long weight;
+
+        private int books;
+
+        private Entry(String text, SearchField field) {
+            this.text = text;
+            this.field = field;
+        }
+
+        String getText() {
+            return text;
+        }
+
+        SearchField getField() {
+            return field;
+        }
+
+        long getWeight() {
+            return weight;
+        }
+    }
+
+    private static final class Node {
+
+        // The characters on the edge leading into this node
+        private String label;
+
+        private Node[] children = NO_CHILDREN;
+
+        // Entries whose folded text ends exactly here, at most one per field
+        private Entry[] entries = NO_ENTRIES;
+
+        private long best = -1;
+
+        private Node(String label) {
+            this.label = label;
+        }
+    }
+
+    private record Candidate(long weight, Node node, Entry entry) {
+    }
+
+    private final Node root = new Node("");
+
+    private int entryCount;
+
+    /**
+     * Count a book's text towards its entry, creating it on first sight.
+     *
+     * @return the entry, to hand back to {@link #remove} when the book changes; null if the text has no words.
+     */
+    Entry add(String text, SearchField field, long weight) {
+        String key = TextAnalyzer.fold(text);
+        if (key.isEmpty()) {
+            return null;
+        }
+        List<Node> path = new ArrayList<>();
+        Node node = insert(key, path);
+        Entry entry = null;
+        for (Entry candidate : node.entries) {
+            if (candidate.field == field) {
+                entry = candidate;
+            }
+        }
+        if (entry == null) {
+            entry = new Entry(text.trim(), field);
+            node.entries = Arrays.copyOf(node.entries, node.entries.length + 1);
+            node.entries[node.entries.length - 1] = entry;
+            entryCount++;
+        }
+        entry.books++;
+        entry.weight += weight;
+        updateBest(path);
+        return entry;
+    }
+
+    // Take back what add counted for one book; the entry goes away with its last book
+    void remove(Entry entry, long weight) {
+        List<Node> path = new ArrayList<>();
+        if (!find(TextAnalyzer.fold(entry.text), path, true)) {
+            return;
+        }
+        Node node = path.get(path.size() - 1);
+        entry.books--;
+        entry.weight -= weight;
+        if (entry.books <= 0) {
+            node.entries = Arrays.stream(node.entries).filter(e -> e != entry).toArray(Entry[]::new);
+            entryCount--;
+            prune(path);
+        }
+        updateBest(path);
+    }
+
+    // Add views counted since the entry's books were indexed
+    void addWeight(Entry entry, long weight) {
+        List<Node> path = new ArrayList<>();
+        if (!find(TextAnalyzer.fold(entry.text), path, true)) {
+            return;
+        }
+        entry.weight += weight;
+        updateBest(path);
+    }
+
+    int size() {
+        return entryCount;
+    }
+
+    // The heaviest entries whose folded text starts with the folded prefix, heaviest first
+    List<Entry> complete(String prefix, int limit) {
+        String key = TextAnalyzer.fold(prefix);
+        List<Entry> results = new ArrayList<>();
+        if (key.isEmpty() || limit <= 0) {
+            return results;
+        }
+        List<Node> path = new ArrayList<>();
+        if (!find(key, path, false)) {
+            return results;
+        }
+
+        // Nodes are expanded in order of the best entry below them, so entries come out heaviest first
+        PriorityQueue<Candidate> queue = new PriorityQueue<>((a, b) -> {
+            if (a.weight != b.weight) {
+                return Long.compare(b.weight, a.weight);
+            }
+            return Boolean.compare(a.entry == null, b.entry == null);
+        });
+        queue.add(new Candidate(path.get(path.size() - 1).best, path.get(path.size() - 1), null));
+        while (!queue.isEmpty() && results.size() < limit) {
+            Candidate candidate = queue.poll();
+            if (candidate.entry != null) {
+                results.add(candidate.entry);
+                continue;
+            }
+            for (Entry entry : candidate.node.entries) {
+                queue.add(new Candidate(entry.weight, null, entry));
+            }
+            for (Node child : candidate.node.children) {
+                queue.add(new Candidate(child.best, child, null));
+            }
+        }
+        return results;
+    }
+
+    // Walks down to the node for the key, splitting an edge if the key ends or forks inside it
+    private Node insert(String key, List<Node> path) {
+        Node node = root;
+        path.add(node);
+        int position = 0;
+        while (position < key.length()) {
+            int index = childIndex(node, key.charAt(position));
+            if (index < 0) {
+                Node child = new Node(key.substring(position));
+                addChild(node, -index - 1, child);
+                path.add(child);
+                return child;
+            }
+            Node child = node.children[index];
+            int common = commonPrefix(child.label, key, position);
+            if (common < child.label.length()) {
+                Node split = new Node(child.label.substring(0, common));
+                child.label = child.label.substring(common);
+                split.children = new Node[]{child};
+                split.best = child.best;
+                node.children[index] = split;
+                child = split;
+            }
+            node = child;
+            path.add(node);
+            position += common;
+        }
+        return node;
+    }
+
+    /**
+     * Collect the nodes on the way to the key. An exact lookup must end on a node; a prefix lookup may end inside
+     * an edge, in which case the node below that edge is the last one collected.
+     */
+    private boolean find(String key, List<Node> path, boolean exact) {
+        Node node = root;
+        path.add(node);
+        int position = 0;
+        while (position < key.length()) {
+            int index = childIndex(node, key.charAt(position));
+            if (index < 0) {
+                return false;
+            }
+            node = node.children[index];
+            int common = commonPrefix(node.label, key, position);
+            path.add(node);
+            if (common < node.label.length()) {
+                return !exact && position + common == key.length();
+            }
+            position += common;
+        }
+        return true;
+    }
+
+    // Drop nodes left with nothing below them, and merge a node into its only child to keep edges compressed
+    private void prune(List<Node> path) {
+        for (int i = path.size() - 1; i > 0; i--) {
+            Node node = path.get(i);
+            Node parent = path.get(i - 1);
+            if (node.entries.length > 0) {
+                return;
+            }
+            int index = childIndex(parent, node.label.charAt(0));
+            if (node.children.length == 0) {
+                parent.children = removeChild(parent.children, index);
+                path.remove(i);
+            } else if (node.children.length == 1) {
+                Node child = node.children[0];
+                child.label = node.label + child.label;
+                parent.children[index] = child;
+                path.set(i, child);
+                return;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private static void updateBest(List<Node> path) {
+        for (int i = path.size() - 1; i >= 0; i--) {
+            Node node = path.get(i);
+            long best = -1;
+            for (Entry entry : node.entries) {
+                best = Math.max(best, entry.weight);
+            }
+            for (Node child : node.children) {
+                best = Math.max(best, child.best);
+            }
+            node.best = best;
+        }
+    }
+
+    // Children are kept sorted by their first character; returns -(insertion point) - 1 when absent
+    private static int childIndex(Node node, char first) {
+        int low = 0;
+        int high = node.children.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char c = node.children[mid].label.charAt(0);
+            if (c < first) {
+                low = mid + 1;
+            } else if (c > first) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private static void addChild(Node node, int at, Node child) {
+        Node[] children = new Node[node.children.length + 1];
+        System.arraycopy(node.children, 0, children, 0, at);
+        children[at] = child;
+        System.arraycopy(node.children, at, children, at + 1, node.children.length - at);
+        node.children = children;
+    }
+
+    private static Node[] removeChild(Node[] children, int at) {
+        Node[] remaining = new Node[children.length - 1];
+        System.arraycopy(children, 0, remaining, 0, at);
+        System.arraycopy(children, at + 1, remaining, at, children.length - at - 1);
+        return remaining;
+    }
+
+    private static int commonPrefix(String label, String key, int offset) {
+        int length = Math.min(label.length(), key.length() - offset);
+        int i = 0;
+        while (i < length && label.charAt(i) == key.charAt(offset + i)) {
+            i++;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,62 @@
+package org.example.booksfrog.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+// Turns text into the terms the search index stores: lower case, accents removed, split on anything but letters and digits
+public final class TextAnalyzer {
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    private TextAnalyzer() {
+        throw new UnsupportedOperationException("Utility class");
+    }
+
+    // Lower case without accents, so "Émile" and "emile" are the same text
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        return COMBINING_MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    // Normalized text with every run of other characters turned into one space, for substring matching
+    public static String fold(String text) {
+        String normalized = normalize(text);
+        StringBuilder folded = new StringBuilder(normalized.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < normalized.length(); i++) {
+            char c = normalized.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (pendingSpace && folded.length() > 0) {
+                    folded.append(' ');
+                }
+                folded.append(c);
+                pendingSpace = false;
+            } else {
+                pendingSpace = true;
+            }
+        }
+        return folded.toString();
+    }
+
+    public static List<String> tokenize(String text) {
+        String normalized = normalize(text);
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= normalized.length(); i++) {
+            boolean wordChar = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(normalized.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+}
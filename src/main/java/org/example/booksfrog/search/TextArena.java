@@ -0,0 +1,87 @@
+package org.example.booksfrog.search;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The text of one field for every ordinal, stored as UTF-8 in a single byte array rather than a String per book.
+ * Replaced texts stay in the array until the next compaction.
+ */
+final class TextArena {
+
+    private byte[] bytes = new byte[1024];
+
+    private int used;
+
+    private int[] offsets = new int[16];
+
+    private int[] lengths = new int[16];
+
+    void set(int ordinal, String text) {
+        byte[] encoded = text.getBytes(StandardCharsets.UTF_8);
+        if (ordinal >= offsets.length) {
+            int capacity = Math.max(ordinal + 1, offsets.length * 2);
+            offsets = Arrays.copyOf(offsets, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+        }
+        if (used + encoded.length > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(used + encoded.length, bytes.length * 2));
+        }
+        System.arraycopy(encoded, 0, bytes, used, encoded.length);
+        offsets[ordinal] = used;
+        lengths[ordinal] = encoded.length;
+        used += encoded.length;
+    }
+
+    String get(int ordinal) {
+        return new String(bytes, offsets[ordinal], lengths[ordinal], StandardCharsets.UTF_8);
+    }
+
+    // UTF-8 never matches in the middle of a character, so a byte search finds exactly the substring matches
+    boolean contains(int ordinal, byte[] needle) {
+        int start = offsets[ordinal];
+        int last = start + lengths[ordinal] - needle.length;
+        outer:
+        for (int i = start; i <= last; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                if (bytes[i + j] != needle[j]) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    // Keep only the texts of ordinals that survive a compaction, under their new numbers
+    void remap(int[] ordinals, int count) {
+        byte[] compacted = new byte[Math.max(1024, usedBy(ordinals))];
+        int[] newOffsets = new int[Math.max(16, count)];
+        int[] newLengths = new int[Math.max(16, count)];
+        int position = 0;
+        for (int ordinal = 0; ordinal < ordinals.length; ordinal++) {
+            int mapped = ordinals[ordinal];
+            if (mapped < 0) {
+                continue;
+            }
+            System.arraycopy(bytes, offsets[ordinal], compacted, position, lengths[ordinal]);
+            newOffsets[mapped] = position;
+            newLengths[mapped] = lengths[ordinal];
+            position += lengths[ordinal];
+        }
+        bytes = compacted;
+        offsets = newOffsets;
+        lengths = newLengths;
+        used = position;
+    }
+
+    private int usedBy(int[] ordinals) {
+        int total = 0;
+        for (int ordinal = 0; ordinal < ordinals.length; ordinal++) {
+            if (ordinals[ordinal] >= 0) {
+                total += lengths[ordinal];
+            }
+        }
+        return total;
+    }
+}
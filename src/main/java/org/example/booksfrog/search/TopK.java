@@ -0,0 +1,85 @@
+package org.example.booksfrog.search;
+
+/**
+ * Keeps the best k of a stream of ordinals in a heap whose root is the worst one kept, so finding the top results
+ * costs O(n log k) and k slots of memory however many documents match.
+ */
+final class TopK {
+
+    @FunctionalInterface
+    interface Order {
+        // True if a ranks below b
+        boolean ranksBelow(int a, int b);
+    }
+
+    private final int[] heap;
+
+    private final Order order;
+
+    private int size;
+
+    TopK(int k, Order order) {
+        this.heap = new int[k];
+        this.order = order;
+    }
+
+    void offer(int ordinal) {
+        if (heap.length == 0) {
+            return;
+        }
+        if (size < heap.length) {
+            heap[size] = ordinal;
+            siftUp(size++);
+        } else if (order.ranksBelow(heap[0], ordinal)) {
+            heap[0] = ordinal;
+            siftDown(0);
+        }
+    }
+
+    // Empties the heap, best first
+    int[] drainBestFirst() {
+        int[] result = new int[size];
+        for (int i = size - 1; i >= 0; i--) {
+            result[i] = heap[0];
+            heap[0] = heap[--size];
+            siftDown(0);
+        }
+        return result;
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (!order.ranksBelow(heap[index], heap[parent])) {
+                return;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int worst = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < size && order.ranksBelow(heap[left], heap[worst])) {
+                worst = left;
+            }
+            if (right < size && order.ranksBelow(heap[right], heap[worst])) {
+                worst = right;
+            }
+            if (worst == index) {
+                return;
+            }
+            swap(index, worst);
+            index = worst;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int tmp = heap[a];
+        heap[a] = heap[b];
+        heap[b] = tmp;
+    }
+}
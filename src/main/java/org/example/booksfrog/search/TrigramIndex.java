@@ -0,0 +1,81 @@
+package org.example.booksfrog.search;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Substring index over one field. Every three-character window of the folded text points to the ordinals that
+ * contain it; a query's trigrams narrow the candidates and the stored text confirms the match, so fragments like
+ * "tolk" find "Tolkien" without scanning every book.
+ */
+final class TrigramIndex {
+
+    private final Map<Long, IntPostingList> postings = new HashMap<>();
+
+    private final TextArena texts = new TextArena();
+
+    void add(int ordinal, String folded) {
+        texts.set(ordinal, folded);
+        for (int i = 0; i + 3 <= folded.length(); i++) {
+            postings.computeIfAbsent(trigram(folded, i), t -> new IntPostingList()).add(ordinal);
+        }
+    }
+
+    // Ordinals among the live ones whose text contains the folded query
+    int[] match(String folded, BitSet live) {
+        byte[] needle = folded.getBytes(StandardCharsets.UTF_8);
+        if (folded.length() < 3) {
+            // Too short for a trigram: check every live text
+            return live.stream().filter(ordinal -> texts.contains(ordinal, needle)).toArray();
+        }
+        List<IntPostingList> lists = new ArrayList<>();
+        for (int i = 0; i + 3 <= folded.length(); i++) {
+            IntPostingList list = postings.get(trigram(folded, i));
+            if (list == null) {
+                return new int[0];
+            }
+            lists.add(list);
+        }
+        lists.sort(Comparator.comparingInt(IntPostingList::size));
+        IntPostingList rarest = lists.get(0);
+        int[] matches = new int[rarest.size()];
+        int count = 0;
+        candidates:
+        for (int i = 0; i < rarest.size(); i++) {
+            int ordinal = rarest.get(i);
+            if (!live.get(ordinal)) {
+                continue;
+            }
+            for (int j = 1; j < lists.size(); j++) {
+                if (!lists.get(j).contains(ordinal)) {
+                    continue candidates;
+                }
+            }
+            // Having every trigram doesn't mean they are in the right order
+            if (texts.contains(ordinal, needle)) {
+                matches[count++] = ordinal;
+            }
+        }
+        return Arrays.copyOf(matches, count);
+    }
+
+    void trim() {
+        postings.values().forEach(IntPostingList::trim);
+    }
+
+    void remap(int[] ordinals, int count) {
+        postings.values().forEach(list -> list.remap(ordinals));
+        postings.values().removeIf(list -> list.size() == 0);
+        texts.remap(ordinals, count);
+    }
+
+    private static long trigram(String text, int start) {
+        return ((long) text.charAt(start) << 32) | ((long) text.charAt(start + 1) << 16) | text.charAt(start + 2);
+    }
+}
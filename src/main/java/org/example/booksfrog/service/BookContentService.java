@@ -0,0 +1,159 @@
+package org.example.booksfrog.service;
+
+import org.example.booksfrog.model.BookContent;
+import org.example.booksfrog.repository.BookContentRepository;
+import org.example.booksfrog.repository.ContentBlobRepository;
+import org.example.booksfrog.storage.BlobStore;
+import org.example.booksfrog.storage.ContentHash;
+import org.example.booksfrog.storage.StoredContent;
+import org.example.booksfrog.util.PdfUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Optional;
+
+/**
+ * Owns the PDFs and covers of books. The bytes go to the configured {@link BlobStore} under their SHA-256 and
+ * {@code book_content} only records which blobs belong to which book, so identical files are stored once.
+ * Each blob has a {@link ContentBlob} row counting the books that use it and holding what was derived from it,
+ * like the page count, so a duplicate upload is neither stored nor parsed again. A blob is removed when its last
+ * reference goes away.
+ * <p>
+ * Uploads take their reference before writing the bytes, and a blob's bytes are only deleted once its row has been
+ * deleted with no reference left. Both hold the row lock, so an upload racing the removal of the same file either
+ * keeps the blob alive or writes the bytes again after they were deleted.
+ */
+@Service
+public class BookContentService {
+
+    private final BookContentRepository bookContentRepository;
+
+    private final ContentBlobRepository contentBlobRepository;
+
+    private final BlobStore blobStore;
+
+    private final int chunkBytes;
+
+    // Removes unreferenced blobs in their own transaction, once the one that released them has committed
+    private final TransactionTemplate purgeTransaction;
+
+    @Autowired
+    public BookContentService(BookContentRepository bookContentRepository, ContentBlobRepository contentBlobRepository,
+                              BlobStore blobStore, PlatformTransactionManager transactionManager,
+                              @Value("${booksfrog.content.chunk-bytes:1048576}") int chunkBytes) {
+        this.bookContentRepository = bookContentRepository;
+        this.contentBlobRepository = contentBlobRepository;
+        this.blobStore = blobStore;
+        this.chunkBytes = chunkBytes;
+        this.purgeTransaction = new TransactionTemplate(transactionManager);
+        this.purgeTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    // Store a book's PDF and cover; a null argument keeps what the book already has
+    @Transactional
+    public void store(Long bookId, byte[] content, byte[] cover) {
+        if (content == null && cover == null) {
+            return;
+        }
+        BookContent row = bookContentRepository.findById(bookId)
+                .orElseGet(() -> new BookContent(bookId, null, null));
+        // New references are taken before the old ones are dropped, so re-uploading the same file keeps its blob
+        String previousContent = row.getContentHash();
+        String previousCover = row.getCoverHash();
+        if (content != null) {
+            row.setContentHash(acquire(content, true));
+        }
+        if (cover != null) {
+            row.setCoverHash(acquire(cover, false));
+        }
+        bookContentRepository.save(row);
+        if (content != null) {
+            release(previousContent);
+        }
+        if (cover != null) {
+            release(previousCover);
+        }
+    }
+
+    public Optional<byte[]> getContent(Long bookId) {
+        return bookContentRepository.findContentHashByBookId(bookId).flatMap(blobStore::get);
+    }
+
+    public Optional<byte[]> getCover(Long bookId) {
+        return bookContentRepository.findCoverHashByBookId(bookId).flatMap(blobStore::get);
+    }
+
+    // Page count of the book's PDF as counted when the file was first stored, empty if unknown
+    public Optional<Integer> getPageCount(Long bookId) {
+        return contentBlobRepository.findPageCountByBookId(bookId);
+    }
+
+    // The book's PDF resolved for streaming, empty if the book has none
+    public Optional<StoredContent> findContent(Long bookId) {
+        return bookContentRepository.findContentHashByBookId(bookId)
+                .flatMap(hash -> blobStore.size(hash)
+                        .map(size -> new StoredContent(blobStore, hash, size, chunkBytes)));
+    }
+
+    @Transactional
+    public void delete(Long bookId) {
+        Optional<BookContent> row = bookContentRepository.findById(bookId);
+        if (row.isEmpty()) {
+            return;
+        }
+        bookContentRepository.deleteByBookId(bookId);
+        release(row.get().getContentHash());
+        release(row.get().getCoverHash());
+    }
+
+    // Take a reference on the bytes, then store them if they are missing; PDFs are only parsed the first time
+    private String acquire(byte[] data, boolean pdf) {
+        String hash = ContentHash.sha256(data);
+        // An upsert racing a purge of the same row can find it gone and count nothing (H2 does not retry it as an
+        // insert), so it is repeated until the row is there and locked by this transaction
+        do {
+            contentBlobRepository.acquireReference(hash, data.length);
+        } while (contentBlobRepository.lockRefCount(hash).isEmpty());
+        // Written under the row lock, so no purge can delete the file between the existence check and the commit
+        blobStore.put(data);
+        if (pdf && contentBlobRepository.findPageCountByHash(hash).isEmpty()) {
+            contentBlobRepository.updatePageCount(hash, PdfUtils.getPageCount(data));
+        }
+        return hash;
+    }
+
+    // Drop a reference; the blob is removed once the release has committed, if nothing points to it anymore
+    private void release(String hash) {
+        if (hash == null) {
+            return;
+        }
+        contentBlobRepository.decrementRefCount(hash);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    purgeIfUnreferenced(hash);
+                }
+            });
+        } else {
+            purgeIfUnreferenced(hash);
+        }
+    }
+
+    // The bytes go while the row delete holds its lock, so an upload of the same file waits and stores them again
+    private void purgeIfUnreferenced(String hash) {
+        purgeTransaction.executeWithoutResult(status -> {
+            boolean unreferenced = contentBlobRepository.lockRefCount(hash).map(refCount -> refCount <= 0).orElse(false);
+            if (unreferenced && contentBlobRepository.deleteIfUnreferenced(hash) > 0) {
+                blobStore.delete(hash);
+            }
+        });
+    }
+}
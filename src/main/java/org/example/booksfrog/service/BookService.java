@@ -1,32 +1,71 @@
 package org.example.booksfrog.service;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+import org.example.booksfrog.dto.BookCursor;
 import org.example.booksfrog.dto.BookDTO;
+import org.example.booksfrog.dto.BookSuggestion;
+import org.example.booksfrog.dto.BookSummary;
+import org.example.booksfrog.dto.CursorPage;
 import org.example.booksfrog.mapper.BookMapper;
 import org.example.booksfrog.model.Book;
 import org.example.booksfrog.model.Category;
 import org.example.booksfrog.repository.BookRepository;
 import org.example.booksfrog.repository.CategoryRepository;
-import org.example.booksfrog.util.PdfUtils;
+import org.example.booksfrog.search.BookSearchIndex;
+import org.example.booksfrog.search.SearchField;
+import org.example.booksfrog.trending.TrendingTracker;
+import org.example.booksfrog.trending.TrendingWindow;
+import org.example.booksfrog.util.PageImageCache;
+import org.example.booksfrog.util.PdfDocumentPool;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 @Service
 public class BookService {
 
+    private static final int MAX_CURSOR_PAGE_SIZE = 100;
 
     private final BookRepository bookRepository;
 
+    private final BookContentService bookContentService;
+
     private final CategoryRepository categoryRepository;
 
+    private final PageImageCache pageImageCache;
+
+    private final PdfDocumentPool pdfDocumentPool;
+
+    private final BookSearchIndex bookSearchIndex;
+
+    private final LatestBooksFeed latestBooksFeed;
+
+    private final TrendingTracker trendingTracker;
+
     @Autowired
-    public BookService(BookRepository bookRepository, CategoryRepository categoryRepository) {
+    public BookService(BookRepository bookRepository, BookContentService bookContentService,
+                       CategoryRepository categoryRepository, PageImageCache pageImageCache,
+                       PdfDocumentPool pdfDocumentPool, BookSearchIndex bookSearchIndex,
+                       LatestBooksFeed latestBooksFeed, TrendingTracker trendingTracker) {
         this.bookRepository = bookRepository;
+        this.bookContentService = bookContentService;
         this.categoryRepository = categoryRepository;
+        this.pageImageCache = pageImageCache;
+        this.pdfDocumentPool = pdfDocumentPool;
+        this.bookSearchIndex = bookSearchIndex;
+        this.latestBooksFeed = latestBooksFeed;
+        this.trendingTracker = trendingTracker;
     }
 
     // Fetch a book by its ID
@@ -36,37 +75,90 @@ public class BookService {
 
     // New: Fetch only the content (PDF bytes) of a book by its ID
     public byte[] getBookContentById(Long id) {
+        Optional<byte[]> content = bookContentService.getContent(id);
+        if (content.isPresent()) {
+            return content.get();
+        }
         // You might want to throw an exception if not found
-        Book book = bookRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Book not found with ID " + id));
+        if (!bookRepository.existsById(id)) {
+            throw new RuntimeException("Book not found with ID " + id);
+        }
+        return null; // No PDF was uploaded
+    }
 
-        return book.getContent(); // Could be null if no PDF was uploaded
+    // Cover image bytes of a book, empty if the book has no cover
+    public Optional<byte[]> getBookCoverById(Long id) {
+        return bookContentService.getCover(id);
     }
 
     // Create a new book
+    @Transactional
     public Book createBook(Book book) {
+        book.setHasCover(book.getCover() != null);
+        Book saved = bookRepository.save(book);
+        if (book.getContent() != null || book.getCover() != null) {
+            bookContentService.store(saved.getId(), book.getContent(), book.getCover());
+        }
         if (book.getContent() != null) {
-            book.setTotalPages(PdfUtils.getPageCount(book.getContent()));
+            // Counted once per distinct PDF, duplicates reuse the stored count
+            saved.setTotalPages(bookContentService.getPageCount(saved.getId()).orElse(0));
+            saved = bookRepository.save(saved);
         }
-        return bookRepository.save(book);
+        bookSearchIndex.refreshBook(saved.getId());
+        latestBooksFeed.invalidate();
+        return saved;
     }
 
     // Delete a book by its ID
+    @Transactional
     public void deleteBook(Long id) {
+        bookContentService.delete(id);
         bookRepository.deleteById(id);
+        evictRenderState(id);
+        bookSearchIndex.refreshBook(id);
+        latestBooksFeed.invalidate();
+    }
+
+    // Version of a book's content, used to build cache validators without loading the content
+    public Optional<Long> getContentVersion(Long id) {
+        return bookRepository.findContentVersionById(id);
     }
 
-    // Update an existing book
+    // Update an existing book; content and cover are only replaced when new ones are sent
+    @Transactional
     public Book updateBook(Book book) {
+        Optional<Book> current = bookRepository.findById(book.getId());
+        bookContentService.store(book.getId(), book.getContent(), book.getCover());
         if (book.getContent() != null) {
-            book.setTotalPages(PdfUtils.getPageCount(book.getContent()));
+            book.setTotalPages(bookContentService.getPageCount(book.getId()).orElse(0));
+        } else if (current.isPresent()) {
+            book.setTotalPages(current.get().getTotalPages());
         }
-        return bookRepository.save(book);
+        if (book.getCover() != null) {
+            book.setHasCover(true);
+        } else {
+            book.setHasCover(current.map(Book::getHasCover).orElse(false));
+        }
+        // The column is not written on update; this only keeps the returned book truthful
+        current.ifPresent(existing -> book.setViews(existing.getViews()));
+        long currentVersion = bookRepository.findContentVersionById(book.getId()).orElse(0L);
+        book.setContentVersion(currentVersion + 1);
+        Book saved = bookRepository.save(book);
+        // Rendered pages and open documents of the previous content must not be used anymore
+        evictRenderState(book.getId());
+        bookSearchIndex.refreshBook(book.getId());
+        latestBooksFeed.invalidate();
+        return saved;
+    }
+
+    private void evictRenderState(Long bookId) {
+        pdfDocumentPool.invalidate(bookId);
+        pageImageCache.invalidateBook(bookId);
     }
 
     // Fetch the latest 12 books
     public List<BookDTO> getLast12Books() {
-        return bookRepository.findLast12Books()
+        return bookRepository.findLatestSummaries(PageRequest.of(0, 12))
                 .stream()
                 .map(BookMapper::toDTO)
                 .toList();
@@ -77,8 +169,90 @@ public class BookService {
 
     // Fetch all books with pagination
     public Page<BookDTO> getAllBooks(int page, int size) {
-        Page<Book> bookPage = bookRepository.findAll(PageRequest.of(page, size));
-        return bookPage.map(BookMapper::toDTO);
+        return bookRepository.findAllSummaries(PageRequest.of(page, size))
+                .map(BookMapper::toDTO);
+    }
+
+    /**
+     * Keyset pages over the whole catalog: each page seeks past the cursor of the previous one instead of skipping
+     * rows, so deep pages cost the same as the first. The total is only counted when asked for.
+     */
+    public CursorPage<BookDTO> getBooksAfter(String cursor, int requestedSize, BookCursor.Order order,
+                                             boolean withTotal) {
+        BookCursor after = decodeCursor(cursor, order);
+        int size = boundedPageSize(requestedSize);
+        Pageable limit = PageRequest.of(0, size + 1);
+        List<BookSummary> rows = switch (order) {
+            case ID -> bookRepository.findSummariesAfterId(after == null ? 0 : after.getId(), limit);
+            case TITLE -> after == null
+                    ? bookRepository.findSummariesAfterTitle("", 0, limit)
+                    : bookRepository.findSummariesAfterTitle(after.getKey(), after.getId(), limit);
+            case POPULAR -> after == null
+                    ? bookRepository.findSummariesBeforeViews(Integer.MAX_VALUE, Long.MAX_VALUE, limit)
+                    : bookRepository.findSummariesBeforeViews(Integer.parseInt(after.getKey()), after.getId(), limit);
+        };
+        return cursorPage(rows, size, order, withTotal ? bookRepository.count() : null);
+    }
+
+    // Keyset pages of a search, in id order
+    public CursorPage<BookDTO> searchBooksAfter(SearchField field, String query, String cursor, int requestedSize,
+                                                boolean withTotal) {
+        BookCursor after = decodeCursor(cursor, BookCursor.Order.ID);
+        int size = boundedPageSize(requestedSize);
+        long afterId = after == null ? 0 : after.getId();
+        if (bookSearchIndex.isReady()) {
+            List<Long> ids = bookSearchIndex.searchAfter(field, query, afterId, size + 1);
+            boolean hasMore = ids.size() > size;
+            List<Long> pageIds = hasMore ? ids.subList(0, size) : ids;
+            String next = hasMore ? new BookCursor(BookCursor.Order.ID, pageIds.get(size - 1), "").encode() : null;
+            Long total = withTotal ? bookSearchIndex.search(field, query, PageRequest.of(0, 1)).getTotalElements() : null;
+            return new CursorPage<>(loadInOrder(pageIds), next, total);
+        }
+        Pageable limit = PageRequest.of(0, size + 1);
+        List<BookSummary> rows;
+        Long total;
+        switch (field) {
+            case TITLE -> {
+                rows = bookRepository.searchSummariesByTitleAfter(query, afterId, limit);
+                total = withTotal ? bookRepository.countByTitleMatching(query) : null;
+            }
+            case AUTHOR -> {
+                rows = bookRepository.searchSummariesByAuthorAfter(query, afterId, limit);
+                total = withTotal ? bookRepository.countByAuthorMatching(query) : null;
+            }
+            case CATEGORY -> {
+                rows = bookRepository.searchSummariesByCategoryNameAfter(query, afterId, limit);
+                total = withTotal ? bookRepository.countByCategoryNameMatching(query) : null;
+            }
+            default -> throw new IllegalArgumentException("Books can't be searched by " + field);
+        }
+        return cursorPage(rows, size, BookCursor.Order.ID, total);
+    }
+
+    // Keyset pages of a category, in id order
+    public CursorPage<BookDTO> getBooksByCategoryIdAfter(Long categoryId, String cursor, int requestedSize,
+                                                         boolean withTotal) {
+        BookCursor after = decodeCursor(cursor, BookCursor.Order.ID);
+        int size = boundedPageSize(requestedSize);
+        List<BookSummary> rows = bookRepository.findSummariesByCategoryIdAfter(categoryId,
+                after == null ? 0 : after.getId(), PageRequest.of(0, size + 1));
+        return cursorPage(rows, size, BookCursor.Order.ID, withTotal ? bookRepository.countByCategory_Id(categoryId) : null);
+    }
+
+    private static int boundedPageSize(int size) {
+        return Math.max(1, Math.min(size, MAX_CURSOR_PAGE_SIZE));
+    }
+
+    private static BookCursor decodeCursor(String cursor, BookCursor.Order order) {
+        return cursor == null || cursor.isBlank() ? null : BookCursor.decode(cursor, order);
+    }
+
+    // Rows are fetched one past the page size; if that extra row came back there is a next page
+    private static CursorPage<BookDTO> cursorPage(List<BookSummary> rows, int size, BookCursor.Order order, Long total) {
+        boolean hasMore = rows.size() > size;
+        List<BookSummary> page = hasMore ? rows.subList(0, size) : rows;
+        String next = hasMore ? BookCursor.after(order, page.get(size - 1)).encode() : null;
+        return new CursorPage<>(page.stream().map(BookMapper::toDTO).toList(), next, total);
     }
 
     // Assign a category to a book
@@ -91,6 +265,8 @@ public class BookService {
             if (book.getCategory() == null) {
                 book.setCategory(categoryOptional.get());
                 bookRepository.save(book);
+                bookSearchIndex.refreshBook(bookId);
+                latestBooksFeed.invalidate();
                 return true;
             }
         }
@@ -99,34 +275,101 @@ public class BookService {
 
     // Recalculate total pages for all books
     public void recalculateTotalPages() {
-        List<Book> books = bookRepository.findAll();
-        for (Book book : books) {
-            if (book.getContent() != null && (book.getTotalPages() == null || book.getTotalPages() == 0)) {
-                book.setTotalPages(PdfUtils.getPageCount(book.getContent()));
-                bookRepository.save(book);
+        for (Long id : bookRepository.findIdsWithoutTotalPages()) {
+            // A count kept with a shared PDF saves parsing it again
+            int totalPages = bookContentService.getPageCount(id)
+                    .orElseGet(() -> pdfDocumentPool.getPageCount(id, () -> bookContentService.getContent(id).orElse(null)));
+            if (totalPages > 0) {
+                bookRepository.findById(id).ifPresent(book -> {
+                    book.setTotalPages(totalPages);
+                    bookRepository.save(book);
+                });
             }
         }
     }
 
     // Search books by title with pagination
     public Page<BookDTO> searchBooksByTitle(String title, org.springframework.data.domain.Pageable pageable) {
-        return bookRepository.findByTitleContainingIgnoreCase(title, pageable)
+        if (canSearchIndex(pageable)) {
+            return loadPage(bookSearchIndex.search(SearchField.TITLE, title, pageable));
+        }
+        return bookRepository.searchSummariesByTitle(title, pageable)
                 .map(BookMapper::toDTO);
     }
 
     // Search books by author with pagination
     public Page<BookDTO> searchBooksByAuthor(String author, org.springframework.data.domain.Pageable pageable) {
-        return bookRepository.findByAuthorContainingIgnoreCase(author, pageable)
+        if (canSearchIndex(pageable)) {
+            return loadPage(bookSearchIndex.search(SearchField.AUTHOR, author, pageable));
+        }
+        return bookRepository.searchSummariesByAuthor(author, pageable)
                 .map(BookMapper::toDTO);
     }
 
     // Search books by category with pagination
     public Page<BookDTO> searchBooksByCategory(String categoryName, org.springframework.data.domain.Pageable pageable) {
-        return bookRepository.findByCategoryNameContainingIgnoreCase(categoryName, pageable)
+        if (canSearchIndex(pageable)) {
+            return loadPage(bookSearchIndex.search(SearchField.CATEGORY, categoryName, pageable));
+        }
+        return bookRepository.searchSummariesByCategoryName(categoryName, pageable)
                 .map(BookMapper::toDTO);
     }
 
-    public List<Book> getBooksByCategoryId(Long categoryId) {
-        return bookRepository.findByCategory_Id(categoryId);
+    // Best matches for a free-text query across title, author, category and summary, best first
+    public List<BookDTO> queryBooks(String query, int limit) {
+        if (bookSearchIndex.isReady()) {
+            return loadInOrder(Arrays.stream(bookSearchIndex.rank(query, limit)).boxed().toList());
+        }
+        return bookRepository.searchSummariesByTitle(query, PageRequest.of(0, limit))
+                .map(BookMapper::toDTO)
+                .getContent();
+    }
+
+    // Most read books of the window, most read first
+    public List<BookDTO> getTrendingBooks(TrendingWindow window, int limit) {
+        return loadInOrder(Arrays.stream(trendingTracker.trending(window, limit)).boxed().toList());
+    }
+
+    // Type-ahead completions for what the user has typed so far
+    public List<BookSuggestion> suggest(String prefix, int limit) {
+        if (bookSearchIndex.isReady()) {
+            return bookSearchIndex.suggest(prefix, limit);
+        }
+        // Same contract as the index, on titles only
+        return bookRepository.findTitlesStartingWith(prefix, PageRequest.of(0, limit))
+                .stream()
+                .map(title -> new BookSuggestion(title, SearchField.TITLE))
+                .toList();
+    }
+
+    // The index only returns matches in id order, so a requested sort is left to the database
+    private boolean canSearchIndex(org.springframework.data.domain.Pageable pageable) {
+        return bookSearchIndex.isReady() && pageable.getSort().isUnsorted();
+    }
+
+    // Load the books of a page of ids found by the search index, keeping the index's order
+    private Page<BookDTO> loadPage(Page<Long> ids) {
+        return new PageImpl<>(loadInOrder(ids.getContent()), ids.getPageable(), ids.getTotalElements());
+    }
+
+    private List<BookDTO> loadInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, BookSummary> summaries = bookRepository.findSummariesByIds(ids)
+                .stream()
+                .collect(Collectors.toMap(BookSummary::getId, Function.identity()));
+        return ids.stream()
+                .map(summaries::get)
+                .filter(Objects::nonNull)
+                .map(BookMapper::toDTO)
+                .toList();
+    }
+
+    public List<BookDTO> getBooksByCategoryId(Long categoryId) {
+        return bookRepository.findSummariesByCategoryId(categoryId)
+                .stream()
+                .map(BookMapper::toDTO)
+                .toList();
     }
 }
@@ -2,6 +2,7 @@ package org.example.booksfrog.service;
 
 import org.example.booksfrog.model.Category;
 import org.example.booksfrog.repository.CategoryRepository;
+import org.example.booksfrog.search.BookSearchIndex;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.data.domain.Page;
@@ -15,9 +16,16 @@ public class CategoryService {
 
     private final CategoryRepository categoryRepository;
 
+    private final BookSearchIndex bookSearchIndex;
+
+    private final LatestBooksFeed latestBooksFeed;
+
     @Autowired
-    public CategoryService(CategoryRepository categoryRepository) {
+    public CategoryService(CategoryRepository categoryRepository, BookSearchIndex bookSearchIndex,
+                           LatestBooksFeed latestBooksFeed) {
         this.categoryRepository = categoryRepository;
+        this.bookSearchIndex = bookSearchIndex;
+        this.latestBooksFeed = latestBooksFeed;
     }
 
     public Optional<Category> getCategoryById(Long id) {
@@ -34,10 +42,16 @@ public class CategoryService {
 
     public void deleteCategory(Long id) {
         categoryRepository.deleteById(id);
+        // Deleting a category deletes its books
+        latestBooksFeed.invalidate();
     }
 
     public Category updateCategory(Category category) {
-        return categoryRepository.save(category);
+        Category saved = categoryRepository.save(category);
+        // Category names are part of the books' indexed text
+        bookSearchIndex.refreshCategory(saved.getId());
+        latestBooksFeed.invalidate();
+        return saved;
     }
 
     public Page<Category> getAllCategories(Pageable pageable) {
@@ -4,6 +4,7 @@ import org.example.booksfrog.model.User;
 import org.example.booksfrog.repository.UserRepository;
 import org.example.booksfrog.util.CustomUserDetails;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
@@ -11,7 +12,7 @@ import org.springframework.stereotype.Service;
 import java.util.Collections;
 
 @Service
-public class CustomUserDetailsService implements UserDetailsService {
+public class CustomUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
 
     private final UserRepository userRepository;
 
@@ -24,11 +25,26 @@ public class CustomUserDetailsService implements UserDetailsService {
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found"));
 
+        return toUserDetails(user);
+    }
+
+    // Called after a successful login with the password rehashed, when the stored hash used another cost factor
+    @Override
+    public UserDetails updatePassword(UserDetails userDetails, String newPassword) {
+        User user = userRepository.findByUsername(userDetails.getUsername())
+                .orElseThrow(() -> new UsernameNotFoundException("User not found"));
+        user.setPassword(newPassword);
+        return toUserDetails(userRepository.save(user));
+    }
+
+    private static UserDetails toUserDetails(User user) {
         return new CustomUserDetails(
                 user.getId(),
                 user.getUsername(),
                 user.getPassword(),
-                Collections.emptyList() // Replace with roles or authorities if available
+                Collections.emptyList(), // Replace with roles or authorities if available
+                Boolean.TRUE.equals(user.getIsPremium()),
+                user.currentTokenVersion()
         );
     }
 }
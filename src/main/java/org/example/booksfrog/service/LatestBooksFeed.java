@@ -0,0 +1,113 @@
+package org.example.booksfrog.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.booksfrog.dto.BookDTO;
+import org.example.booksfrog.mapper.BookMapper;
+import org.example.booksfrog.repository.BookRepository;
+import org.example.booksfrog.storage.ContentHash;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The home page's "latest books" response, serialized once and served from memory until the catalog changes.
+ * Requests that miss while a rebuild is running wait for it instead of each querying the database.
+ */
+@Component
+public class LatestBooksFeed {
+
+    static final int SIZE = 12;
+
+    public static final class Snapshot {
+
+        private final byte[] body;
+
+        private final String etag;
+
+        // The catalog generation the snapshot was built from
+        private final long generation;
+
+        private Snapshot(byte[] body, String etag, long generation) {
+            this.body = body;
+            this.etag = etag;
+            this.generation = generation;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+    }
+
+    private final BookRepository bookRepository;
+
+    private final ObjectMapper objectMapper;
+
+    private final AtomicLong generation = new AtomicLong();
+
+    private final Object rebuildLock = new Object();
+
+    private volatile Snapshot snapshot;
+
+    @Autowired
+    public LatestBooksFeed(BookRepository bookRepository, ObjectMapper objectMapper) {
+        this.bookRepository = bookRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    public Snapshot get() {
+        Snapshot current = snapshot;
+        if (current != null && current.generation == generation.get()) {
+            return current;
+        }
+        synchronized (rebuildLock) {
+            // Whoever held the lock before us may have rebuilt it already
+            long building = generation.get();
+            current = snapshot;
+            if (current != null && current.generation == building) {
+                return current;
+            }
+            current = build(building);
+            snapshot = current;
+            return current;
+        }
+    }
+
+    // Drop the snapshot once the current transaction commits, so the rebuild can't read the catalog before the change
+    public void invalidate() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    generation.incrementAndGet();
+                }
+            });
+        } else {
+            generation.incrementAndGet();
+        }
+    }
+
+    private Snapshot build(long building) {
+        List<BookDTO> books = bookRepository.findLatestSummaries(PageRequest.of(0, SIZE))
+                .stream()
+                .map(BookMapper::toDTO)
+                .toList();
+        try {
+            byte[] body = objectMapper.writeValueAsBytes(books);
+            // A hash of the body rather than the generation, so the tag survives restarts and matches across instances
+            String etag = "\"" + ContentHash.sha256(body).substring(0, 32) + "\"";
+            return new Snapshot(body, etag, building);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize the latest books", e);
+        }
+    }
+}
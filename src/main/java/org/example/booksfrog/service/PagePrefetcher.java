@@ -0,0 +1,260 @@
+package org.example.booksfrog.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import org.example.booksfrog.exception.PageOutOfRangeException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Renders the pages a reader is likely to open next into the page cache, so the next page turn is a cache hit.
+ * <p>
+ * The look-ahead depth follows the reader's pace: the faster pages are turned, the more pages are kept warm.
+ * Prefetches render on this service's own low-priority threads, never on the render pool serving requests, and
+ * stop while the machine is under CPU pressure, every render thread is busy or the prefetch queue is full. Prefetched pages never charge tokens; that only happens when the client requests the page.
+ */
+@Service
+public class PagePrefetcher implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(PagePrefetcher.class);
+
+    // Weight of the latest page-turn interval in the moving average of a session's pace
+    private static final double PACE_SMOOTHING = 0.3;
+
+    private final PageRenderService pageRenderService;
+
+    private final Executor executor;
+
+    private final ThreadPoolExecutor threadPool;
+
+    private final DoubleSupplier loadPerCore;
+
+    private final boolean enabled;
+
+    private final int maxDepth;
+
+    private final long targetWindowMillis;
+
+    private final double maxLoadPerCore;
+
+    private final long sessionTimeoutMillis;
+
+    private final Map<SessionKey, ReadingSession> sessions = new ConcurrentHashMap<>();
+
+    private final Set<PageRef> inFlight = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder scheduled = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+
+    private record SessionKey(Long userId, Long bookId) {
+    }
+
+    private record PageRef(Long bookId, int page) {
+    }
+
+    private static final class ReadingSession {
+        private int lastPage;
+        private long lastSeenMillis;
+        // Exponential moving average of the time between page turns, 0 until the second turn
+        private double averageIntervalMillis;
+    }
+
+    @Autowired
+    public PagePrefetcher(PageRenderService pageRenderService,
+                          @Value("${booksfrog.render.prefetch.enabled:true}") boolean enabled,
+                          @Value("${booksfrog.render.prefetch.threads:2}") int threads,
+                          @Value("${booksfrog.render.prefetch.queue-capacity:64}") int queueCapacity,
+                          @Value("${booksfrog.render.prefetch.max-depth:4}") int maxDepth,
+                          @Value("${booksfrog.render.prefetch.target-window-ms:10000}") long targetWindowMillis,
+                          @Value("${booksfrog.render.prefetch.max-load-per-core:0.8}") double maxLoadPerCore) {
+        this(pageRenderService, newThreadPool(threads, queueCapacity), PagePrefetcher::systemLoadPerCore,
+                enabled, maxDepth, targetWindowMillis, maxLoadPerCore);
+    }
+
+    PagePrefetcher(PageRenderService pageRenderService, Executor executor, DoubleSupplier loadPerCore,
+                   boolean enabled, int maxDepth, long targetWindowMillis, double maxLoadPerCore) {
+        this.pageRenderService = pageRenderService;
+        this.executor = executor;
+        this.threadPool = executor instanceof ThreadPoolExecutor pool ? pool : null;
+        this.loadPerCore = loadPerCore;
+        this.enabled = enabled;
+        this.maxDepth = maxDepth;
+        this.targetWindowMillis = targetWindowMillis;
+        this.maxLoadPerCore = maxLoadPerCore;
+        this.sessionTimeoutMillis = Math.max(targetWindowMillis * 30, 60_000);
+    }
+
+    private static ThreadPoolExecutor newThreadPool(int threads, int queueCapacity) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "page-prefetch-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    private static double systemLoadPerCore() {
+        double load = ManagementFactory.getOperatingSystemMXBean().getSystemLoadAverage();
+        return load < 0 ? 0 : load / Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Record that a reader was served a page and schedule renders of the pages after it.
+     */
+    public void onPageViewed(Long userId, Long bookId, int page, int totalPages) {
+        if (!enabled || userId == null) {
+            return;
+        }
+
+        int depth = updateSession(new SessionKey(userId, bookId), page);
+        if (depth == 0) {
+            return;
+        }
+        if (isUnderPressure()) {
+            throttled.increment();
+            return;
+        }
+
+        int last = Math.min(page + depth, totalPages - 1);
+        for (int next = page + 1; next <= last; next++) {
+            schedule(bookId, next);
+        }
+    }
+
+    // Returns how many pages ahead of the current one should be kept warm for this reader
+    private int updateSession(SessionKey key, int page) {
+        long now = System.currentTimeMillis();
+        ReadingSession session = sessions.computeIfAbsent(key, k -> new ReadingSession());
+        synchronized (session) {
+            boolean first = session.lastSeenMillis == 0;
+            boolean forward = page > session.lastPage;
+            if (!first && forward) {
+                long interval = Math.max(1, (now - session.lastSeenMillis) / (page - session.lastPage));
+                session.averageIntervalMillis = session.averageIntervalMillis == 0
+                        ? interval
+                        : PACE_SMOOTHING * interval + (1 - PACE_SMOOTHING) * session.averageIntervalMillis;
+            }
+            session.lastPage = page;
+            session.lastSeenMillis = now;
+
+            if (!first && !forward) {
+                return 0; // Jumping back or re-reading, the next page is not predictable
+            }
+            if (session.averageIntervalMillis == 0) {
+                return 1; // Pace unknown yet, warm just the next page
+            }
+            long depth = Math.round(targetWindowMillis / session.averageIntervalMillis);
+            return (int) Math.max(1, Math.min(maxDepth, depth));
+        }
+    }
+
+    // Prefetching is best effort: skip it rather than compete with requested renders
+    private boolean isUnderPressure() {
+        if (loadPerCore.getAsDouble() > maxLoadPerCore || pageRenderService.isBusy()) {
+            return true;
+        }
+        return threadPool != null && threadPool.getQueue().remainingCapacity() == 0;
+    }
+
+    private void schedule(Long bookId, int page) {
+        if (pageRenderService.isCached(bookId, page)) {
+            return;
+        }
+        PageRef ref = new PageRef(bookId, page);
+        if (!inFlight.add(ref)) {
+            return; // Another reader already asked for this page to be prefetched
+        }
+        try {
+            executor.execute(() -> prefetch(ref));
+            scheduled.increment();
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(ref);
+            throttled.increment();
+        }
+    }
+
+    private void prefetch(PageRef ref) {
+        try {
+            // The load may have risen while the task was queued
+            if (loadPerCore.getAsDouble() > maxLoadPerCore || pageRenderService.isBusy()) {
+                throttled.increment();
+                return;
+            }
+            pageRenderService.prefetchPage(ref.bookId(), ref.page());
+        } catch (PageOutOfRangeException e) {
+            // The book changed since the page count was read, nothing to warm
+        } catch (Exception e) {
+            log.debug("Prefetch of page {} of book {} failed", ref.page(), ref.bookId(), e);
+        } finally {
+            inFlight.remove(ref);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${booksfrog.render.prefetch.session-sweep-interval-ms:60000}")
+    public void evictIdleSessions() {
+        long cutoff = System.currentTimeMillis() - sessionTimeoutMillis;
+        sessions.values().removeIf(session -> {
+            synchronized (session) {
+                return session.lastSeenMillis < cutoff;
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (threadPool != null) {
+            threadPool.shutdownNow();
+        }
+    }
+
+    public int getActiveSessions() {
+        return sessions.size();
+    }
+
+    public long getScheduledCount() {
+        return scheduled.sum();
+    }
+
+    public long getThrottledCount() {
+        return throttled.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("booksfrog.render.prefetch.sessions", this, PagePrefetcher::getActiveSessions)
+                .register(registry);
+        if (threadPool != null) {
+            Gauge.builder("booksfrog.render.prefetch.queue", threadPool, pool -> pool.getQueue().size())
+                    .register(registry);
+        }
+        FunctionCounter.builder("booksfrog.render.prefetch.scheduled", this, PagePrefetcher::getScheduledCount)
+                .register(registry);
+        FunctionCounter.builder("booksfrog.render.prefetch.throttled", this, PagePrefetcher::getThrottledCount)
+                .register(registry);
+    }
+}
@@ -0,0 +1,116 @@
+package org.example.booksfrog.service;
+
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.example.booksfrog.dto.RenderedPage;
+import org.example.booksfrog.exception.PageOutOfRangeException;
+import org.example.booksfrog.util.PageImageCache;
+import org.example.booksfrog.util.PageImageCache.PageKey;
+import org.example.booksfrog.util.PdfDocumentPool;
+import org.example.booksfrog.util.RenderExecutor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Optional;
+
+@Service
+public class PageRenderService {
+
+    public static final String DEFAULT_FORMAT = "png";
+
+    private final BookService bookService;
+
+    private final PageImageCache pageImageCache;
+
+    private final PdfDocumentPool pdfDocumentPool;
+
+    private final RenderExecutor renderExecutor;
+
+    private final int defaultDpi;
+
+    @Autowired
+    public PageRenderService(BookService bookService,
+                             PageImageCache pageImageCache,
+                             PdfDocumentPool pdfDocumentPool,
+                             RenderExecutor renderExecutor,
+                             @Value("${booksfrog.render.dpi:80}") int defaultDpi) {
+        this.bookService = bookService;
+        this.pageImageCache = pageImageCache;
+        this.pdfDocumentPool = pdfDocumentPool;
+        this.renderExecutor = renderExecutor;
+        this.defaultDpi = defaultDpi;
+    }
+
+    // Render a page at the default resolution, empty if the book has no PDF content
+    public Optional<RenderedPage> renderPage(Long bookId, int page) throws IOException {
+        return renderPage(bookId, page, defaultDpi, DEFAULT_FORMAT);
+    }
+
+    public Optional<RenderedPage> renderPage(Long bookId, int page, int dpi, String format) throws IOException {
+        PageKey key = new PageKey(bookId, page, dpi, format);
+        RenderedPage cached = pageImageCache.get(key);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        // Misses are rasterised on the bounded render pool, which throws RenderOverloadedException when saturated
+        return renderExecutor.execute(() -> renderUncached(key));
+    }
+
+    // Render a page at the default resolution into the cache on the calling thread. Used by prefetching, so that
+    // speculative renders never take a render thread or queue slot from requests nor count in their render timers.
+    public void prefetchPage(Long bookId, int page) throws IOException {
+        PageKey key = new PageKey(bookId, page, defaultDpi, DEFAULT_FORMAT);
+        if (!pageImageCache.contains(key)) {
+            renderUncached(key);
+        }
+    }
+
+    private Optional<RenderedPage> renderUncached(PageKey key) throws IOException {
+        Long bookId = key.bookId();
+        int page = key.page();
+
+        // Read before loading the content, so an update racing with this render can't be cached
+        long generation = pageImageCache.generation(bookId);
+
+        // The content is only loaded and parsed when no open document of the book is pooled
+        try (PdfDocumentPool.Lease lease = pdfDocumentPool.borrow(bookId, () -> bookService.getBookContentById(bookId))) {
+            if (lease == null) {
+                return Optional.empty();
+            }
+
+            int totalPages = lease.getDocument().getNumberOfPages();
+            if (page < 0 || page >= totalPages) {
+                throw new PageOutOfRangeException("Page " + page + " does not exist in book " + bookId);
+            }
+
+            PDFRenderer renderer = new PDFRenderer(lease.getDocument());
+            BufferedImage image = renderer.renderImageWithDPI(page, key.dpi(), ImageType.RGB);
+
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            ImageIO.write(image, key.format(), baos);
+
+            RenderedPage rendered = new RenderedPage(baos.toByteArray(), totalPages, key.format());
+            pageImageCache.put(key, rendered, generation);
+            return Optional.of(rendered);
+        }
+    }
+
+    public boolean isCached(Long bookId, int page) {
+        return pageImageCache.contains(new PageKey(bookId, page, defaultDpi, DEFAULT_FORMAT));
+    }
+
+    // True while every render thread is taken by requests, or renders are waiting for one
+    public boolean isBusy() {
+        return renderExecutor.isSaturated();
+    }
+
+    public int getDefaultDpi() {
+        return defaultDpi;
+    }
+}
@@ -1,13 +1,14 @@
 package org.example.booksfrog.service;
 
 import org.example.booksfrog.exception.InsufficientTokensException;
-import org.example.booksfrog.model.Category;
+import org.example.booksfrog.ledger.TokenLedger;
 import org.example.booksfrog.model.Token;
 import org.example.booksfrog.model.User;
 import org.example.booksfrog.repository.TokenRepository;
 import org.example.booksfrog.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
@@ -19,96 +20,62 @@ public class TokenService {
 
     private final UserRepository userRepository;
 
+    private final TokenLedger tokenLedger;
+
     @Autowired
-    public TokenService(TokenRepository tokenRepository, UserRepository userRepository) {
+    public TokenService(TokenRepository tokenRepository, UserRepository userRepository, TokenLedger tokenLedger) {
         this.tokenRepository = tokenRepository;
         this.userRepository = userRepository;
+        this.tokenLedger = tokenLedger;
     }
 
     public Token createToken(Token token) {
         return tokenRepository.save(token);
     }
 
+    // Daily tokens are counted in the balance once due, so there is nothing to grant; only a missing row is created
+    @Transactional
     public void grantDailyTokens(Long userId) {
-    // Fetch the user entity
-    User user = userRepository.findById(userId)
-            .orElseThrow(() -> new RuntimeException("User not found for user ID: " + userId));
-
-    // Fetch or create the token entity for the user
-    Token token = tokenRepository.findById(userId)
-            .orElseGet(() -> {
-                Token newToken = new Token();
-                newToken.setUser(user); // Set the user entity
-                newToken.setDailyTokens(0); // Default value
-                newToken.setTotalTokens(0); // Start with 0 total tokens
-                newToken.setLastReset(null); // No reset yet
-                tokenRepository.save(newToken);
-                return newToken;
-            });
-
-    LocalDateTime now = LocalDateTime.now();
-
-    // Check if 24 hours have passed since the last reset
-    if (token.getLastReset() == null || token.getLastReset().isBefore(now.minusDays(1))) {
-        int dailyTokens = user.isPremium() ? 100 : 50;
-
-        token.setTotalTokens(token.getTotalTokens() + dailyTokens);
-        token.setLastReset(now);
-        tokenRepository.save(token);
-    }
-}
-
+        if (tokenRepository.existsById(userId)) {
+            return;
+        }
 
+        // Fetch the user entity
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new RuntimeException("User not found for user ID: " + userId));
 
+        Token newToken = new Token();
+        newToken.setUser(user); // Set the user entity
+        newToken.setDailyTokens(Token.dailyTokensFor(user));
+        newToken.setTotalTokens(0); // Start with 0 total tokens
+        newToken.setLastReset(null); // No reset yet, so the first daily tokens are due right away
+        tokenRepository.save(newToken);
+    }
 
+    /**
+     * Take tokens from a user's balance.
+     *
+     * @throws InsufficientTokensException if the balance is lower than the amount.
+     */
     public void deductTokens(Long userId, int amount) {
-        Token token = tokenRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("Token not found for user ID: " + userId));
-
-        if (token.getTotalTokens() < amount) {
-            throw new InsufficientTokensException("User ID " + userId + " has insufficient tokens.");
-        }
-
-        // Deduct the tokens
-        token.setTotalTokens(token.getTotalTokens() - amount);
-        tokenRepository.save(token);
+        tokenLedger.debit(userId, amount);
     }
 
+    // Seconds until the daily tokens after those already counted in the balance are due
     public long getTimeLeftForDailyToken(Long userId) {
-        Token token = tokenRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("Token not found for user ID: " + userId));
-
         LocalDateTime now = LocalDateTime.now();
-
-        if (token.getLastReset() == null) {
-            // If no reset has occurred, tokens can be granted immediately
-            return 0;
-        }
-
-        // Calculate the time left in seconds
-        LocalDateTime nextReset = token.getLastReset().plusDays(1);
-        if (now.isAfter(nextReset)) {
-            return 0; // Tokens can be re-granted immediately
-        }
-
-        return Duration.between(now, nextReset).getSeconds();
+        LocalDateTime nextGrant = TokenLedger.nextGrant(tokenLedger.lastReset(userId), now);
+        return Math.max(Duration.between(now, nextGrant).getSeconds(), 0);
     }
 
     public void addTokens(Long userId, int amount) {
-        Token token = tokenRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("Token not found for user ID: " + userId));
-
-        // Add the specified amount to the total tokens
-        token.setTotalTokens(token.getTotalTokens() + amount);
-        tokenRepository.save(token);
+        tokenLedger.credit(userId, amount);
     }
 
 
 
     public Integer getTotalTokens(Long userId) {
-        Token token = tokenRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("Token not found for user ID: " + userId));
-        return token.getTotalTokens();
+        return tokenLedger.balance(userId);
     }
 
 }
@@ -0,0 +1,68 @@
+package org.example.booksfrog.service;
+
+import org.example.booksfrog.repository.UserRepository;
+import org.example.booksfrog.util.ExpiringLruCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.function.LongSupplier;
+
+/**
+ * The token version of each user, cached for a short while so authenticating a request from its JWT needs no
+ * query. Tokens carry the version they were issued with; bumping it, or deleting the user, revokes them at once on
+ * this instance and within the cache TTL on the others.
+ */
+@Component
+public class TokenVersions {
+
+    // Version of a user that doesn't exist; tokens never carry it
+    private static final int MISSING = -1;
+
+    private final UserRepository userRepository;
+
+    private final long ttlMillis;
+
+    private final LongSupplier clock;
+
+    private final ExpiringLruCache<Long, Integer> versions;
+
+    @Autowired
+    public TokenVersions(UserRepository userRepository,
+                         @Value("${booksfrog.jwt.version-check-ttl-ms:30000}") long ttlMillis,
+                         @Value("${booksfrog.jwt.version-cache.max-entries:100000}") int maxEntries) {
+        this(userRepository, ttlMillis, maxEntries, System::currentTimeMillis);
+    }
+
+    TokenVersions(UserRepository userRepository, long ttlMillis, int maxEntries, LongSupplier clock) {
+        this.userRepository = userRepository;
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+        this.versions = new ExpiringLruCache<>(maxEntries, clock);
+    }
+
+    public boolean isCurrent(Long userId, int tokenVersion) {
+        Integer version = versions.get(userId);
+        if (version == null) {
+            version = userRepository.findTokenVersionById(userId).orElse(MISSING);
+            versions.put(userId, version, clock.getAsLong() + ttlMillis);
+        }
+        return version == tokenVersion;
+    }
+
+    // Forget the cached version once the change that made it stale is committed
+    public void invalidate(Long userId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    versions.remove(userId);
+                }
+            });
+        } else {
+            versions.remove(userId);
+        }
+    }
+}
@@ -3,8 +3,9 @@ package org.example.booksfrog.service;
 import org.example.booksfrog.model.User;
 import org.example.booksfrog.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
@@ -17,13 +18,18 @@ public class UserService {
 
     private final UserRepository userRepository;
 
+    private final TokenVersions tokenVersions;
+
+    // Hashes on its own bounded pool rather than on the request thread
+    private final PasswordEncoder passwordEncoder;
+
     @Autowired
-    public UserService(UserRepository userRepository) {
+    public UserService(UserRepository userRepository, TokenVersions tokenVersions, PasswordEncoder passwordEncoder) {
         this.userRepository = userRepository;
+        this.tokenVersions = tokenVersions;
+        this.passwordEncoder = passwordEncoder;
     }
 
-    private BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
-
     public Optional<User> getUserById(Long id) {
         return userRepository.findById(id);
     }
@@ -45,6 +51,16 @@ public class UserService {
 
     public void deleteUser(Long id) {
         userRepository.deleteById(id);
+        tokenVersions.invalidate(id);
+    }
+
+    // Every token issued to the user so far stops authenticating
+    @Transactional
+    public void revokeTokens(Long id) {
+        if (userRepository.incrementTokenVersion(id) == 0) {
+            throw new RuntimeException("User not found");
+        }
+        tokenVersions.invalidate(id);
     }
 
     public User updateUser(User user) {
@@ -52,18 +68,22 @@ public class UserService {
         User existingUser = userRepository.findById(user.getId())
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
-        // Preserve the old password if no new password is provided
-        if (user.getPassword() == null || user.getPassword().isEmpty()) {
-            user.setPassword(existingUser.getPassword());
-        } else {
+        // Tokens carry the username, so a new username or password revokes the ones issued so far
+        boolean credentialsChanged = false;
+
+        // Keep the old password if none is provided, or if it is the stored hash handed back unchanged
+        if (user.getPassword() != null && !user.getPassword().isEmpty()
+                && !user.getPassword().equals(existingUser.getPassword())) {
             // Hash the new password if it is provided
             String hashedPassword = passwordEncoder.encode(user.getPassword());
-            user.setPassword(hashedPassword);
+            existingUser.setPassword(hashedPassword);
+            credentialsChanged = true;
         }
 
         // Update other fields (ensure sensitive fields are handled correctly)
-        if (user.getUsername() != null) {
+        if (user.getUsername() != null && !user.getUsername().equals(existingUser.getUsername())) {
             existingUser.setUsername(user.getUsername());
+            credentialsChanged = true;
         }
         if (user.getEmail() != null) {
             existingUser.setEmail(user.getEmail());
@@ -71,9 +91,16 @@ public class UserService {
         if (user.getProfilePicture() != null) {
             existingUser.setProfilePicture(user.getProfilePicture());
         }
+        if (credentialsChanged) {
+            existingUser.setTokenVersion(existingUser.currentTokenVersion() + 1);
+        }
 
         // Save the updated user
-        return userRepository.save(existingUser);
+        User saved = userRepository.save(existingUser);
+        if (credentialsChanged) {
+            tokenVersions.invalidate(saved.getId());
+        }
+        return saved;
     }
 
 
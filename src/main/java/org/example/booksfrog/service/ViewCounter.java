@@ -0,0 +1,98 @@
+package org.example.booksfrog.service;
+
+import jakarta.annotation.PreDestroy;
+import org.example.booksfrog.search.BookSearchIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts book views in memory and adds them to {@code book.views} in one batch per flush interval, so a popular
+ * book doesn't turn its row into a write hotspot. Views not flushed yet are lost if the process dies.
+ */
+@Component
+public class ViewCounter {
+
+    private static final Logger log = LoggerFactory.getLogger(ViewCounter.class);
+
+    private static final String INCREMENT_VIEWS = "UPDATE book SET views = views + ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final BookSearchIndex bookSearchIndex;
+
+    private final Map<Long, LongAdder> pending = new ConcurrentHashMap<>();
+
+    // Counters dropped for being idle a whole interval; a view that raced the removal is picked up next flush
+    private final Map<Long, LongAdder> retired = new HashMap<>();
+
+    @Autowired
+    public ViewCounter(JdbcTemplate jdbcTemplate, BookSearchIndex bookSearchIndex) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.bookSearchIndex = bookSearchIndex;
+    }
+
+    public void record(Long bookId) {
+        LongAdder views = pending.get(bookId);
+        if (views == null) {
+            views = pending.computeIfAbsent(bookId, id -> new LongAdder());
+        }
+        views.increment();
+    }
+
+    @Scheduled(fixedDelayString = "${booksfrog.views.flush-interval-ms:5000}")
+    @PreDestroy
+    public synchronized void flush() {
+        // Sorted by id so concurrent flushes from several instances lock the rows in the same order
+        Map<Long, Long> counts = new TreeMap<>();
+        retired.forEach((bookId, views) -> add(counts, bookId, views.sumThenReset()));
+        retired.clear();
+        for (Map.Entry<Long, LongAdder> entry : pending.entrySet()) {
+            long views = entry.getValue().sumThenReset();
+            if (views > 0) {
+                add(counts, entry.getKey(), views);
+            } else if (pending.remove(entry.getKey(), entry.getValue())) {
+                retired.put(entry.getKey(), entry.getValue());
+            }
+        }
+        if (counts.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> updates = new ArrayList<>(counts.size());
+        counts.forEach((bookId, views) -> updates.add(new Object[]{views, bookId}));
+        try {
+            jdbcTemplate.batchUpdate(INCREMENT_VIEWS, updates);
+        } catch (DataAccessException e) {
+            // Keep the counts for the next attempt rather than dropping them
+            log.warn("Could not save the views of {} books, retrying on the next flush", counts.size(), e);
+            counts.forEach((bookId, views) -> pending.computeIfAbsent(bookId, id -> new LongAdder()).add(views));
+            return;
+        }
+        // The index read the views when it last loaded each book; keep its ranking and completions in step
+        counts.forEach(bookSearchIndex::addViews);
+    }
+
+    // Books with a view counter in memory, flushed or not
+    public int pendingBooks() {
+        return pending.size();
+    }
+
+    private static void add(Map<Long, Long> counts, Long bookId, long views) {
+        if (views > 0) {
+            counts.merge(bookId, views, Long::sum);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package org.example.booksfrog.storage;
+
+import org.example.booksfrog.repository.BookContentRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Compares the blob store with the hashes {@code book_content} references. Problems are only reported: a missing
+ * blob needs the file uploaded again, and orphans may belong to an upload that is still being committed.
+ */
+@Component
+public class BlobConsistencyChecker {
+
+    private static final Logger log = LoggerFactory.getLogger(BlobConsistencyChecker.class);
+
+    private static final int READ_CHUNK_BYTES = 1024 * 1024;
+
+    private final BlobStore blobStore;
+
+    private final BookContentRepository bookContentRepository;
+
+    private final boolean verifyHashes;
+
+    @Autowired
+    public BlobConsistencyChecker(BlobStore blobStore, BookContentRepository bookContentRepository,
+                                  @Value("${booksfrog.storage.check.verify-hashes:false}") boolean verifyHashes) {
+        this.blobStore = blobStore;
+        this.bookContentRepository = bookContentRepository;
+        this.verifyHashes = verifyHashes;
+    }
+
+    @Scheduled(cron = "${booksfrog.storage.check.cron:0 30 3 * * *}")
+    public void runScheduledCheck() {
+        BlobConsistencyReport report = check(verifyHashes);
+        if (report.isConsistent()) {
+            log.info("Blob store is consistent");
+            return;
+        }
+        log.warn("Blob store check found {} missing, {} corrupt and {} orphaned blobs",
+                report.getMissing().size(), report.getCorrupt().size(), report.getOrphaned().size());
+        report.getMissing().forEach(hash -> log.warn("Missing blob {}", hash));
+        report.getCorrupt().forEach(hash -> log.warn("Corrupt blob {}", hash));
+        report.getOrphaned().forEach(hash -> log.warn("Orphaned blob {}", hash));
+    }
+
+    // Re-hashing reads every stored byte, so it is optional
+    public BlobConsistencyReport check(boolean verifyHashes) {
+        Set<String> referenced = new HashSet<>(bookContentRepository.findReferencedContentHashes());
+        referenced.addAll(bookContentRepository.findReferencedCoverHashes());
+
+        Set<String> stored = new HashSet<>();
+        List<String> corrupt = new ArrayList<>();
+        List<String> orphaned = new ArrayList<>();
+        try (Stream<String> hashes = blobStore.hashes()) {
+            hashes.forEach(hash -> {
+                stored.add(hash);
+                if (!referenced.contains(hash)) {
+                    orphaned.add(hash);
+                }
+                if (verifyHashes && !hash.equals(computeHash(hash))) {
+                    corrupt.add(hash);
+                }
+            });
+        }
+
+        List<String> missing = referenced.stream()
+                .filter(hash -> !stored.contains(hash))
+                .sorted()
+                .toList();
+        return new BlobConsistencyReport(missing, corrupt, orphaned);
+    }
+
+    private String computeHash(String hash) {
+        MessageDigest digest = ContentHash.newDigest();
+        long offset = 0;
+        byte[] chunk;
+        do {
+            chunk = blobStore.read(hash, offset, READ_CHUNK_BYTES);
+            digest.update(chunk);
+            offset += chunk.length;
+        } while (chunk.length == READ_CHUNK_BYTES);
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
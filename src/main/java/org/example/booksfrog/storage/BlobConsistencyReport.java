@@ -0,0 +1,25 @@
+package org.example.booksfrog.storage;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+// Outcome of a blob store check; the lists hold content hashes
+@Getter
+@AllArgsConstructor
+public class BlobConsistencyReport {
+
+    // Referenced by a book but not in the store
+    private final List<String> missing;
+
+    // Stored, but the bytes no longer match their hash; only filled in when hashes are verified
+    private final List<String> corrupt;
+
+    // Stored, but no book references them
+    private final List<String> orphaned;
+
+    public boolean isConsistent() {
+        return missing.isEmpty() && corrupt.isEmpty() && orphaned.isEmpty();
+    }
+}
@@ -0,0 +1,150 @@
+package org.example.booksfrog.storage;
+
+import org.example.booksfrog.service.BookContentService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Moves PDFs and covers stored as LOB columns by older versions into the blob store. They may still sit in the
+ * {@code book} table, or in {@code book_content} from before it referenced blobs by hash; Hibernate's schema
+ * update leaves those columns in place.
+ * <p>
+ * Books are moved one at a time, each in its own transaction, so only one book's files are in memory at once and
+ * an interrupted run simply resumes with the books that still have bytes in the old columns.
+ */
+@Component
+public class BlobMigrationJob {
+
+    private static final Logger log = LoggerFactory.getLogger(BlobMigrationJob.class);
+
+    private static final int BATCH_SIZE = 100;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final BookContentService bookContentService;
+
+    private final BlobStore blobStore;
+
+    @Autowired
+    public BlobMigrationJob(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                            BookContentService bookContentService, BlobStore blobStore) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.bookContentService = bookContentService;
+        this.blobStore = blobStore;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateLegacyColumns() {
+        // Reference counts must be right before any blob is replaced, or a shared one could be deleted
+        if (hasColumns("book_content", "content_hash", "cover_hash") && hasColumns("content_blob", "ref_count")) {
+            trackUntrackedBlobs();
+        }
+        int moved = 0;
+        if (hasColumns("book", "content", "cover")) {
+            moved += migrate("book", "id");
+            // Books that never had a cover in the old columns were not flagged either way
+            jdbcTemplate.update("UPDATE book SET has_cover = FALSE WHERE has_cover IS NULL");
+        }
+        if (hasColumns("book_content", "content", "cover")) {
+            moved += migrate("book_content", "book_id");
+        }
+        if (moved > 0) {
+            log.info("Moved the content of {} books to the blob store", moved);
+        }
+    }
+
+    // Blobs referenced before content_blob existed get their row, counting the references they already have
+    private void trackUntrackedBlobs() {
+        List<Map<String, Object>> untracked = jdbcTemplate.queryForList(
+                "SELECT r.hash AS hash, COUNT(*) AS refs FROM ("
+                        + "SELECT content_hash AS hash FROM book_content WHERE content_hash IS NOT NULL "
+                        + "UNION ALL SELECT cover_hash AS hash FROM book_content WHERE cover_hash IS NOT NULL) r "
+                        + "WHERE NOT EXISTS (SELECT 1 FROM content_blob b WHERE b.hash = r.hash) GROUP BY r.hash");
+        for (Map<String, Object> blob : untracked) {
+            String hash = (String) blob.get("hash");
+            long size = blobStore.size(hash).orElse(0L);
+            jdbcTemplate.update("INSERT INTO content_blob (hash, ref_count, byte_size, page_count) VALUES (?, ?, ?, NULL)",
+                    hash, ((Number) blob.get("refs")).intValue(), size);
+        }
+        if (!untracked.isEmpty()) {
+            log.info("Started tracking references of {} stored blobs", untracked.size());
+        }
+    }
+
+    // Table and column names are constants of this class, never user input
+    private int migrate(String table, String idColumn) {
+        int moved = 0;
+        long lastId = 0;
+        while (true) {
+            // Keyset pagination: rows already moved no longer match, and the id bound keeps failed ones from looping
+            List<Long> ids = jdbcTemplate.queryForList(
+                    "SELECT " + idColumn + " FROM " + table + " WHERE " + idColumn + " > ? "
+                            + "AND (content IS NOT NULL OR cover IS NOT NULL) ORDER BY " + idColumn + " LIMIT " + BATCH_SIZE,
+                    Long.class, lastId);
+            if (ids.isEmpty()) {
+                return moved;
+            }
+            for (Long id : ids) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> moveRow(table, idColumn, id));
+                    moved++;
+                } catch (RuntimeException e) {
+                    log.warn("Could not move the content of book {} out of {}", id, table, e);
+                }
+            }
+            lastId = ids.get(ids.size() - 1);
+        }
+    }
+
+    private void moveRow(String table, String idColumn, Long bookId) {
+        byte[][] files = jdbcTemplate.queryForObject(
+                "SELECT content, cover FROM " + table + " WHERE " + idColumn + " = ?",
+                (rs, rowNum) -> new byte[][]{rs.getBytes("content"), rs.getBytes("cover")},
+                bookId);
+        byte[] content = files[0];
+        byte[] cover = files[1];
+        bookContentService.store(bookId, content, cover);
+        if (cover != null) {
+            jdbcTemplate.update("UPDATE book SET has_cover = TRUE WHERE id = ?", bookId);
+        }
+        jdbcTemplate.update("UPDATE " + table + " SET content = NULL, cover = NULL WHERE " + idColumn + " = ?", bookId);
+    }
+
+    private boolean hasColumns(String table, String... required) {
+        Boolean present = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            // Identifier case depends on the database (lower case on MySQL, upper case on H2)
+            for (String name : new String[]{table, table.toUpperCase()}) {
+                Set<String> found = new HashSet<>();
+                try (ResultSet columns = metaData.getColumns(connection.getCatalog(), null, name, null)) {
+                    while (columns.next()) {
+                        found.add(columns.getString("COLUMN_NAME").toLowerCase());
+                    }
+                }
+                if (found.containsAll(List.of(required))) {
+                    return true;
+                }
+            }
+            return false;
+        });
+        return Boolean.TRUE.equals(present);
+    }
+}
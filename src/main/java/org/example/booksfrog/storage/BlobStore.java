@@ -0,0 +1,38 @@
+package org.example.booksfrog.storage;
+
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed storage for book files. Every blob is stored once, under the lowercase hex SHA-256 of its
+ * bytes, so storing the same file again is free and a hash always refers to the same bytes.
+ * <p>
+ * Implementations report I/O failures as {@link java.io.UncheckedIOException}.
+ */
+public interface BlobStore {
+
+    // Store the bytes unless a blob with the same hash exists, and return the hash. Callers that may race a
+    // delete of the same blob serialize both on a lock, as BookContentService does with the content_blob row.
+    String put(byte[] data);
+
+    Optional<byte[]> get(String hash);
+
+    Optional<Long> size(String hash);
+
+    // Up to length bytes starting at the zero-based offset; empty past the end of the blob
+    byte[] read(String hash, long offset, int length);
+
+    boolean exists(String hash);
+
+    // The blob as a file on the local disk, when the store keeps it in one and it can be sent without copying
+    default Optional<Path> localFile(String hash) {
+        return Optional.empty();
+    }
+
+    // Removes the blob; callers make sure nothing references it anymore
+    void delete(String hash);
+
+    // Every stored hash; the stream must be closed
+    Stream<String> hashes();
+}
@@ -0,0 +1,32 @@
+package org.example.booksfrog.storage;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+
+// SHA-256 helpers for content addressing
+public final class ContentHash {
+
+    private static final Pattern HEX_SHA_256 = Pattern.compile("[0-9a-f]{64}");
+
+    private ContentHash() {
+        throw new UnsupportedOperationException("Utility class");
+    }
+
+    public static String sha256(byte[] data) {
+        return HexFormat.of().formatHex(newDigest().digest(data));
+    }
+
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e); // Required on every JVM
+        }
+    }
+
+    public static boolean isValid(String hash) {
+        return hash != null && HEX_SHA_256.matcher(hash).matches();
+    }
+}
@@ -0,0 +1,63 @@
+package org.example.booksfrog.storage;
+
+import org.example.booksfrog.model.BlobData;
+import org.example.booksfrog.repository.BlobDataRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.stream.Stream;
+
+// Default store: blobs live in the blob_data table of the application database
+@Component
+@ConditionalOnProperty(name = "booksfrog.storage.type", havingValue = "database", matchIfMissing = true)
+public class DatabaseBlobStore implements BlobStore {
+
+    private final BlobDataRepository blobDataRepository;
+
+    @Autowired
+    public DatabaseBlobStore(BlobDataRepository blobDataRepository) {
+        this.blobDataRepository = blobDataRepository;
+    }
+
+    @Override
+    public String put(byte[] data) {
+        String hash = ContentHash.sha256(data);
+        if (!blobDataRepository.existsById(hash)) {
+            blobDataRepository.save(new BlobData(hash, data.length, data));
+        }
+        return hash;
+    }
+
+    @Override
+    public Optional<byte[]> get(String hash) {
+        return blobDataRepository.findDataByHash(hash);
+    }
+
+    @Override
+    public Optional<Long> size(String hash) {
+        return blobDataRepository.findSizeByHash(hash);
+    }
+
+    @Override
+    public byte[] read(String hash, long offset, int length) {
+        byte[] chunk = blobDataRepository.findChunk(hash, offset + 1, length);
+        return chunk != null ? chunk : new byte[0];
+    }
+
+    @Override
+    public boolean exists(String hash) {
+        return blobDataRepository.existsById(hash);
+    }
+
+    @Override
+    public void delete(String hash) {
+        blobDataRepository.deleteByHash(hash);
+    }
+
+    @Override
+    public Stream<String> hashes() {
+        return blobDataRepository.findAllHashes().stream();
+    }
+}
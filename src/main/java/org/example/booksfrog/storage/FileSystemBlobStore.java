@@ -0,0 +1,170 @@
+package org.example.booksfrog.storage;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Blobs stored as files in a local directory, named by their hash and spread over two levels of subdirectories
+ * ({@code ab/cd/abcd...}) so no directory grows too large. Files are served straight from the page cache with
+ * sendfile when the servlet container supports it.
+ */
+@Component
+@ConditionalOnProperty(name = "booksfrog.storage.type", havingValue = "filesystem")
+public class FileSystemBlobStore implements BlobStore {
+
+    private final Path root;
+
+    // Files are written here first and moved into place once complete, so readers never see a partial blob
+    private final Path staging;
+
+    @Autowired
+    public FileSystemBlobStore(@Value("${booksfrog.storage.fs.root:data/blobs}") String root) {
+        this.root = Paths.get(root).toAbsolutePath().normalize();
+        this.staging = this.root.resolve("staging");
+        try {
+            Files.createDirectories(staging);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create blob directory " + staging, e);
+        }
+    }
+
+    Path pathOf(String hash) {
+        if (!ContentHash.isValid(hash)) {
+            throw new IllegalArgumentException("Not a content hash: " + hash);
+        }
+        return root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+
+    @Override
+    public String put(byte[] data) {
+        String hash = ContentHash.sha256(data);
+        Path target = pathOf(hash);
+        if (Files.exists(target)) {
+            return hash;
+        }
+        try {
+            Files.createDirectories(target.getParent());
+            Path temp = Files.createTempFile(staging, hash, ".part");
+            try {
+                try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                    ByteBuffer buffer = ByteBuffer.wrap(data);
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    channel.force(true);
+                }
+                moveIntoPlace(temp, target);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot store blob " + hash, e);
+        }
+        return hash;
+    }
+
+    private void moveIntoPlace(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            // Stored concurrently by another upload of the same file
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    @Override
+    public Optional<byte[]> get(String hash) {
+        try {
+            return Optional.of(Files.readAllBytes(pathOf(hash)));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read blob " + hash, e);
+        }
+    }
+
+    @Override
+    public Optional<Long> size(String hash) {
+        try {
+            return Optional.of(Files.size(pathOf(hash)));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read blob " + hash, e);
+        }
+    }
+
+    @Override
+    public byte[] read(String hash, long offset, int length) {
+        try (FileChannel channel = FileChannel.open(pathOf(hash), StandardOpenOption.READ)) {
+            long available = channel.size() - offset;
+            if (available <= 0) {
+                return new byte[0];
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(length, available));
+            while (buffer.hasRemaining() && channel.read(buffer, offset + buffer.position()) >= 0) {
+                // Positional reads may return fewer bytes than asked for
+            }
+            return buffer.position() == buffer.capacity()
+                    ? buffer.array()
+                    : java.util.Arrays.copyOf(buffer.array(), buffer.position());
+        } catch (NoSuchFileException e) {
+            return new byte[0];
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read blob " + hash, e);
+        }
+    }
+
+    @Override
+    public boolean exists(String hash) {
+        return Files.exists(pathOf(hash));
+    }
+
+    @Override
+    public Optional<Path> localFile(String hash) {
+        Path path = pathOf(hash);
+        return Files.exists(path) ? Optional.of(path) : Optional.empty();
+    }
+
+    // Removed right away, even inside a transaction: callers delete under the lock of the blob's deleted metadata
+    // row, so an upload of the same file waiting on that lock writes it again afterwards
+    @Override
+    public void delete(String hash) {
+        Path path = pathOf(hash);
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot delete blob " + path.getFileName(), e);
+        }
+    }
+
+    @Override
+    public Stream<String> hashes() {
+        try {
+            return Files.walk(root, 3)
+                    .filter(Files::isRegularFile)
+                    .map(path -> path.getFileName().toString())
+                    .filter(ContentHash::isValid);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot list blobs in " + root, e);
+        }
+    }
+}
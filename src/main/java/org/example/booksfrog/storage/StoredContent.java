@@ -0,0 +1,46 @@
+package org.example.booksfrog.storage;
+
+import org.example.booksfrog.util.ChunkedContentInputStream;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Handle on a stored blob resolved for one request. Blobs are immutable, so the handle stays valid while the
+ * response is written, even if the book is updated in the meantime.
+ */
+public class StoredContent {
+
+    private final BlobStore blobStore;
+
+    private final String hash;
+
+    private final long length;
+
+    private final int chunkBytes;
+
+    public StoredContent(BlobStore blobStore, String hash, long length, int chunkBytes) {
+        this.blobStore = blobStore;
+        this.hash = hash;
+        this.length = length;
+        this.chunkBytes = chunkBytes;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public Optional<Path> getLocalFile() {
+        return blobStore.localFile(hash);
+    }
+
+    // Stream length bytes starting at the zero-based offset start, one chunk in memory at a time
+    public InputStream open(long start, long length) {
+        return new ChunkedContentInputStream((offset, size) -> blobStore.read(hash, offset, size), start, length, chunkBytes);
+    }
+}
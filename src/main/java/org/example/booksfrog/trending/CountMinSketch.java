@@ -0,0 +1,59 @@
+package org.example.booksfrog.trending;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Approximate per-book counts in a fixed table of {@code depth} rows of {@code width} counters. An estimate never
+ * undercounts, and overcounts by at most a small fraction of the total with high probability. Sketches of the same
+ * shape can be added and subtracted, which is what lets a window drop its oldest bucket. Counters are updated
+ * atomically, so adds need no lock.
+ */
+final class CountMinSketch {
+
+    private final int depth;
+
+    private final int width;
+
+    private final AtomicLongArray counts;
+
+    CountMinSketch(int depth, int width) {
+        this.depth = depth;
+        this.width = width;
+        this.counts = new AtomicLongArray(depth * width);
+    }
+
+    void add(long key, long count) {
+        for (int row = 0; row < depth; row++) {
+            counts.addAndGet(row * width + slot(key, row), count);
+        }
+    }
+
+    long estimate(long key) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counts.get(row * width + slot(key, row)));
+        }
+        return estimate;
+    }
+
+    void subtract(CountMinSketch other) {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.addAndGet(i, -other.counts.get(i));
+        }
+    }
+
+    void clear() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+    }
+
+    // A differently seeded 64-bit mix per row, so keys colliding in one row rarely collide in the others
+    private int slot(long key, int row) {
+        long h = key * 0x9E3779B97F4A7C15L + (row + 1) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        h ^= h >>> 31;
+        return (int) Math.floorMod(h, (long) width);
+    }
+}
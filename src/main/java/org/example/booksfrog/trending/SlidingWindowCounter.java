@@ -0,0 +1,105 @@
+package org.example.booksfrog.trending;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Views over a sliding window, as a ring of per-bucket sketches plus their running sum, and the books most likely
+ * to be the heaviest in it. Memory depends on the sketch shape and the number of candidates, not on the catalog.
+ * Adding a view takes no lock unless it moves to a new bucket or brings in a new candidate.
+ */
+final class SlidingWindowCounter {
+
+    private final CountMinSketch[] buckets;
+
+    // Sum of all buckets, so an estimate over the window reads one sketch
+    private final CountMinSketch window;
+
+    private final long bucketMillis;
+
+    private final int maxCandidates;
+
+    // Estimated views of the books that may be in the top; bounded by maxCandidates
+    private final Map<Long, Long> candidates = new ConcurrentHashMap<>();
+
+    // Lowest estimate among the candidates once full; a book must beat it to get in. Estimates only grow until
+    // the next bucket, so a stale floor is too low, never too high
+    private volatile long floor;
+
+    private volatile long currentBucket;
+
+    SlidingWindowCounter(TrendingWindow period, int depth, int width, int maxCandidates, long nowMillis) {
+        this.buckets = new CountMinSketch[period.getBuckets()];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new CountMinSketch(depth, width);
+        }
+        this.window = new CountMinSketch(depth, width);
+        this.bucketMillis = period.getBucket().toMillis();
+        this.maxCandidates = maxCandidates;
+        this.currentBucket = nowMillis / bucketMillis;
+    }
+
+    void add(long bookId, long nowMillis) {
+        if (nowMillis / bucketMillis > currentBucket) {
+            advance(nowMillis);
+        }
+        buckets[(int) (currentBucket % buckets.length)].add(bookId, 1);
+        window.add(bookId, 1);
+        long estimate = window.estimate(bookId);
+        // A candidate only needs its estimate updated; any other book must beat the weakest candidate to get in
+        if (candidates.replace(bookId, estimate) == null && estimate > floor) {
+            admit(bookId, estimate);
+        }
+    }
+
+    // Expire the buckets that fell out of the window since the last call
+    synchronized void advance(long nowMillis) {
+        long bucket = nowMillis / bucketMillis;
+        if (bucket <= currentBucket) {
+            return;
+        }
+        long steps = Math.min(bucket - currentBucket, buckets.length);
+        for (long step = 1; step <= steps; step++) {
+            CountMinSketch expired = buckets[(int) ((currentBucket + step) % buckets.length)];
+            window.subtract(expired);
+            expired.clear();
+        }
+        currentBucket = bucket;
+
+        candidates.replaceAll((bookId, views) -> window.estimate(bookId));
+        candidates.values().removeIf(views -> views <= 0);
+        floor = currentFloor();
+    }
+
+    // The heaviest candidates, heaviest first, ties broken by id
+    synchronized long[] top(int limit) {
+        List<Map.Entry<Long, Long>> ranked = new ArrayList<>(candidates.entrySet());
+        ranked.sort(Map.Entry.<Long, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+        return ranked.stream().limit(limit).mapToLong(Map.Entry::getKey).toArray();
+    }
+
+    private synchronized void admit(long bookId, long estimate) {
+        if (candidates.containsKey(bookId) || candidates.size() < maxCandidates) {
+            candidates.put(bookId, estimate);
+        } else {
+            Map.Entry<Long, Long> lowest = lowestCandidate();
+            if (estimate <= lowest.getValue()) {
+                floor = lowest.getValue(); // The candidates grew since the floor was set; fewer books get this far now
+                return;
+            }
+            candidates.remove(lowest.getKey());
+            candidates.put(bookId, estimate);
+        }
+        floor = currentFloor();
+    }
+
+    private long currentFloor() {
+        return candidates.size() < maxCandidates ? 0 : lowestCandidate().getValue();
+    }
+
+    private Map.Entry<Long, Long> lowestCandidate() {
+        return candidates.entrySet().stream().min(Map.Entry.comparingByValue()).orElseThrow();
+    }
+}
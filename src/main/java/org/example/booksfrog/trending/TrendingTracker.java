@@ -0,0 +1,67 @@
+package org.example.booksfrog.trending;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Books read the most today and this week, from approximate counters fed by book opens. The rankings are
+ * recomputed on a schedule and served as is, so reading one costs the same whatever the traffic or catalog size.
+ * Counts start over when the application restarts.
+ */
+@Component
+public class TrendingTracker {
+
+    private final LongSupplier clock;
+
+    private final int maxCandidates;
+
+    private final Map<TrendingWindow, SlidingWindowCounter> counters = new EnumMap<>(TrendingWindow.class);
+
+    private volatile Map<TrendingWindow, long[]> rankings = new EnumMap<>(TrendingWindow.class);
+
+    @Autowired
+    public TrendingTracker(@Value("${booksfrog.trending.sketch-depth:4}") int depth,
+                           @Value("${booksfrog.trending.sketch-width:2048}") int width,
+                           @Value("${booksfrog.trending.candidates:100}") int maxCandidates) {
+        this(depth, width, maxCandidates, System::currentTimeMillis);
+    }
+
+    TrendingTracker(int depth, int width, int maxCandidates, LongSupplier clock) {
+        this.clock = clock;
+        this.maxCandidates = maxCandidates;
+        long now = clock.getAsLong();
+        for (TrendingWindow window : TrendingWindow.values()) {
+            counters.put(window, new SlidingWindowCounter(window, depth, width, maxCandidates, now));
+        }
+    }
+
+    // Called on every book open, so it takes no lock; only refreshes are serialized
+    public void record(Long bookId) {
+        long now = clock.getAsLong();
+        counters.values().forEach(counter -> counter.add(bookId, now));
+    }
+
+    // Ids of the most read books in the window, most read first, as of the last refresh
+    public long[] trending(TrendingWindow window, int limit) {
+        long[] ranking = rankings.getOrDefault(window, new long[0]);
+        return Arrays.copyOf(ranking, Math.min(limit, ranking.length));
+    }
+
+    @Scheduled(fixedDelayString = "${booksfrog.trending.refresh-interval-ms:30000}")
+    public synchronized void refresh() {
+        long now = clock.getAsLong();
+        Map<TrendingWindow, long[]> refreshed = new EnumMap<>(TrendingWindow.class);
+        counters.forEach((window, counter) -> {
+            counter.advance(now);
+            refreshed.put(window, counter.top(maxCandidates));
+        });
+        rankings = refreshed;
+    }
+}
@@ -0,0 +1,26 @@
+package org.example.booksfrog.trending;
+
+import java.time.Duration;
+
+// The periods a trending shelf can cover, each a ring of buckets that expire one at a time
+public enum TrendingWindow {
+    DAY(Duration.ofHours(1), 24),
+    WEEK(Duration.ofDays(1), 7);
+
+    private final Duration bucket;
+
+    private final int buckets;
+
+    TrendingWindow(Duration bucket, int buckets) {
+        this.bucket = bucket;
+        this.buckets = buckets;
+    }
+
+    Duration getBucket() {
+        return bucket;
+    }
+
+    int getBuckets() {
+        return buckets;
+    }
+}
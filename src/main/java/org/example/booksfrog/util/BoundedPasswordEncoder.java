@@ -0,0 +1,171 @@
+package org.example.booksfrog.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.example.booksfrog.exception.PasswordHashingOverloadedException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * BCrypt hashing and verification on a dedicated pool, so a burst of logins or registrations can only use a bounded
+ * share of the CPU and the request threads serving the rest of the API are not all stuck hashing. Work that can't
+ * be queued or finished within the maximum wait is rejected with {@link PasswordHashingOverloadedException}.
+ * <p>
+ * Hashes made with another cost factor than the configured one are reported as needing an upgrade, so they are
+ * rehashed at the user's next successful login.
+ */
+@Component
+public class BoundedPasswordEncoder implements PasswordEncoder {
+
+    private static final Pattern BCRYPT_COST = Pattern.compile("\\A\\$2[aby]?\\$(\\d\\d)\\$");
+
+    private final PasswordEncoder delegate;
+
+    private final int strength;
+
+    private final ThreadPoolExecutor pool;
+
+    private final long maxWaitMillis;
+
+    private final long retryAfterSeconds;
+
+    private final Timer waitTimer;
+
+    private final Timer encodeTimer;
+
+    private final Timer matchesTimer;
+
+    private final Counter queueFullRejections;
+
+    private final Counter timeoutRejections;
+
+    @Autowired
+    public BoundedPasswordEncoder(MeterRegistry meterRegistry,
+                                  @Value("${booksfrog.password.bcrypt-strength:10}") int strength,
+                                  @Value("${booksfrog.password.executor.threads:0}") int threads,
+                                  @Value("${booksfrog.password.executor.queue-capacity:64}") int queueCapacity,
+                                  @Value("${booksfrog.password.executor.max-wait-ms:5000}") long maxWaitMillis,
+                                  @Value("${booksfrog.password.executor.retry-after-seconds:2}") long retryAfterSeconds) {
+        this(new BCryptPasswordEncoder(strength), strength, meterRegistry, threads, queueCapacity, maxWaitMillis,
+                retryAfterSeconds);
+    }
+
+    BoundedPasswordEncoder(PasswordEncoder delegate, int strength, MeterRegistry meterRegistry, int threads,
+                           int queueCapacity, long maxWaitMillis, long retryAfterSeconds) {
+        this.delegate = delegate;
+        this.strength = strength;
+        // Half the cores by default, so a login storm leaves the other half to the rest of the API
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger counter = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hash-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.maxWaitMillis = maxWaitMillis;
+        this.retryAfterSeconds = retryAfterSeconds;
+
+        this.waitTimer = Timer.builder("booksfrog.password.executor.wait")
+                .description("Time a password hash spent queued before a hashing thread picked it up")
+                .register(meterRegistry);
+        this.encodeTimer = Timer.builder("booksfrog.password.hash")
+                .description("Time spent hashing or verifying a password")
+                .tag("operation", "encode")
+                .register(meterRegistry);
+        this.matchesTimer = Timer.builder("booksfrog.password.hash")
+                .description("Time spent hashing or verifying a password")
+                .tag("operation", "matches")
+                .register(meterRegistry);
+        this.queueFullRejections = Counter.builder("booksfrog.password.executor.rejected")
+                .tag("reason", "queue_full")
+                .register(meterRegistry);
+        this.timeoutRejections = Counter.builder("booksfrog.password.executor.rejected")
+                .tag("reason", "timeout")
+                .register(meterRegistry);
+        Gauge.builder("booksfrog.password.executor.queue", pool, p -> p.getQueue().size())
+                .register(meterRegistry);
+        Gauge.builder("booksfrog.password.executor.active", pool, ThreadPoolExecutor::getActiveCount)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return execute(encodeTimer, () -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return execute(matchesTimer, () -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null) {
+            return false;
+        }
+        Matcher matcher = BCRYPT_COST.matcher(encodedPassword);
+        return matcher.find() && Integer.parseInt(matcher.group(1)) != strength;
+    }
+
+    private <T> T execute(Timer timer, Callable<T> task) {
+        long queuedAt = System.nanoTime();
+        Future<T> future;
+        try {
+            future = pool.submit(() -> {
+                waitTimer.record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+                return timer.recordCallable(task);
+            });
+        } catch (RejectedExecutionException e) {
+            queueFullRejections.increment();
+            throw new PasswordHashingOverloadedException("Too many sign-ins at the moment, try again shortly.",
+                    retryAfterSeconds);
+        }
+
+        try {
+            return future.get(maxWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true); // Drops it if still queued; a hash already running can't be interrupted
+            timeoutRejections.increment();
+            throw new PasswordHashingOverloadedException("Signing in took too long, try again shortly.",
+                    retryAfterSeconds);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a password hash", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException("Password hashing failed", cause);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+}
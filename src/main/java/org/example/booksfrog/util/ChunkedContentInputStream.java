@@ -0,0 +1,101 @@
+package org.example.booksfrog.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads a byte range of stored content in fixed-size chunks, so only one chunk is held in memory at a time.
+ */
+public class ChunkedContentInputStream extends InputStream {
+
+    @FunctionalInterface
+    public interface ChunkReader {
+        // Returns up to length bytes starting at the zero-based offset
+        byte[] read(long offset, int length);
+    }
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final ChunkReader reader;
+
+    private final int chunkSize;
+
+    private final long end;
+
+    private long position;
+
+    private byte[] buffer = EMPTY;
+
+    private int bufferPosition;
+
+    public ChunkedContentInputStream(ChunkReader reader, long start, long length, int chunkSize) {
+        this.reader = reader;
+        this.chunkSize = chunkSize;
+        this.position = start;
+        this.end = start + length;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureBuffered()) {
+            return -1;
+        }
+        return buffer[bufferPosition++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!ensureBuffered()) {
+            return -1;
+        }
+        int count = Math.min(len, buffer.length - bufferPosition);
+        System.arraycopy(buffer, bufferPosition, b, off, count);
+        bufferPosition += count;
+        return count;
+    }
+
+    // Skipping past the buffer only moves the offset; nothing is read for the skipped bytes
+    @Override
+    public long skip(long n) {
+        if (n <= 0) {
+            return 0;
+        }
+        long buffered = buffer.length - bufferPosition;
+        if (n <= buffered) {
+            bufferPosition += (int) n;
+            return n;
+        }
+        long skipped = buffered + Math.min(n - buffered, end - position);
+        position += skipped - buffered;
+        buffer = EMPTY;
+        bufferPosition = 0;
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return buffer.length - bufferPosition;
+    }
+
+    private boolean ensureBuffered() throws IOException {
+        if (bufferPosition < buffer.length) {
+            return true;
+        }
+        if (position >= end) {
+            return false;
+        }
+        int length = (int) Math.min(chunkSize, end - position);
+        byte[] chunk = reader.read(position, length);
+        if (chunk == null || chunk.length == 0) {
+            // The response already announced the length, so a short read must not look like a normal end
+            throw new IOException("Content ended at byte " + position + ", expected " + end);
+        }
+        position += chunk.length;
+        buffer = chunk;
+        bufferPosition = 0;
+        return true;
+    }
+}
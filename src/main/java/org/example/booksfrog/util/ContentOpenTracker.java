@@ -0,0 +1,61 @@
+package org.example.booksfrog.util;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers which readers recently opened which version of a book's PDF.
+ * <p>
+ * PDF viewers fetch a document with many range requests. Each request refreshes the reader's entry, and only a
+ * request with no entry in the last window counts as a new open.
+ */
+@Component
+public class ContentOpenTracker {
+
+    private record OpenKey(Long userId, Long bookId, long contentVersion) {
+    }
+
+    private final long windowMillis;
+
+    private final Map<OpenKey, Long> lastAccess = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ContentOpenTracker(@Value("${booksfrog.content.open-window-ms:1800000}") long windowMillis) {
+        this.windowMillis = windowMillis;
+    }
+
+    /**
+     * Record an access to a book's content.
+     *
+     * @return true if it starts a new open, i.e. the reader should be charged.
+     */
+    public boolean registerAccess(Long userId, Long bookId, long contentVersion) {
+        long now = System.currentTimeMillis();
+        boolean[] opened = new boolean[1];
+        lastAccess.compute(new OpenKey(userId, bookId, contentVersion), (key, previous) -> {
+            opened[0] = previous == null || now - previous > windowMillis;
+            return now;
+        });
+        return opened[0];
+    }
+
+    // Undo a registration, e.g. when charging for the open failed
+    public void forget(Long userId, Long bookId, long contentVersion) {
+        lastAccess.remove(new OpenKey(userId, bookId, contentVersion));
+    }
+
+    @Scheduled(fixedDelayString = "${booksfrog.content.open-sweep-interval-ms:60000}")
+    public void evictExpired() {
+        long cutoff = System.currentTimeMillis() - windowMillis;
+        lastAccess.values().removeIf(accessedAt -> accessedAt < cutoff);
+    }
+
+    public int size() {
+        return lastAccess.size();
+    }
+}
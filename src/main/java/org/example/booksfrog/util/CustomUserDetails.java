@@ -18,6 +18,13 @@ public class CustomUserDetails implements UserDetails {
     private  String username;
     private  String password;
     private  Collection<? extends GrantedAuthority> authorities;
+    private  boolean premium;
+    private  int tokenVersion;
+
+    public CustomUserDetails(Long id, String username, String password,
+                             Collection<? extends GrantedAuthority> authorities) {
+        this(id, username, password, authorities, false, 0);
+    }
 
     @Override
     public boolean isAccountNonExpired() {
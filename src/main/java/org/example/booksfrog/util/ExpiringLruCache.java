@@ -0,0 +1,56 @@
+package org.example.booksfrog.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * LRU cache bounded by its number of entries, where each entry also expires at its own time. A full cache makes
+ * room by evicting its least recently used entry, and expired entries are dropped when read, so every call costs
+ * the same whatever the size.
+ */
+public class ExpiringLruCache<K, V> {
+
+    private record Entry<V>(V value, long expiresAtMillis) {
+    }
+
+    private final LongSupplier clock;
+
+    // Access-ordered, so the eldest entry is the least recently used
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    public ExpiringLruCache(int maxEntries, LongSupplier clock) {
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    // The cached value, or null if there is none or it expired
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAtMillis() <= clock.getAsLong()) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.value();
+    }
+
+    public synchronized void put(K key, V value, long expiresAtMillis) {
+        entries.put(key, new Entry<>(value, expiresAtMillis));
+    }
+
+    public synchronized void remove(K key) {
+        entries.remove(key);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+}
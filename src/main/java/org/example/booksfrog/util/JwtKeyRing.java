@@ -0,0 +1,230 @@
+package org.example.booksfrog.util;
+
+import io.jsonwebtoken.security.Keys;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.LongSupplier;
+
+/**
+ * Keys signing and verifying JWTs, so tokens issued by one instance are accepted by all of them and survive
+ * restarts. Tokens name their signing key in the {@code kid} header.
+ * <p>
+ * Keys come from {@code booksfrog.jwt.keys} ({@code kid:base64} entries, the first one signing), or from a key file
+ * shared by the instances and reloaded on a schedule. With rotation enabled, on a single instance, a new key is
+ * added to the file ahead of its activation, so every instance can verify it before anyone signs with it, and a
+ * retired key is dropped once the tokens it signed have expired. Without either, a random key is generated at
+ * startup, which only suits a single instance in development.
+ */
+@Component
+public class JwtKeyRing {
+
+    private static final Logger log = LoggerFactory.getLogger(JwtKeyRing.class);
+
+    // HS256 needs at least 256 bits
+    private static final int KEY_BYTES = 32;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    public record Key(String id, SecretKey secret, long activatesAtMillis) {
+    }
+
+    private final Path keyFile;
+
+    private final boolean rotationEnabled;
+
+    private final long rotationIntervalMillis;
+
+    // How long a retired key keeps verifying; longer than tokens live
+    private final long retentionMillis;
+
+    // How far ahead of its activation a new key is published; longer than an instance takes to reload the file
+    private final long publishAheadMillis;
+
+    private final LongSupplier clock;
+
+    // Newest activation first
+    private volatile List<Key> keys;
+
+    @Autowired
+    public JwtKeyRing(@Value("${booksfrog.jwt.keys:}") String configuredKeys,
+                      @Value("${booksfrog.jwt.key-file:}") String keyFile,
+                      @Value("${booksfrog.jwt.rotation.enabled:false}") boolean rotationEnabled,
+                      @Value("${booksfrog.jwt.rotation.interval-ms:604800000}") long rotationIntervalMillis,
+                      @Value("${booksfrog.jwt.rotation.retention-ms:43200000}") long retentionMillis,
+                      @Value("${booksfrog.jwt.key-file.reload-interval-ms:60000}") long reloadIntervalMillis) {
+        this(configuredKeys, keyFile.isBlank() ? null : Paths.get(keyFile).toAbsolutePath().normalize(),
+                rotationEnabled, rotationIntervalMillis, retentionMillis, 2 * reloadIntervalMillis,
+                System::currentTimeMillis);
+    }
+
+    JwtKeyRing(String configuredKeys, Path keyFile, boolean rotationEnabled, long rotationIntervalMillis,
+               long retentionMillis, long publishAheadMillis, LongSupplier clock) {
+        this.rotationEnabled = rotationEnabled && keyFile != null;
+        this.rotationIntervalMillis = rotationIntervalMillis;
+        this.retentionMillis = retentionMillis;
+        this.publishAheadMillis = publishAheadMillis;
+        this.clock = clock;
+        if (configuredKeys != null && !configuredKeys.isBlank()) {
+            this.keyFile = null;
+            this.keys = parseConfigured(configuredKeys);
+        } else if (keyFile != null) {
+            this.keyFile = keyFile;
+            this.keys = Files.exists(keyFile) ? read(keyFile) : List.of();
+            if (keys.isEmpty()) {
+                keys = List.of(newKey(clock.getAsLong()));
+                write();
+            }
+            refresh();
+        } else {
+            log.warn("No JWT keys configured, tokens will not be accepted by other instances or after a restart");
+            this.keyFile = null;
+            this.keys = List.of(newKey(0));
+        }
+    }
+
+    // A ring with a random key, for tests and tools
+    public static JwtKeyRing ephemeral() {
+        return new JwtKeyRing(null, null, false, 0, 0, 0, System::currentTimeMillis);
+    }
+
+    // The newest active key
+    public Key signingKey() {
+        long now = clock.getAsLong();
+        return keys.stream()
+                .filter(key -> key.activatesAtMillis() <= now)
+                .findFirst()
+                .orElseGet(() -> keys.get(keys.size() - 1)); // Only keys published ahead; use the oldest
+    }
+
+    // Any key of the ring verifies, including ones published but not yet signing
+    public Optional<SecretKey> verificationKey(String id) {
+        return keys.stream().filter(key -> key.id().equals(id)).map(Key::secret).findFirst();
+    }
+
+    public List<String> keyIds() {
+        return keys.stream().map(Key::id).toList();
+    }
+
+    @Scheduled(fixedDelayString = "${booksfrog.jwt.key-file.reload-interval-ms:60000}")
+    public synchronized void refresh() {
+        if (keyFile == null) {
+            return;
+        }
+        if (Files.exists(keyFile)) {
+            List<Key> loaded = read(keyFile);
+            if (!loaded.isEmpty()) {
+                keys = loaded;
+            }
+        }
+        if (rotationEnabled) {
+            rotate();
+        }
+    }
+
+    private void rotate() {
+        long now = clock.getAsLong();
+        List<Key> current = keys;
+        List<Key> kept = new ArrayList<>(current.size() + 1);
+        if (current.get(0).activatesAtMillis() + rotationIntervalMillis <= now) {
+            kept.add(newKey(now + publishAheadMillis));
+        }
+        // A key is dropped once the key after it has been signing for longer than tokens live
+        for (int i = 0; i < current.size(); i++) {
+            if (i == 0 || current.get(i - 1).activatesAtMillis() + retentionMillis > now) {
+                kept.add(current.get(i));
+            }
+        }
+        if (!kept.equals(current)) {
+            keys = List.copyOf(kept);
+            write();
+            log.info("Rotated JWT keys, now {}", keyIds());
+        }
+    }
+
+    private static Key newKey(long activatesAtMillis) {
+        byte[] secret = new byte[KEY_BYTES];
+        RANDOM.nextBytes(secret);
+        byte[] id = new byte[6];
+        RANDOM.nextBytes(id);
+        return new Key(HexFormat.of().formatHex(id), Keys.hmacShaKeyFor(secret), activatesAtMillis);
+    }
+
+    private static List<Key> parseConfigured(String configured) {
+        List<Key> parsed = new ArrayList<>();
+        for (String entry : configured.split(",")) {
+            String[] parts = entry.trim().split(":", 2);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("JWT keys must be kid:base64 entries");
+            }
+            // All active; listing order decides which one signs
+            parsed.add(new Key(parts[0], Keys.hmacShaKeyFor(Base64.getDecoder().decode(parts[1])), 0));
+        }
+        return List.copyOf(parsed);
+    }
+
+    // One "kid activatesAtMillis base64" line per key
+    private static List<Key> read(Path file) {
+        try {
+            List<Key> read = new ArrayList<>();
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                String[] parts = line.trim().split("\\s+");
+                if (parts.length == 3 && !parts[0].startsWith("#")) {
+                    read.add(new Key(parts[0], Keys.hmacShaKeyFor(Base64.getDecoder().decode(parts[2])),
+                            Long.parseLong(parts[1])));
+                }
+            }
+            read.sort(Comparator.comparingLong(Key::activatesAtMillis).reversed());
+            return List.copyOf(read);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read the JWT key file " + file, e);
+        }
+    }
+
+    // Written to a temporary file and moved into place, so other instances never read a partial ring
+    private void write() {
+        StringBuilder lines = new StringBuilder("# JWT signing keys: kid, activation time in epoch millis, secret\n");
+        for (Key key : keys) {
+            lines.append(key.id()).append(' ').append(key.activatesAtMillis()).append(' ')
+                    .append(Base64.getEncoder().encodeToString(key.secret().getEncoded())).append('\n');
+        }
+        try {
+            Files.createDirectories(keyFile.getParent());
+            Path staged = Files.createTempFile(keyFile.getParent(), ".jwt-keys", ".tmp");
+            try {
+                Files.setPosixFilePermissions(staged, PosixFilePermissions.fromString("rw-------"));
+            } catch (UnsupportedOperationException e) {
+                // Not a POSIX file system; rely on the directory's permissions
+            }
+            Files.writeString(staged, lines, StandardCharsets.UTF_8);
+            try {
+                Files.move(staged, keyFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(staged, keyFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write the JWT key file " + keyFile, e);
+        }
+    }
+}
@@ -1,56 +1,168 @@
 package org.example.booksfrog.util;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
-import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import io.jsonwebtoken.security.SignatureException;
+import org.example.booksfrog.storage.ContentHash;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
 import java.util.function.Function;
 
 @Component
 public class JwtUtil {
 
-    private final SecretKey SECRET_KEY = Keys.secretKeyFor(SignatureAlgorithm.HS256);
+    private static final int DEFAULT_MAX_CACHED_TOKENS = 10_000;
+
+    private static final String USER_ID = "uid";
+    private static final String PREMIUM = "premium";
+    private static final String AUTHORITIES = "authorities";
+    private static final String TOKEN_VERSION = "ver";
+
+    private final JwtKeyRing keyRing;
+
+    private final JwtParser parser;
+
+    // Claims of tokens already verified until they expire, by the SHA-256 of the token so the tokens themselves
+    // aren't kept
+    private final ExpiringLruCache<String, Claims> verified;
+
+    public JwtUtil() {
+        this(DEFAULT_MAX_CACHED_TOKENS);
+    }
+
+    public JwtUtil(int maxCachedTokens) {
+        this(JwtKeyRing.ephemeral(), maxCachedTokens);
+    }
+
+    @Autowired
+    public JwtUtil(JwtKeyRing keyRing, @Value("${booksfrog.jwt.cache.max-entries:10000}") int maxCachedTokens) {
+        this.keyRing = keyRing;
+        this.verified = new ExpiringLruCache<>(maxCachedTokens, System::currentTimeMillis);
+        this.parser = Jwts.parserBuilder()
+                .setSigningKeyResolver(new SigningKeyResolverAdapter() {
+                    @Override
+                    public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                        // Tokens without a kid predate the key ring; only the signing key can have made them
+                        if (header.getKeyId() == null) {
+                            return keyRing.signingKey().secret();
+                        }
+                        return keyRing.verificationKey(header.getKeyId())
+                                .orElseThrow(() -> new SignatureException("Unknown JWT signing key " + header.getKeyId()));
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Parse the token and check its signature and expiry, once per token: later calls with the same token are
+     * answered from a cache until it expires.
+     *
+     * @throws io.jsonwebtoken.JwtException if the token is malformed, forged or expired.
+     */
+    public Claims verify(String token) {
+        String key = ContentHash.sha256(token.getBytes(StandardCharsets.UTF_8));
+        Claims cached = verified.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        // Also reached once a cached token expired, so parsing again reports the expiry
+        Claims claims = extractAllClaims(token);
+        Date expiration = claims.getExpiration();
+        if (expiration != null) {
+            verified.put(key, claims, expiration.getTime());
+        }
+        return claims;
+    }
 
     public String extractUsername(String token) {
         return extractClaim(token, Claims::getSubject);
     }
 
     public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
+        final Claims claims = verify(token);
         return claimsResolver.apply(claims);
     }
 
     private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .setSigningKey(SECRET_KEY)
-                .parseClaimsJws(token)
-                .getBody();
+        return parser.parseClaimsJws(token).getBody();
     }
 
     public String generateToken(String username) {
+        return generateToken(username, Map.of());
+    }
+
+    // Carries what the filter needs to authenticate requests without loading the user
+    public String generateToken(UserDetails userDetails) {
+        if (!(userDetails instanceof CustomUserDetails user)) {
+            return generateToken(userDetails.getUsername());
+        }
+        return generateToken(user.getUsername(), Map.of(
+                USER_ID, user.getId(),
+                PREMIUM, user.isPremium(),
+                AUTHORITIES, user.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList(),
+                TOKEN_VERSION, user.getTokenVersion()));
+    }
+
+    private String generateToken(String username, Map<String, Object> claims) {
+        JwtKeyRing.Key key = keyRing.signingKey();
         return Jwts.builder()
+                .setHeaderParam(JwsHeader.KEY_ID, key.id())
+                .addClaims(claims)
                 .setSubject(username)
                 .setIssuedAt(new Date())
                 .setExpiration(new Date(System.currentTimeMillis() + 1000 * 60 * 60 * 10)) // 10 hours
-                .signWith(SignatureAlgorithm.HS256, SECRET_KEY)
+                .signWith(key.secret(), SignatureAlgorithm.HS256)
                 .compact();
     }
 
+    /**
+     * The user the verified claims were issued to, or null for tokens issued without the user's details.
+     */
+    public CustomUserDetails toPrincipal(Claims claims) {
+        Long userId = claims.get(USER_ID, Long.class);
+        Integer tokenVersion = claims.get(TOKEN_VERSION, Integer.class);
+        if (userId == null || tokenVersion == null) {
+            return null;
+        }
+        List<?> authorities = claims.get(AUTHORITIES, List.class);
+        return new CustomUserDetails(userId, claims.getSubject(), null,
+                authorities == null ? List.of()
+                        : authorities.stream().map(authority -> new SimpleGrantedAuthority(authority.toString())).toList(),
+                Boolean.TRUE.equals(claims.get(PREMIUM, Boolean.class)),
+                tokenVersion);
+    }
+
     public boolean validateToken(String token, String username) {
-        final String extractedUsername = extractUsername(token);
-        return (extractedUsername.equals(username) && !isTokenExpired(token));
+        return validateToken(verify(token), username);
+    }
+
+    // For claims returned by verify, which already checked the signature
+    public boolean validateToken(Claims claims, String username) {
+        return username.equals(claims.getSubject()) && !isTokenExpired(claims);
     }
 
-    private boolean isTokenExpired(String token) {
-        return extractClaim(token, Claims::getExpiration).before(new Date());
+    private boolean isTokenExpired(Claims claims) {
+        return claims.getExpiration().before(new Date());
     }
 
     public SecretKey getSecretKey() {
-        return SECRET_KEY;
+        return keyRing.signingKey().secret();
     }
 
 }
@@ -0,0 +1,174 @@
+package org.example.booksfrog.util;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.example.booksfrog.dto.RenderedPage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Shared LRU cache of rendered page images, bounded by the total number of image bytes it holds.
+ */
+@Component
+public class PageImageCache implements MeterBinder {
+
+    // Rough per-entry bookkeeping cost (key, entry object, map node) added to the image size
+    private static final long ENTRY_OVERHEAD_BYTES = 128;
+
+    public record PageKey(Long bookId, int page, int dpi, String format) {
+    }
+
+    private record Entry(RenderedPage page, long weight) {
+    }
+
+    private final long maxBytes;
+
+    // Access-ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<PageKey, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+
+    // Bumped on every invalidation so renders that started before it are not cached afterwards
+    private final Map<Long, Long> generations = new ConcurrentHashMap<>();
+
+    private long currentBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    @Autowired
+    public PageImageCache(@Value("${booksfrog.render.cache.max-bytes:67108864}") long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public RenderedPage get(PageKey key) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.page();
+    }
+
+    // Presence check that leaves hit/miss statistics and LRU order untouched
+    public synchronized boolean contains(PageKey key) {
+        return entries.containsKey(key);
+    }
+
+    public long generation(Long bookId) {
+        return generations.getOrDefault(bookId, 0L);
+    }
+
+    /**
+     * Store a rendered page, unless the book was invalidated after {@code generation} was read.
+     *
+     * @return true if the page was cached.
+     */
+    public boolean put(PageKey key, RenderedPage page, long generation) {
+        long weight = page.getImage().length + ENTRY_OVERHEAD_BYTES;
+        if (weight > maxBytes) {
+            return false; // Would evict everything else and still not fit
+        }
+
+        synchronized (this) {
+            if (generation(key.bookId()) != generation) {
+                return false;
+            }
+            Entry previous = entries.put(key, new Entry(page, weight));
+            if (previous != null) {
+                currentBytes -= previous.weight();
+            }
+            currentBytes += weight;
+            evictToBudget();
+        }
+        return true;
+    }
+
+    // Drop every cached page of a book, e.g. after its content changed or it was deleted
+    public void invalidateBook(Long bookId) {
+        synchronized (this) {
+            generations.merge(bookId, 1L, Long::sum);
+            Iterator<Map.Entry<PageKey, Entry>> iterator = entries.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<PageKey, Entry> entry = iterator.next();
+                if (entry.getKey().bookId().equals(bookId)) {
+                    currentBytes -= entry.getValue().weight();
+                    iterator.remove();
+                    invalidations.increment();
+                }
+            }
+        }
+    }
+
+    private void evictToBudget() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (currentBytes > maxBytes && iterator.hasNext()) {
+            currentBytes -= iterator.next().weight();
+            iterator.remove();
+            evictions.increment();
+        }
+    }
+
+    public synchronized long getCurrentBytes() {
+        return currentBytes;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public long getInvalidationCount() {
+        return invalidations.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("booksfrog.render.cache.bytes", this, PageImageCache::getCurrentBytes)
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("booksfrog.render.cache.max.bytes", this, PageImageCache::getMaxBytes)
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("booksfrog.render.cache.entries", this, PageImageCache::size)
+                .register(registry);
+        FunctionCounter.builder("booksfrog.render.cache.requests", this, PageImageCache::getHitCount)
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("booksfrog.render.cache.requests", this, PageImageCache::getMissCount)
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("booksfrog.render.cache.evictions", this, PageImageCache::getEvictionCount)
+                .register(registry);
+        FunctionCounter.builder("booksfrog.render.cache.invalidations", this, PageImageCache::getInvalidationCount)
+                .register(registry);
+    }
+}
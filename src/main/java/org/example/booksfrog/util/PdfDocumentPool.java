@@ -0,0 +1,340 @@
+package org.example.booksfrog.util;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Keeps recently used, already parsed PDF documents open so page renders don't re-parse the whole file.
+ * <p>
+ * A {@link PDDocument} is not safe for concurrent use, so each instance is lent to one caller at a time;
+ * concurrent readers of the same book get separate instances. Idle instances are closed once they have
+ * been unused for the idle timeout, or earlier when the open documents exceed the memory budget.
+ */
+@Component
+public class PdfDocumentPool implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(PdfDocumentPool.class);
+
+    private final long maxBytes;
+
+    private final long idleTimeoutMillis;
+
+    private final int maxIdlePerBook;
+
+    // All state below is guarded by "this"
+    private final Map<Long, Deque<PooledDocument>> idleByBook = new HashMap<>();
+
+    // Idle documents, least recently returned first
+    private final LinkedHashSet<PooledDocument> idleOrder = new LinkedHashSet<>();
+
+    private final Map<Long, Long> generations = new HashMap<>();
+
+    private long openBytes;
+
+    private int openDocuments;
+
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder reuses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @Autowired
+    public PdfDocumentPool(@Value("${booksfrog.pdf.pool.max-bytes:268435456}") long maxBytes,
+                           @Value("${booksfrog.pdf.pool.idle-timeout-ms:300000}") long idleTimeoutMillis,
+                           @Value("${booksfrog.pdf.pool.max-idle-per-book:4}") int maxIdlePerBook) {
+        this.maxBytes = maxBytes;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.maxIdlePerBook = maxIdlePerBook;
+    }
+
+    private static final class PooledDocument {
+        private final Long bookId;
+        private final PDDocument document;
+        // Memory footprint, estimated from the size of the PDF it was parsed from
+        private final long weight;
+        private final long generation;
+        private long lastUsed;
+
+        private PooledDocument(Long bookId, PDDocument document, long weight, long generation) {
+            this.bookId = bookId;
+            this.document = document;
+            this.weight = weight;
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * A borrowed document; closing the lease hands the document back to the pool.
+     */
+    public final class Lease implements AutoCloseable {
+
+        private final PooledDocument pooled;
+
+        private boolean released;
+
+        private Lease(PooledDocument pooled) {
+            this.pooled = pooled;
+        }
+
+        public PDDocument getDocument() {
+            return pooled.document;
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                release(pooled);
+            }
+        }
+    }
+
+    /**
+     * Borrow an open document for a book, parsing it from {@code contentLoader} if no idle instance is available.
+     *
+     * @return the lease, or null if the book has no PDF content.
+     */
+    public Lease borrow(Long bookId, Supplier<byte[]> contentLoader) throws IOException {
+        long generation;
+        synchronized (this) {
+            PooledDocument idle = takeIdle(bookId);
+            if (idle != null) {
+                reuses.increment();
+                return new Lease(idle);
+            }
+            generation = generations.getOrDefault(bookId, 0L);
+        }
+
+        byte[] content = contentLoader.get();
+        if (content == null || content.length == 0) {
+            return null;
+        }
+
+        PDDocument document = PDDocument.load(content);
+        loads.increment();
+        PooledDocument pooled = new PooledDocument(bookId, document, content.length, generation);
+
+        List<PooledDocument> evicted;
+        synchronized (this) {
+            openBytes += pooled.weight;
+            openDocuments++;
+            evicted = evictToBudget();
+        }
+        closeAll(evicted);
+        return new Lease(pooled);
+    }
+
+    /**
+     * Page count of a book, answered from an idle open document when there is one. Otherwise the content is
+     * parsed once without being pooled, so bulk jobs don't push hot documents out of the pool.
+     *
+     * @return the total number of pages, or 0 if there is no content or it can't be parsed.
+     */
+    public int getPageCount(Long bookId, Supplier<byte[]> contentLoader) {
+        PooledDocument idle;
+        synchronized (this) {
+            idle = takeIdle(bookId);
+        }
+        if (idle == null) {
+            return PdfUtils.getPageCount(contentLoader.get());
+        }
+        reuses.increment();
+        try {
+            return idle.document.getNumberOfPages();
+        } finally {
+            release(idle);
+        }
+    }
+
+    // Close idle documents of a book and make sure lent ones are closed when they come back
+    public void invalidate(Long bookId) {
+        List<PooledDocument> evicted = new ArrayList<>();
+        synchronized (this) {
+            generations.merge(bookId, 1L, Long::sum);
+            Deque<PooledDocument> idle = idleByBook.remove(bookId);
+            if (idle != null) {
+                for (PooledDocument pooled : idle) {
+                    idleOrder.remove(pooled);
+                    forget(pooled);
+                    evicted.add(pooled);
+                }
+            }
+        }
+        closeAll(evicted);
+    }
+
+    @Scheduled(fixedDelayString = "${booksfrog.pdf.pool.sweep-interval-ms:30000}")
+    public void evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleTimeoutMillis;
+        List<PooledDocument> evicted = new ArrayList<>();
+        synchronized (this) {
+            Iterator<PooledDocument> iterator = idleOrder.iterator();
+            while (iterator.hasNext()) {
+                PooledDocument pooled = iterator.next();
+                if (pooled.lastUsed > cutoff) {
+                    break; // Everything after this one was returned more recently
+                }
+                iterator.remove();
+                removeFromBook(pooled);
+                forget(pooled);
+                evicted.add(pooled);
+            }
+        }
+        closeAll(evicted);
+    }
+
+    @PreDestroy
+    public void closeIdle() {
+        List<PooledDocument> evicted;
+        synchronized (this) {
+            evicted = new ArrayList<>(idleOrder);
+            idleOrder.clear();
+            idleByBook.clear();
+            evicted.forEach(this::forget);
+        }
+        closeAll(evicted);
+    }
+
+    private void release(PooledDocument pooled) {
+        List<PooledDocument> evicted = new ArrayList<>();
+        synchronized (this) {
+            Deque<PooledDocument> idle = idleByBook.computeIfAbsent(pooled.bookId, id -> new ArrayDeque<>());
+            boolean stale = pooled.generation != generations.getOrDefault(pooled.bookId, 0L);
+            if (stale || idle.size() >= maxIdlePerBook) {
+                forget(pooled);
+                evicted.add(pooled);
+                if (idle.isEmpty()) {
+                    idleByBook.remove(pooled.bookId);
+                }
+            } else {
+                pooled.lastUsed = System.currentTimeMillis();
+                idle.push(pooled);
+                idleOrder.add(pooled);
+                evicted.addAll(evictToBudget());
+            }
+        }
+        closeAll(evicted);
+    }
+
+    // Caller holds the lock
+    private PooledDocument takeIdle(Long bookId) {
+        Deque<PooledDocument> idle = idleByBook.get(bookId);
+        if (idle == null) {
+            return null;
+        }
+        PooledDocument pooled = idle.pop();
+        if (idle.isEmpty()) {
+            idleByBook.remove(bookId);
+        }
+        idleOrder.remove(pooled);
+        return pooled;
+    }
+
+    // Caller holds the lock
+    private List<PooledDocument> evictToBudget() {
+        List<PooledDocument> evicted = new ArrayList<>();
+        Iterator<PooledDocument> iterator = idleOrder.iterator();
+        while (openBytes > maxBytes && iterator.hasNext()) {
+            PooledDocument pooled = iterator.next();
+            iterator.remove();
+            removeFromBook(pooled);
+            forget(pooled);
+            evicted.add(pooled);
+        }
+        return evicted;
+    }
+
+    // Caller holds the lock
+    private void removeFromBook(PooledDocument pooled) {
+        Deque<PooledDocument> idle = idleByBook.get(pooled.bookId);
+        if (idle != null) {
+            idle.remove(pooled);
+            if (idle.isEmpty()) {
+                idleByBook.remove(pooled.bookId);
+            }
+        }
+    }
+
+    // Caller holds the lock
+    private void forget(PooledDocument pooled) {
+        openBytes -= pooled.weight;
+        openDocuments--;
+        evictions.increment();
+    }
+
+    private void closeAll(List<PooledDocument> documents) {
+        for (PooledDocument pooled : documents) {
+            try {
+                pooled.document.close();
+            } catch (IOException e) {
+                log.warn("Failed to close pooled document of book {}", pooled.bookId, e);
+            }
+        }
+    }
+
+    public synchronized long getOpenBytes() {
+        return openBytes;
+    }
+
+    public synchronized int getOpenDocuments() {
+        return openDocuments;
+    }
+
+    public synchronized int getIdleDocuments() {
+        return idleOrder.size();
+    }
+
+    public long getLoadCount() {
+        return loads.sum();
+    }
+
+    public long getReuseCount() {
+        return reuses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("booksfrog.pdf.pool.bytes", this, PdfDocumentPool::getOpenBytes)
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("booksfrog.pdf.pool.documents", this, PdfDocumentPool::getOpenDocuments)
+                .tag("state", "open")
+                .register(registry);
+        Gauge.builder("booksfrog.pdf.pool.documents", this, PdfDocumentPool::getIdleDocuments)
+                .tag("state", "idle")
+                .register(registry);
+        FunctionCounter.builder("booksfrog.pdf.pool.borrows", this, PdfDocumentPool::getLoadCount)
+                .tag("result", "load")
+                .register(registry);
+        FunctionCounter.builder("booksfrog.pdf.pool.borrows", this, PdfDocumentPool::getReuseCount)
+                .tag("result", "reuse")
+                .register(registry);
+        FunctionCounter.builder("booksfrog.pdf.pool.evictions", this, PdfDocumentPool::getEvictionCount)
+                .register(registry);
+    }
+}
@@ -0,0 +1,150 @@
+package org.example.booksfrog.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.example.booksfrog.exception.RenderOverloadedException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs PDF rasterisation on a dedicated pool sized to the CPU, so page renders can't take over the
+ * request threads that serve the rest of the API. Work that can't be queued or started within the
+ * maximum wait is rejected with {@link RenderOverloadedException}.
+ */
+@Component
+public class RenderExecutor {
+
+    @FunctionalInterface
+    public interface RenderTask<T> {
+        T call() throws IOException;
+    }
+
+    private final ThreadPoolExecutor pool;
+
+    private final long maxWaitMillis;
+
+    private final long retryAfterSeconds;
+
+    private final Timer waitTimer;
+
+    private final Timer renderTimer;
+
+    private final Counter queueFullRejections;
+
+    private final Counter timeoutRejections;
+
+    @Autowired
+    public RenderExecutor(MeterRegistry meterRegistry,
+                          @Value("${booksfrog.render.executor.threads:0}") int threads,
+                          @Value("${booksfrog.render.executor.queue-capacity:32}") int queueCapacity,
+                          @Value("${booksfrog.render.executor.max-wait-ms:10000}") long maxWaitMillis,
+                          @Value("${booksfrog.render.executor.retry-after-seconds:2}") long retryAfterSeconds) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "page-render-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.maxWaitMillis = maxWaitMillis;
+        this.retryAfterSeconds = retryAfterSeconds;
+
+        this.waitTimer = Timer.builder("booksfrog.render.executor.wait")
+                .description("Time a render spent queued before a render thread picked it up")
+                .register(meterRegistry);
+        this.renderTimer = Timer.builder("booksfrog.render.executor.render")
+                .description("Time spent rendering a page")
+                .register(meterRegistry);
+        this.queueFullRejections = Counter.builder("booksfrog.render.executor.rejected")
+                .tag("reason", "queue_full")
+                .register(meterRegistry);
+        this.timeoutRejections = Counter.builder("booksfrog.render.executor.rejected")
+                .tag("reason", "timeout")
+                .register(meterRegistry);
+        Gauge.builder("booksfrog.render.executor.queue", pool, p -> p.getQueue().size())
+                .register(meterRegistry);
+        Gauge.builder("booksfrog.render.executor.active", pool, ThreadPoolExecutor::getActiveCount)
+                .register(meterRegistry);
+        Gauge.builder("booksfrog.render.executor.threads", pool, ThreadPoolExecutor::getMaximumPoolSize)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Run a render on the pool and wait for its result, at most the configured maximum wait.
+     *
+     * @throws RenderOverloadedException if the queue is full or the render didn't finish in time.
+     */
+    public <T> T execute(RenderTask<T> task) throws IOException {
+        long queuedAt = System.nanoTime();
+        Future<T> future;
+        try {
+            future = pool.submit(() -> {
+                waitTimer.record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+                long startedAt = System.nanoTime();
+                try {
+                    return task.call();
+                } finally {
+                    renderTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            queueFullRejections.increment();
+            throw new RenderOverloadedException("Too many pages are being rendered, try again shortly.", retryAfterSeconds);
+        }
+
+        try {
+            return future.get(maxWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            timeoutRejections.increment();
+            throw new RenderOverloadedException("Rendering the page took too long, try again shortly.", retryAfterSeconds);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a page render", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IOException("Page render failed", cause);
+        }
+    }
+
+    // Renders waiting for a thread; background work should stay out of the way while this is non-zero
+    public int getQueueSize() {
+        return pool.getQueue().size();
+    }
+
+    // Every render thread is busy or renders are queued; another render would have to wait
+    public boolean isSaturated() {
+        return pool.getActiveCount() >= pool.getMaximumPoolSize() || !pool.getQueue().isEmpty();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+}
@@ -0,0 +1,44 @@
+package org.example.booksfrog.util;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.nio.file.Path;
+
+/**
+ * Hands a file over to Tomcat's sendfile support, the same way its DefaultServlet serves static files. The
+ * connector then copies the file to the socket with {@code FileChannel.transferTo}, straight from the page cache,
+ * and the application writes no body of its own.
+ */
+public final class SendfileSupport {
+
+    private static final String SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String START = "org.apache.tomcat.sendfile.start";
+    private static final String END = "org.apache.tomcat.sendfile.end";
+
+    private SendfileSupport() {
+        throw new UnsupportedOperationException("Utility class");
+    }
+
+    /**
+     * Ask the container to send bytes {@code start} (inclusive) to {@code end} (exclusive) of the file as the
+     * response body of the current request.
+     *
+     * @return false if the connector can't do it, in which case the caller must write the body itself.
+     */
+    public static boolean tryServe(Path file, long start, long end) {
+        if (!(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)) {
+            return false;
+        }
+        HttpServletRequest request = attributes.getRequest();
+        if (!Boolean.TRUE.equals(request.getAttribute(SUPPORTED))) {
+            return false;
+        }
+        request.setAttribute(FILENAME, file.toAbsolutePath().toString());
+        request.setAttribute(START, start);
+        request.setAttribute(END, end);
+        return true;
+    }
+}
@@ -1,21 +1,48 @@
 package org.example.booksfrog.controller;
 
 import org.example.booksfrog.dto.BookDTO;
+import org.example.booksfrog.dto.BookSuggestion;
+import org.example.booksfrog.dto.CursorPage;
+import org.example.booksfrog.dto.RenderedPage;
+import org.example.booksfrog.exception.RenderOverloadedException;
 import org.example.booksfrog.mapper.BookMapper;
 import org.example.booksfrog.model.Book;
+import org.example.booksfrog.search.SearchField;
+import org.example.booksfrog.service.BookContentService;
 import org.example.booksfrog.service.BookService;
+import org.example.booksfrog.service.LatestBooksFeed;
+import org.example.booksfrog.service.PagePrefetcher;
+import org.example.booksfrog.service.PageRenderService;
+import org.example.booksfrog.service.TokenService;
+import org.example.booksfrog.service.ViewCounter;
+import org.example.booksfrog.storage.StoredContent;
+import org.example.booksfrog.trending.TrendingTracker;
+import org.example.booksfrog.trending.TrendingWindow;
+import org.example.booksfrog.util.ContentOpenTracker;
+import org.example.booksfrog.util.CustomUserDetails;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.core.io.Resource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Path;
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -26,6 +53,30 @@ class BookControllerTest {
     @Mock
     private BookService bookService;
 
+    @Mock
+    private TokenService tokenService;
+
+    @Mock
+    private PageRenderService pageRenderService;
+
+    @Mock
+    private PagePrefetcher pagePrefetcher;
+
+    @Mock
+    private BookContentService bookContentService;
+
+    @Mock
+    private LatestBooksFeed latestBooksFeed;
+
+    @Mock
+    private ViewCounter viewCounter;
+
+    @Mock
+    private TrendingTracker trendingTracker;
+
+    @Spy
+    private ContentOpenTracker contentOpenTracker = new ContentOpenTracker(60_000);
+
     @InjectMocks
     private BookController bookController;
 
@@ -47,6 +98,27 @@ class BookControllerTest {
         bookDTO = BookMapper.toDTO(book);
     }
 
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    // Content of book 1 as kept by a store without local files, unless a test says otherwise
+    private StoredContent givenContent(long length) {
+        StoredContent stored = mock(StoredContent.class);
+        when(stored.getLength()).thenReturn(length);
+        when(stored.getLocalFile()).thenReturn(Optional.empty());
+        when(bookContentService.findContent(1L)).thenReturn(Optional.of(stored));
+        return stored;
+    }
+
+    private void authenticateAs(Long userId) {
+        CustomUserDetails userDetails = new CustomUserDetails(userId, "reader", "password", Collections.emptyList());
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities()));
+    }
+
     @Test
     void testGetBookById_BookExists() {
         when(bookService.getBookById(1L)).thenReturn(Optional.of(book));
@@ -56,6 +128,7 @@ class BookControllerTest {
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals(bookDTO, response.getBody());
         verify(bookService, times(1)).getBookById(1L);
+        verify(viewCounter, times(1)).record(1L);
     }
 
     @Test
@@ -66,6 +139,7 @@ class BookControllerTest {
 
         assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
         verify(bookService, times(1)).getBookById(1L);
+        verify(viewCounter, never()).record(anyLong());
     }
 
     @Test
@@ -115,14 +189,33 @@ class BookControllerTest {
 
     @Test
     void testGetLast12Books() {
-        when(bookService.getLast12Books()).thenReturn(Collections.singletonList(bookDTO));
+        byte[] body = "[{\"id\":1}]".getBytes();
+        givenLatestBooks(body, "\"feed\"");
+
+        ResponseEntity<byte[]> response = bookController.getLast12Books(null);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertArrayEquals(body, response.getBody());
+        assertEquals("\"feed\"", response.getHeaders().getETag());
+        assertEquals(MediaType.APPLICATION_JSON, response.getHeaders().getContentType());
+        verify(bookService, never()).getLast12Books();
+    }
+
+    @Test
+    void testGetLast12Books_NotModified() {
+        givenLatestBooks("[]".getBytes(), "\"feed\"");
 
-        List<BookDTO> books = bookController.getLast12Books();
+        ResponseEntity<byte[]> response = bookController.getLast12Books("\"feed\"");
 
-        assertNotNull(books);
-        assertEquals(1, books.size());
-        assertEquals(bookDTO, books.get(0));
-        verify(bookService, times(1)).getLast12Books();
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        assertNull(response.getBody());
+    }
+
+    private void givenLatestBooks(byte[] body, String etag) {
+        LatestBooksFeed.Snapshot snapshot = mock(LatestBooksFeed.Snapshot.class);
+        when(snapshot.getBody()).thenReturn(body);
+        when(snapshot.getEtag()).thenReturn(etag);
+        when(latestBooksFeed.get()).thenReturn(snapshot);
     }
 
     @Test
@@ -212,6 +305,58 @@ class BookControllerTest {
         verify(bookService, never()).searchBooksByCategory(anyString(), any(PageRequest.class));
     }
 
+    @Test
+    void testSearchBooksAfter() {
+        CursorPage<BookDTO> page = new CursorPage<>(List.of(bookDTO), "next", null);
+        when(bookService.searchBooksAfter(SearchField.AUTHOR, "Author", "abc", 10, false)).thenReturn(page);
+
+        ResponseEntity<CursorPage<BookDTO>> response = bookController.searchBooksAfter(null, "Author", null, "abc", 10, false);
+
+        assertEquals(page, response.getBody());
+        assertTrue(Objects.requireNonNull(bookController.searchBooksAfter(null, null, null, null, 10, false)
+                .getBody()).getItems().isEmpty());
+    }
+
+    @Test
+    void testGetTrendingBooks_ClampsLimit() {
+        when(bookService.getTrendingBooks(TrendingWindow.DAY, 50)).thenReturn(List.of(bookDTO));
+
+        ResponseEntity<List<BookDTO>> response = bookController.getTrendingBooks(TrendingWindow.DAY, 500);
+
+        assertEquals(List.of(bookDTO), response.getBody());
+    }
+
+    @Test
+    void testSuggest() {
+        List<BookSuggestion> suggestions = List.of(new BookSuggestion("Test Book", SearchField.TITLE));
+        when(bookService.suggest("tes", 20)).thenReturn(suggestions);
+
+        ResponseEntity<List<BookSuggestion>> response = bookController.suggest("tes", 50);
+
+        assertEquals(suggestions, response.getBody());
+        assertTrue(Objects.requireNonNull(bookController.suggest(" ", 10).getBody()).isEmpty());
+        verify(bookService, times(1)).suggest(anyString(), anyInt());
+    }
+
+    @Test
+    void testQueryBooks_ClampsLimit() {
+        when(bookService.queryBooks("tolkien", 100)).thenReturn(List.of(bookDTO));
+
+        ResponseEntity<List<BookDTO>> response = bookController.queryBooks("tolkien", 5000);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(List.of(bookDTO), response.getBody());
+        verify(bookService, times(1)).queryBooks("tolkien", 100);
+    }
+
+    @Test
+    void testQueryBooks_BlankQuery() {
+        ResponseEntity<List<BookDTO>> response = bookController.queryBooks("  ", 20);
+
+        assertTrue(Objects.requireNonNull(response.getBody()).isEmpty());
+        verify(bookService, never()).queryBooks(anyString(), anyInt());
+    }
+
     @Test
     void testRecalculateTotalPages() {
         doNothing().when(bookService).recalculateTotalPages();
@@ -224,25 +369,274 @@ class BookControllerTest {
     }
 
     @Test
-    void testGetBookContent_Exists() {
+    void testGetBookContent_Exists() throws Exception {
+        authenticateAs(7L);
         byte[] content = new byte[]{1, 2, 3};
-        when(bookService.getBookContentById(1L)).thenReturn(content);
+        when(bookService.getContentVersion(1L)).thenReturn(Optional.of(2L));
+        StoredContent stored = givenContent(3L);
+        when(stored.open(0, 3)).thenReturn(new ByteArrayInputStream(content));
 
-        ResponseEntity<byte[]> response = bookController.getBookContent(1L);
+        ResponseEntity<Resource> response = bookController.getBookContent(1L, null, null);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
-        assertArrayEquals(content, response.getBody());
+        assertArrayEquals(content, response.getBody().getInputStream().readAllBytes());
         assertEquals(MediaType.APPLICATION_PDF, response.getHeaders().getContentType());
-        verify(bookService, times(1)).getBookContentById(1L);
+        assertEquals("bytes", response.getHeaders().getFirst(HttpHeaders.ACCEPT_RANGES));
+        assertEquals(3, response.getHeaders().getContentLength());
+        verify(tokenService, times(1)).deductTokens(7L, 10);
     }
 
     @Test
     void testGetBookContent_NotExists() {
-        when(bookService.getBookContentById(1L)).thenReturn(new byte[]{});
+        when(bookService.getContentVersion(1L)).thenReturn(Optional.of(2L));
+        when(bookContentService.findContent(1L)).thenReturn(Optional.empty());
 
-        ResponseEntity<byte[]> response = bookController.getBookContent(1L);
+        ResponseEntity<Resource> response = bookController.getBookContent(1L, null, null);
 
         assertEquals(HttpStatus.NO_CONTENT, response.getStatusCode());
-        verify(bookService, times(1)).getBookContentById(1L);
+        verify(tokenService, never()).deductTokens(anyLong(), anyInt());
+    }
+
+    @Test
+    void testGetBookContent_Range() {
+        authenticateAs(7L);
+        when(bookService.getContentVersion(1L)).thenReturn(Optional.of(2L));
+        StoredContent stored = givenContent(1000L);
+        when(stored.open(100, 100)).thenReturn(new ByteArrayInputStream(new byte[100]));
+
+        ResponseEntity<Resource> response = bookController.getBookContent(1L, "bytes=100-199", null);
+
+        assertEquals(HttpStatus.PARTIAL_CONTENT, response.getStatusCode());
+        assertEquals("bytes 100-199/1000", response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+        assertEquals(100, response.getHeaders().getContentLength());
+    }
+
+    @Test
+    void testGetBookContent_RangesOfOneOpenAreChargedOnce() {
+        authenticateAs(7L);
+        when(bookService.getContentVersion(1L)).thenReturn(Optional.of(2L));
+        StoredContent stored = givenContent(1000L);
+        when(stored.open(anyLong(), anyLong())).thenReturn(new ByteArrayInputStream(new byte[0]));
+
+        bookController.getBookContent(1L, "bytes=0-499", null);
+        bookController.getBookContent(1L, "bytes=500-999", null);
+
+        verify(tokenService, times(1)).deductTokens(7L, 10);
+        verify(viewCounter, times(1)).record(1L);
+        verify(trendingTracker, times(1)).record(1L);
+    }
+
+    @Test
+    void testGetBookContent_NewVersionIsANewOpen() {
+        authenticateAs(7L);
+        when(bookService.getContentVersion(1L)).thenReturn(Optional.of(2L), Optional.of(3L));
+        StoredContent stored = givenContent(1000L);
+        when(stored.open(anyLong(), anyLong())).thenReturn(new ByteArrayInputStream(new byte[0]));
+
+        bookController.getBookContent(1L, null, null);
+        bookController.getBookContent(1L, null, null);
+
+        verify(tokenService, times(2)).deductTokens(7L, 10);
+    }
+
+    @Test
+    void testGetBookContent_IfRangeMismatchServesWholeFile() {
+        authenticateAs(7L);
+        when(bookService.getContentVersion(1L)).thenReturn(Optional.of(2L));
+        StoredContent stored = givenContent(1000L);
+        when(stored.open(0, 1000)).thenReturn(new ByteArrayInputStream(new byte[1000]));
+
+        ResponseEntity<Resource> response = bookController.getBookContent(1L, "bytes=100-199", "\"1-v1.pdf\"");
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(1000, response.getHeaders().getContentLength());
+    }
+
+    @Test
+    void testGetBookContent_UnsatisfiableRange() {
+        when(bookService.getContentVersion(1L)).thenReturn(Optional.of(2L));
+        givenContent(1000L);
+
+        ResponseEntity<Resource> response = bookController.getBookContent(1L, "bytes=1000-", null);
+
+        assertEquals(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE, response.getStatusCode());
+        assertEquals("bytes */1000", response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+        verify(tokenService, never()).deductTokens(anyLong(), anyInt());
+    }
+
+    @Test
+    void testGetBookContent_FailedChargeIsNotRemembered() {
+        authenticateAs(7L);
+        when(bookService.getContentVersion(1L)).thenReturn(Optional.of(2L));
+        givenContent(1000L);
+        doThrow(new RuntimeException("No tokens")).when(tokenService).deductTokens(7L, 10);
+
+        assertThrows(RuntimeException.class, () -> bookController.getBookContent(1L, null, null));
+        assertThrows(RuntimeException.class, () -> bookController.getBookContent(1L, null, null));
+
+        verify(tokenService, times(2)).deductTokens(7L, 10);
+        verify(viewCounter, never()).record(anyLong());
+    }
+
+    @Test
+    void testGetBookContent_LocalFileIsSentByTheContainer() {
+        authenticateAs(7L);
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        Path file = Path.of("/data/blobs/ab/cd/abcd");
+        when(bookService.getContentVersion(1L)).thenReturn(Optional.of(2L));
+        StoredContent stored = givenContent(1000L);
+        when(stored.getLocalFile()).thenReturn(Optional.of(file));
+
+        ResponseEntity<Resource> response = bookController.getBookContent(1L, "bytes=100-199", null);
+
+        assertEquals(HttpStatus.PARTIAL_CONTENT, response.getStatusCode());
+        assertNull(response.getBody());
+        assertEquals(100, response.getHeaders().getContentLength());
+        assertEquals(file.toAbsolutePath().toString(), request.getAttribute("org.apache.tomcat.sendfile.filename"));
+        assertEquals(100L, request.getAttribute("org.apache.tomcat.sendfile.start"));
+        assertEquals(200L, request.getAttribute("org.apache.tomcat.sendfile.end"));
+        verify(stored, never()).open(anyLong(), anyLong());
+    }
+
+    @Test
+    void testGetBookContent_LocalFileIsStreamedWithoutSendfile() throws Exception {
+        authenticateAs(7L);
+        when(bookService.getContentVersion(1L)).thenReturn(Optional.of(2L));
+        StoredContent stored = givenContent(3L);
+        when(stored.getLocalFile()).thenReturn(Optional.of(Path.of("/data/blobs/ab/cd/abcd")));
+        when(stored.open(0, 3)).thenReturn(new ByteArrayInputStream(new byte[]{1, 2, 3}));
+
+        ResponseEntity<Resource> response = bookController.getBookContent(1L, null, null);
+
+        assertArrayEquals(new byte[]{1, 2, 3}, response.getBody().getInputStream().readAllBytes());
+    }
+
+    @Test
+    void testGetBookPageImage_Rendered() throws Exception {
+        authenticateAs(7L);
+        byte[] image = new byte[]{1, 2, 3};
+        when(pageRenderService.getDefaultDpi()).thenReturn(80);
+        when(bookService.getContentVersion(1L)).thenReturn(Optional.of(3L));
+        when(pageRenderService.renderPage(1L, 0, 80, "png")).thenReturn(Optional.of(new RenderedPage(image, 12, "png")));
+
+        ResponseEntity<byte[]> response = bookController.getBookPageImage(1L, 0, null, "png", null);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertArrayEquals(image, response.getBody());
+        assertEquals(MediaType.IMAGE_PNG, response.getHeaders().getContentType());
+        assertEquals("\"1-v3-p0-d80.png\"", response.getHeaders().getETag());
+        assertEquals("12", response.getHeaders().getFirst("X-Total-Pages"));
+        verify(tokenService, times(1)).deductTokens(7L, 5);
+        verify(pagePrefetcher, times(1)).onPageViewed(7L, 1L, 0, 12);
+    }
+
+    @Test
+    void testGetBookPageImage_NotModifiedSkipsRenderAndCharge() throws Exception {
+        when(pageRenderService.getDefaultDpi()).thenReturn(80);
+        when(bookService.getContentVersion(1L)).thenReturn(Optional.of(3L));
+
+        ResponseEntity<byte[]> response = bookController.getBookPageImage(1L, 0, null, "png", "\"1-v3-p0-d80.png\"");
+
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        assertEquals("\"1-v3-p0-d80.png\"", response.getHeaders().getETag());
+        verify(tokenService, never()).deductTokens(anyLong(), anyInt());
+        verify(pageRenderService, never()).renderPage(anyLong(), anyInt(), anyInt(), anyString());
+    }
+
+    @Test
+    void testGetBookPageImage_StaleEtagRenders() throws Exception {
+        authenticateAs(7L);
+        when(pageRenderService.getDefaultDpi()).thenReturn(80);
+        when(bookService.getContentVersion(1L)).thenReturn(Optional.of(4L));
+        when(pageRenderService.renderPage(1L, 0, 80, "png"))
+                .thenReturn(Optional.of(new RenderedPage(new byte[]{1}, 12, "png")));
+
+        ResponseEntity<byte[]> response = bookController.getBookPageImage(1L, 0, null, "png", "\"1-v3-p0-d80.png\"");
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("\"1-v4-p0-d80.png\"", response.getHeaders().getETag());
+    }
+
+    @Test
+    void testGetBookPageImage_UnsupportedFormat() throws Exception {
+        when(pageRenderService.getDefaultDpi()).thenReturn(80);
+
+        ResponseEntity<byte[]> response = bookController.getBookPageImage(1L, 0, null, "gif", null);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        verify(bookService, never()).getContentVersion(anyLong());
+    }
+
+    @Test
+    void testGetBookPageImage_BookNotFound() throws Exception {
+        when(pageRenderService.getDefaultDpi()).thenReturn(80);
+        when(bookService.getContentVersion(1L)).thenReturn(Optional.empty());
+
+        ResponseEntity<byte[]> response = bookController.getBookPageImage(1L, 0, null, "png", null);
+
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+    }
+
+    @Test
+    void testGetBookContentImage_OverloadedRefundsCharge() throws Exception {
+        authenticateAs(7L);
+        when(pageRenderService.renderPage(1L, 0)).thenThrow(new RenderOverloadedException("Busy", 2));
+
+        ResponseEntity<Map<String, Object>> response = bookController.getBookContentImage(1L, 0);
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+        assertEquals("2", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        verify(tokenService, times(1)).deductTokens(7L, 5);
+        verify(tokenService, times(1)).addTokens(7L, 5);
+        verify(pagePrefetcher, never()).onPageViewed(anyLong(), anyLong(), anyInt(), anyInt());
+    }
+
+    @Test
+    void testGetBookPageImage_OverloadedRefundsCharge() throws Exception {
+        authenticateAs(7L);
+        when(pageRenderService.getDefaultDpi()).thenReturn(80);
+        when(bookService.getContentVersion(1L)).thenReturn(Optional.of(3L));
+        when(pageRenderService.renderPage(1L, 0, 80, "png")).thenThrow(new RenderOverloadedException("Busy", 2));
+
+        assertThrows(RenderOverloadedException.class,
+                () -> bookController.getBookPageImage(1L, 0, null, "png", null));
+
+        verify(tokenService, times(1)).addTokens(7L, 5);
+    }
+
+    @Test
+    void testGetBookCover() {
+        byte[] cover = new byte[]{9, 8, 7};
+        when(bookService.getContentVersion(1L)).thenReturn(Optional.of(2L));
+        when(bookService.getBookCoverById(1L)).thenReturn(Optional.of(cover));
+
+        ResponseEntity<byte[]> response = bookController.getBookCover(1L, null);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertArrayEquals(cover, response.getBody());
+        assertEquals(MediaType.IMAGE_JPEG, response.getHeaders().getContentType());
+        assertEquals("\"1-v2-cover\"", response.getHeaders().getETag());
+    }
+
+    @Test
+    void testGetBookCover_NotModified() {
+        when(bookService.getContentVersion(1L)).thenReturn(Optional.of(2L));
+
+        ResponseEntity<byte[]> response = bookController.getBookCover(1L, "\"1-v2-cover\"");
+
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        verify(bookService, never()).getBookCoverById(anyLong());
+    }
+
+    @Test
+    void testGetBookCover_NoCover() {
+        when(bookService.getContentVersion(1L)).thenReturn(Optional.of(2L));
+        when(bookService.getBookCoverById(1L)).thenReturn(Optional.empty());
+
+        ResponseEntity<byte[]> response = bookController.getBookCover(1L, null);
+
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
     }
-}
\ No newline at end of file
+}
@@ -2,6 +2,8 @@ package org.example.booksfrog.controller;
 
 import org.example.booksfrog.model.User;
 import org.example.booksfrog.service.UserService;
+import org.example.booksfrog.util.CustomUserDetails;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
@@ -9,7 +11,10 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
 
+import java.util.Collections;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -37,6 +42,17 @@ class UserControllerTest {
                 .build();
     }
 
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private void authenticateAs(Long userId) {
+        CustomUserDetails userDetails = new CustomUserDetails(userId, "reader", "password", Collections.emptyList());
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities()));
+    }
+
     @Test
     void testGetUserById_UserExists() {
         when(userService.getUserById(1L)).thenReturn(Optional.of(user));
@@ -122,4 +138,24 @@ class UserControllerTest {
 
         verify(userService, times(1)).deleteUser(1L);
     }
+
+    @Test
+    void testRevokeTokens_OwnAccount() {
+        authenticateAs(1L);
+
+        ResponseEntity<Void> response = userController.revokeTokens(1L);
+
+        assertEquals(HttpStatus.NO_CONTENT, response.getStatusCode());
+        verify(userService, times(1)).revokeTokens(1L);
+    }
+
+    @Test
+    void testRevokeTokens_OtherAccountIsForbidden() {
+        authenticateAs(2L);
+
+        ResponseEntity<Void> response = userController.revokeTokens(1L);
+
+        assertEquals(HttpStatus.FORBIDDEN, response.getStatusCode());
+        verify(userService, never()).revokeTokens(anyLong());
+    }
 }
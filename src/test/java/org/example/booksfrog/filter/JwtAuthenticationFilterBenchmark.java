@@ -0,0 +1,78 @@
+package org.example.booksfrog.filter;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import jakarta.servlet.FilterChain;
+import org.example.booksfrog.service.CustomUserDetailsService;
+import org.example.booksfrog.service.TokenVersions;
+import org.example.booksfrog.util.JwtUtil;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Filter overhead per request, verifying the token on every call as before and through the cache.
+ * Run with {@code mvn test -Dtest=JwtAuthenticationFilterBenchmark -Dbenchmarks=true}.
+ */
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class JwtAuthenticationFilterBenchmark {
+
+    private static final int WARMUP = 20_000;
+
+    private static final int ITERATIONS = 100_000;
+
+    // Parses the token on every call, as JwtUtil did before it cached verified tokens
+    private static class UncachedJwtUtil extends JwtUtil {
+
+        @Override
+        public Claims verify(String token) {
+            return Jwts.parser().setSigningKey(getSecretKey()).parseClaimsJws(token).getBody();
+        }
+    }
+
+    private long nanosPerRequest(JwtUtil jwtUtil, int parsesPerRequest) throws Exception {
+        CustomUserDetailsService userDetailsService = mock(CustomUserDetailsService.class);
+        when(userDetailsService.loadUserByUsername("reader"))
+                .thenReturn(new User("reader", "password", Collections.emptyList()));
+        JwtAuthenticationFilter filter = new JwtAuthenticationFilter(jwtUtil, userDetailsService, mock(TokenVersions.class));
+        String token = jwtUtil.generateToken("reader");
+        FilterChain chain = (request, response) -> { };
+
+        long start = 0;
+        for (int i = 0; i < WARMUP + ITERATIONS; i++) {
+            if (i == WARMUP) {
+                start = System.nanoTime();
+            }
+            MockHttpServletRequest request = new MockHttpServletRequest();
+            request.addHeader("Authorization", "Bearer " + token);
+            SecurityContextHolder.clearContext();
+            filter.doFilterInternal(request, new MockHttpServletResponse(), chain);
+            // The filter used to parse three times per request: extractUsername, then validateToken twice
+            for (int parse = 1; parse < parsesPerRequest; parse++) {
+                jwtUtil.verify(token);
+            }
+            assertNotNull(SecurityContextHolder.getContext().getAuthentication());
+        }
+        SecurityContextHolder.clearContext();
+        return (System.nanoTime() - start) / ITERATIONS;
+    }
+
+    @Test
+    void benchmarkFilterOverhead() throws Exception {
+        long before = nanosPerRequest(new UncachedJwtUtil(), 3);
+        long singleParse = nanosPerRequest(new UncachedJwtUtil(), 1);
+        long cached = nanosPerRequest(new JwtUtil(), 1);
+
+        System.out.printf("JWT filter per request: three parses %d ns, one parse %d ns, cached %d ns%n",
+                before, singleParse, cached);
+        assertTrue(cached < before);
+    }
+}
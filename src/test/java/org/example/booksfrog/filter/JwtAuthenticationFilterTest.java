@@ -1,6 +1,10 @@
 package org.example.booksfrog.filter;
 
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
 import org.example.booksfrog.service.CustomUserDetailsService;
+import org.example.booksfrog.service.TokenVersions;
+import org.example.booksfrog.util.CustomUserDetails;
 import org.example.booksfrog.util.JwtUtil;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -32,6 +36,9 @@ class JwtAuthenticationFilterTest {
     @Mock
     private CustomUserDetailsService userDetailsService;
 
+    @Mock
+    private TokenVersions tokenVersions;
+
     @Mock
     private FilterChain filterChain;
 
@@ -44,6 +51,7 @@ class JwtAuthenticationFilterTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        SecurityContextHolder.clearContext();
         request = new MockHttpServletRequest();
         response = new MockHttpServletResponse();
     }
@@ -56,9 +64,10 @@ class JwtAuthenticationFilterTest {
 
         UserDetails userDetails = new User(username, "password", Collections.emptyList());
 
-        when(jwtUtil.extractUsername(token)).thenReturn(username);
+        Claims claims = Jwts.claims().setSubject(username);
+        when(jwtUtil.verify(token)).thenReturn(claims);
         when(userDetailsService.loadUserByUsername(username)).thenReturn(userDetails);
-        when(jwtUtil.validateToken(token, username)).thenReturn(true);
+        when(jwtUtil.validateToken(claims, username)).thenReturn(true);
 
         jwtAuthenticationFilter.doFilterInternal(request, response, filterChain);
 
@@ -68,6 +77,7 @@ class JwtAuthenticationFilterTest {
 
         assertNotNull(authentication);
         assertEquals(username, authentication.getName());
+        verify(jwtUtil, times(1)).verify(token); // The token is parsed once per request
         verify(filterChain, times(1)).doFilter(request, response);
     }
 
@@ -76,7 +86,7 @@ class JwtAuthenticationFilterTest {
         String token = "invalid-token";
         request.addHeader("Authorization", "Bearer " + token);
 
-        when(jwtUtil.extractUsername(token)).thenReturn(null);
+        when(jwtUtil.verify(token)).thenReturn(Jwts.claims()); // No subject
 
         jwtAuthenticationFilter.doFilterInternal(request, response, filterChain);
 
@@ -94,4 +104,37 @@ class JwtAuthenticationFilterTest {
         verify(filterChain, times(1)).doFilter(request, response);
     }
 
+    @Test
+    void testDoFilterInternal_PrincipalFromClaims() throws ServletException, IOException {
+        String token = "token-with-details";
+        request.addHeader("Authorization", "Bearer " + token);
+        Claims claims = Jwts.claims().setSubject("reader");
+        CustomUserDetails principal = new CustomUserDetails(7L, "reader", null, Collections.emptyList(), true, 2);
+        when(jwtUtil.verify(token)).thenReturn(claims);
+        when(jwtUtil.toPrincipal(claims)).thenReturn(principal);
+        when(tokenVersions.isCurrent(7L, 2)).thenReturn(true);
+
+        jwtAuthenticationFilter.doFilterInternal(request, response, filterChain);
+
+        assertSame(principal, SecurityContextHolder.getContext().getAuthentication().getPrincipal());
+        verifyNoInteractions(userDetailsService);
+        verify(filterChain, times(1)).doFilter(request, response);
+    }
+
+    @Test
+    void testDoFilterInternal_RevokedToken() throws ServletException, IOException {
+        String token = "revoked-token";
+        request.addHeader("Authorization", "Bearer " + token);
+        Claims claims = Jwts.claims().setSubject("reader");
+        when(jwtUtil.verify(token)).thenReturn(claims);
+        when(jwtUtil.toPrincipal(claims))
+                .thenReturn(new CustomUserDetails(7L, "reader", null, Collections.emptyList(), false, 1));
+        when(tokenVersions.isCurrent(7L, 1)).thenReturn(false);
+
+        jwtAuthenticationFilter.doFilterInternal(request, response, filterChain);
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        verifyNoInteractions(userDetailsService);
+        verify(filterChain, times(1)).doFilter(request, response);
+    }
 }
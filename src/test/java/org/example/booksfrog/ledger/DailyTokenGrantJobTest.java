@@ -0,0 +1,75 @@
+package org.example.booksfrog.ledger;
+
+import org.example.booksfrog.model.User;
+import org.example.booksfrog.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.datasource.url=jdbc:h2:mem:grants;MODE=MySQL;NON_KEYWORDS=USER",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+class DailyTokenGrantJobTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private Long tokenRow(String username, boolean premium, LocalDateTime lastReset) {
+        User user = userRepository.save(User.builder().username(username).password("pw").isPremium(premium).build());
+        jdbcTemplate.update("INSERT INTO tokens (user_id, daily_tokens, total_tokens, last_reset) VALUES (?, 0, 10, ?)",
+                user.getId(), lastReset);
+        return user.getId();
+    }
+
+    private int balance(Long userId) {
+        return jdbcTemplate.queryForObject("SELECT total_tokens FROM tokens WHERE user_id = ?", Integer.class, userId);
+    }
+
+    private LocalDateTime lastReset(Long userId) {
+        return jdbcTemplate.queryForObject("SELECT last_reset FROM tokens WHERE user_id = ?", LocalDateTime.class, userId);
+    }
+
+    @Test
+    void testGrantAll_GrantsDueUsersInChunks() {
+        LocalDateTime now = LocalDateTime.of(2024, 5, 2, 2, 0);
+        List<Long> standard = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            standard.add(tokenRow("standard-" + i, false, i % 2 == 0 ? null : now.minusDays(3)));
+        }
+        Long premium = tokenRow("premium", true, now.minusHours(25));
+        Long granted = tokenRow("granted", false, now.minusHours(3));
+        DailyTokenGrantJob job = new DailyTokenGrantJob(jdbcTemplate, 2, "database");
+
+        DailyTokenGrantJob.GrantReport report = job.grantAll(now);
+
+        assertEquals(6, report.users());
+        assertEquals(4, report.chunks());
+        standard.forEach(userId -> assertEquals(60, balance(userId)));
+        assertEquals(110, balance(premium));
+        assertEquals(10, balance(granted));
+        // Moved by whole days, so the next grant keeps to the user's schedule
+        assertEquals(now.minusHours(1), lastReset(premium));
+        assertEquals(now, lastReset(standard.get(0))); // Never granted
+        assertEquals(now, lastReset(standard.get(1)));
+
+        // Running again, as after a crash, grants nothing twice
+        assertEquals(0, job.grantAll(now.plusHours(1)).users());
+        assertEquals(110, balance(premium));
+    }
+}
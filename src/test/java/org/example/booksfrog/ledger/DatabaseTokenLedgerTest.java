@@ -0,0 +1,82 @@
+package org.example.booksfrog.ledger;
+
+import org.example.booksfrog.exception.InsufficientTokensException;
+import org.example.booksfrog.model.Token;
+import org.example.booksfrog.model.User;
+import org.example.booksfrog.repository.TokenRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class DatabaseTokenLedgerTest {
+
+    @Mock
+    private TokenRepository tokenRepository;
+
+    @InjectMocks
+    private DatabaseTokenLedger tokenLedger;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    void testDebit_Success() {
+        when(tokenRepository.debit(eq(1L), eq(5), any(), any())).thenReturn(1);
+
+        tokenLedger.debit(1L, 5);
+
+        verify(tokenRepository, never()).existsById(any());
+        verify(tokenRepository, never()).save(any());
+    }
+
+    @Test
+    void testDebit_Insufficient() {
+        when(tokenRepository.debit(eq(1L), eq(5), any(), any())).thenReturn(0);
+        when(tokenRepository.existsById(1L)).thenReturn(true);
+
+        assertThrows(InsufficientTokensException.class, () -> tokenLedger.debit(1L, 5));
+    }
+
+    @Test
+    void testDebit_TokenNotFound() {
+        when(tokenRepository.debit(eq(1L), eq(5), any(), any())).thenReturn(0);
+        when(tokenRepository.existsById(1L)).thenReturn(false);
+
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> tokenLedger.debit(1L, 5));
+
+        assertFalse(exception instanceof InsufficientTokensException);
+        assertEquals("Token not found for user ID: 1", exception.getMessage());
+    }
+
+    @Test
+    void testBalance_IncludesDueDailyTokens() {
+        User user = User.builder().id(1L).username("premium").password("pw").isPremium(true).build();
+        Token token = new Token(user, 100, 7);
+        when(tokenRepository.findById(1L)).thenReturn(Optional.of(token));
+
+        token.setLastReset(LocalDateTime.now().minusDays(2));
+        assertEquals(107, tokenLedger.balance(1L));
+
+        token.setLastReset(LocalDateTime.now().minusHours(2));
+        assertEquals(7, tokenLedger.balance(1L));
+    }
+
+    @Test
+    void testCredit_TokenNotFound() {
+        when(tokenRepository.credit(1L, 10)).thenReturn(0);
+
+        assertThrows(RuntimeException.class, () -> tokenLedger.credit(1L, 10));
+    }
+}
@@ -0,0 +1,175 @@
+package org.example.booksfrog.ledger;
+
+import org.example.booksfrog.exception.InsufficientTokensException;
+import org.example.booksfrog.model.User;
+import org.example.booksfrog.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.datasource.url=jdbc:h2:mem:ledger;MODE=MySQL;NON_KEYWORDS=USER",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // The ledger writes on its own, like in production
+class InMemoryTokenLedgerTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @TempDir
+    Path journalDir;
+
+    private Long userId;
+
+    @BeforeEach
+    void setUp() {
+        User user = userRepository.save(User.builder()
+                .username("reader-" + UUID.randomUUID()).password("pw").isPremium(false).build());
+        userId = user.getId();
+        jdbcTemplate.update("INSERT INTO tokens (user_id, daily_tokens, total_tokens, last_reset) VALUES (?, 50, 1000, ?)",
+                userId, LocalDateTime.now()); // Today's daily tokens already granted
+    }
+
+    private InMemoryTokenLedger newLedger() {
+        return new InMemoryTokenLedger(jdbcTemplate, journalDir.toString());
+    }
+
+    private int storedBalance() {
+        return jdbcTemplate.queryForObject("SELECT total_tokens FROM tokens WHERE user_id = ?", Integer.class, userId);
+    }
+
+    private List<Path> segments() throws Exception {
+        try (Stream<Path> files = Files.list(journalDir)) {
+            return files.sorted().toList();
+        }
+    }
+
+    @Test
+    void testDebit_ParallelDebitsNeverOverdraw() throws Exception {
+        InMemoryTokenLedger ledger = newLedger();
+        AtomicInteger succeeded = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<?>> debits = new ArrayList<>();
+            for (int i = 0; i < 4000; i++) {
+                debits.add(executor.submit(() -> {
+                    try {
+                        ledger.debit(userId, 1);
+                        succeeded.incrementAndGet();
+                    } catch (InsufficientTokensException e) {
+                        // Expected once the balance is spent
+                    }
+                }));
+            }
+            for (Future<?> debit : debits) {
+                debit.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(1000, succeeded.get());
+        assertEquals(0, ledger.balance(userId));
+        assertEquals(1000, storedBalance()); // Not written yet
+
+        ledger.flush();
+
+        assertEquals(0, storedBalance());
+        assertEquals(1, segments().size()); // Only the segment being written to
+        ledger.close();
+    }
+
+    @Test
+    void testRecover_ReplaysTheJournalAfterACrash() throws Exception {
+        LocalDateTime lastReset = LocalDateTime.now().minusDays(2);
+        jdbcTemplate.update("UPDATE tokens SET last_reset = ? WHERE user_id = ?", lastReset, userId);
+        InMemoryTokenLedger ledger = newLedger();
+        assertEquals(1050, ledger.balance(userId));
+        assertEquals(1000, storedBalance());
+
+        ledger.debit(userId, 30); // Writes the daily tokens along with the debit
+        ledger.debit(userId, 30);
+        ledger.credit(userId, 5);
+        // The process dies mid-write, without flushing
+        Files.write(segments().get(0), new byte[7], StandardOpenOption.APPEND);
+
+        InMemoryTokenLedger restarted = newLedger();
+
+        assertEquals(995, storedBalance());
+        assertEquals(995, restarted.balance(userId));
+        assertTrue(restarted.lastReset(userId).isAfter(lastReset.plusDays(1)));
+        restarted.close();
+    }
+
+    @Test
+    void testRecover_SkipsSegmentsAlreadyWritten() throws Exception {
+        InMemoryTokenLedger ledger = newLedger();
+        ledger.debit(userId, 100);
+        Path segment = segments().get(0);
+        byte[] journaled = Files.readAllBytes(segment);
+
+        ledger.flush();
+        assertEquals(900, storedBalance());
+        // The process died after writing the segment to the table but before deleting it
+        Files.write(segment, journaled);
+
+        InMemoryTokenLedger restarted = newLedger();
+
+        assertEquals(900, storedBalance());
+        assertEquals(900, restarted.balance(userId));
+        restarted.close();
+    }
+
+    @Test
+    void testDebit_GrantFollowsPremiumChanges() throws Exception {
+        jdbcTemplate.update("UPDATE tokens SET last_reset = ? WHERE user_id = ?", LocalDateTime.now().minusDays(1),
+                userId);
+        InMemoryTokenLedger ledger = newLedger();
+        assertEquals(1050, ledger.balance(userId)); // Account loaded while the user is not premium
+
+        jdbcTemplate.update("UPDATE user SET is_premium = TRUE WHERE id = ?", userId);
+
+        assertEquals(1100, ledger.balance(userId));
+        ledger.debit(userId, 100);
+        assertEquals(1000, ledger.balance(userId));
+        ledger.close();
+    }
+
+    @Test
+    void testDebit_TokenNotFound() {
+        InMemoryTokenLedger ledger = newLedger();
+
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> ledger.debit(-1L, 5));
+
+        assertEquals("Token not found for user ID: -1", exception.getMessage());
+    }
+}
@@ -3,8 +3,6 @@ package org.example.booksfrog.model;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
-import java.util.Base64;
-
 import static org.junit.jupiter.api.Assertions.*;
 
 class BookTest {
@@ -73,9 +71,12 @@ class BookTest {
     }
 
     @Test
-    void testGetCoverImage() {
-        String expectedBase64 = "data:image/jpeg;base64," + Base64.getEncoder().encodeToString(book.getCover());
-        assertEquals(expectedBase64, book.getCoverImage());
+    void testConstructorMarksCover() {
+        Book withCover = new Book(1L, "Title", "Author", "Summary", new byte[]{1}, 2L);
+        Book withoutCover = new Book(1L, "Title", "Author", "Summary", null, 2L);
+
+        assertTrue(withCover.getHasCover());
+        assertFalse(withoutCover.getHasCover());
     }
 
     @Test
@@ -0,0 +1,279 @@
+package org.example.booksfrog.search;
+
+import org.example.booksfrog.dto.BookSearchDocument;
+import org.example.booksfrog.dto.BookSuggestion;
+import org.example.booksfrog.repository.BookRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class BookSearchIndexTest {
+
+    @Mock
+    private BookRepository bookRepository;
+
+    private BookSearchIndex bookSearchIndex;
+
+    private final Pageable firstPage = PageRequest.of(0, 10);
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(bookRepository.findSearchDocumentsAfter(eq(0L), any(Pageable.class))).thenReturn(List.of(
+                document(1L, "The Hobbit", "J.R.R. Tolkien", "Fantasy"),
+                document(2L, "The Lord of the Rings", "J.R.R. Tolkien", "Fantasy"),
+                document(3L, "Les Misérables", "Victor Hugo", "Classics")));
+        bookSearchIndex = new BookSearchIndex(bookRepository);
+        bookSearchIndex.rebuild();
+    }
+
+    private static BookSearchDocument document(Long id, String title, String author, String category) {
+        return document(id, title, author, category, 0);
+    }
+
+    private static BookSearchDocument document(Long id, String title, String author, String category, int views) {
+        return new BookSearchDocument(id, title, author, "Summary of " + title, 1L, category, views);
+    }
+
+    @Test
+    void testRebuild_MarksReady() {
+        assertTrue(bookSearchIndex.isReady());
+        assertEquals(3, bookSearchIndex.size());
+    }
+
+    @Test
+    void testSearch_MatchesEveryTermInField() {
+        assertEquals(List.of(2L), bookSearchIndex.search(SearchField.SUMMARY, "rings lord", firstPage).getContent());
+        assertTrue(bookSearchIndex.search(SearchField.SUMMARY, "rings hobbit", firstPage).isEmpty());
+        assertEquals(List.of(3L), bookSearchIndex.search(SearchField.CATEGORY, "classics", firstPage).getContent());
+    }
+
+    @Test
+    void testSearch_TitleAndAuthorMatchFragments() {
+        assertEquals(List.of(1L), bookSearchIndex.search(SearchField.TITLE, "obbi", firstPage).getContent());
+        assertEquals(List.of(1L, 2L), bookSearchIndex.search(SearchField.AUTHOR, "TOLK", firstPage).getContent());
+        assertEquals(List.of(2L), bookSearchIndex.search(SearchField.TITLE, "rd of th", firstPage).getContent());
+        assertEquals(List.of(1L, 2L), bookSearchIndex.search(SearchField.AUTHOR, "j.r.r", firstPage).getContent());
+        assertTrue(bookSearchIndex.search(SearchField.TITLE, "tolkien", firstPage).isEmpty());
+    }
+
+    @Test
+    void testSearch_TrigramsOutOfOrderAreNotAMatch() {
+        // Every trigram of the query occurs in "The Lord of the Rings", but not as one substring
+        assertTrue(bookSearchIndex.search(SearchField.TITLE, "of the lord", firstPage).isEmpty());
+    }
+
+    @Test
+    void testSearch_ShortFragments() {
+        assertEquals(List.of(3L), bookSearchIndex.search(SearchField.AUTHOR, "hu", firstPage).getContent());
+        assertEquals(3, bookSearchIndex.search(SearchField.TITLE, "", firstPage).getTotalElements());
+    }
+
+    @Test
+    void testSearch_IgnoresCaseAndAccents() {
+        assertEquals(List.of(3L), bookSearchIndex.search(SearchField.TITLE, "miserables", firstPage).getContent());
+        assertEquals(List.of(3L), bookSearchIndex.search(SearchField.TITLE, "MISÉR", firstPage).getContent());
+    }
+
+    @Test
+    void testSearch_Paginates() {
+        Page<Long> page = bookSearchIndex.search(SearchField.CATEGORY, "fantasy", PageRequest.of(1, 1));
+
+        assertEquals(List.of(2L), page.getContent());
+        assertEquals(2, page.getTotalElements());
+    }
+
+    @Test
+    void testRefresh_UpdatesAndRemovesBooks() {
+        when(bookRepository.findSearchDocumentById(1L))
+                .thenReturn(Optional.of(document(1L, "The Silmarillion", "J.R.R. Tolkien", "Fantasy")));
+        when(bookRepository.findSearchDocumentById(3L)).thenReturn(Optional.empty());
+
+        bookSearchIndex.refreshBook(1L);
+        bookSearchIndex.refreshBook(3L);
+
+        assertTrue(bookSearchIndex.search(SearchField.TITLE, "hobbit", firstPage).isEmpty());
+        assertEquals(List.of(1L), bookSearchIndex.search(SearchField.TITLE, "silmarillion", firstPage).getContent());
+        assertTrue(bookSearchIndex.search(SearchField.AUTHOR, "hugo", firstPage).isEmpty());
+        assertEquals(2, bookSearchIndex.size());
+    }
+
+    @Test
+    void testSegment_CompactionKeepsLiveBooks() {
+        BookSearchIndex.Segment segment = new BookSearchIndex.Segment();
+        for (long id = 1; id <= 100; id++) {
+            segment.put(document(id, "Title " + id, "Author", "Category"));
+        }
+        for (long id = 1; id <= 90; id++) {
+            segment.remove(id);
+        }
+        segment.put(document(95L, "Renamed", "Author", "Category"));
+
+        segment.compact();
+
+        assertEquals(10, segment.size());
+        assertArrayEquals(new long[]{95L}, segment.match(SearchField.TITLE, List.of("renamed")));
+        assertArrayEquals(new long[]{91L}, segment.match(SearchField.TITLE, List.of("91")));
+        assertEquals(10, segment.match(SearchField.AUTHOR, List.of("author")).length);
+        assertArrayEquals(new long[]{95L}, segment.find(SearchField.TITLE, "name"));
+        assertArrayEquals(new long[]{99L}, segment.find(SearchField.TITLE, "itle 99"));
+    }
+
+    @Test
+    void testRank_TitleOutweighsSummaryAndCategory() {
+        BookSearchIndex.Segment segment = new BookSearchIndex.Segment();
+        segment.put(new BookSearchDocument(1L, "Cooking Basics", "Ann Smith", "A book about dragons", 1L, "Food", 0));
+        segment.put(new BookSearchDocument(2L, "Dragons", "Ann Smith", "A book about dragons", 1L, "Fantasy", 0));
+        segment.put(new BookSearchDocument(3L, "Gardening", "Bob Jones", "Plants", 1L, "Dragons", 0));
+
+        assertArrayEquals(new long[]{2L, 3L, 1L}, segment.rank(List.of("dragons"), 10));
+    }
+
+    @Test
+    void testRank_AnyTermMatchesAndMoreTermsRankHigher() {
+        assertArrayEquals(new long[]{1L, 3L}, bookSearchIndex.rank("hobbit hugo", 10));
+        assertEquals(2L, bookSearchIndex.rank("lord rings tolkien", 10)[0]);
+        assertEquals(0, bookSearchIndex.rank("nothing", 10).length);
+        assertEquals(0, bookSearchIndex.rank("", 10).length);
+    }
+
+    @Test
+    void testRank_ViewsBreakTies() {
+        BookSearchIndex.Segment segment = new BookSearchIndex.Segment();
+        segment.put(document(1L, "Dune", "Frank Herbert", "Science Fiction", 5));
+        segment.put(document(2L, "Dune", "Frank Herbert", "Science Fiction", 50));
+        segment.put(document(3L, "Dune", "Frank Herbert", "Science Fiction", 5));
+
+        assertArrayEquals(new long[]{2L, 1L, 3L}, segment.rank(List.of("dune"), 10));
+    }
+
+    @Test
+    void testRank_KeepsOnlyTheBestResults() {
+        BookSearchIndex.Segment segment = new BookSearchIndex.Segment();
+        for (long id = 1; id <= 200; id++) {
+            segment.put(document(id, "Atlas " + id, "Author", "Maps", (int) id));
+        }
+        for (long id = 1; id <= 150; id++) {
+            segment.remove(id);
+        }
+        segment.compact();
+
+        assertArrayEquals(new long[]{200L, 199L, 198L}, segment.rank(List.of("atlas"), 3));
+        assertArrayEquals(new long[]{160L}, segment.rank(List.of("160"), 3));
+    }
+
+    @Test
+    void testScoreAccumulator_SumsPerOrdinalAcrossGrowth() {
+        ScoreAccumulator scores = new ScoreAccumulator();
+        for (int round = 0; round < 3; round++) {
+            for (int ordinal = 0; ordinal < 1_000; ordinal += 2) {
+                scores.add(ordinal, 1.5);
+            }
+        }
+
+        assertEquals(500, scores.size());
+        for (int match = 0; match < scores.size(); match++) {
+            assertEquals(match * 2, scores.ordinal(match)); // Numbered in first-scored order
+            assertEquals(4.5, scores.score(match));
+        }
+    }
+
+    @Test
+    void testSuggest_CompletesPrefixesAcrossFields() {
+        assertEquals(List.of("The Hobbit"), texts(bookSearchIndex.suggest("the h", 10)));
+        assertEquals(List.of("J.R.R. Tolkien"), texts(bookSearchIndex.suggest("j.r", 10)));
+        assertEquals(List.of("Les Misérables"), texts(bookSearchIndex.suggest("LES MIS", 10)));
+        assertEquals(SearchField.CATEGORY, bookSearchIndex.suggest("fan", 10).get(0).getField());
+        assertTrue(bookSearchIndex.suggest("hobbit", 10).isEmpty());
+        assertTrue(bookSearchIndex.suggest("", 10).isEmpty());
+    }
+
+    @Test
+    void testSuggest_MostViewedFirst() {
+        BookSearchIndex.Segment segment = new BookSearchIndex.Segment();
+        segment.put(document(1L, "Dune", "Frank Herbert", "Science Fiction", 10));
+        segment.put(document(2L, "Dune Messiah", "Frank Herbert", "Science Fiction", 40));
+        segment.put(document(3L, "Dungeons Guide", "Gary Gygax", "Games", 25));
+        segment.put(document(4L, "Dune", "Frank Herbert", "Science Fiction", 20));
+
+        List<SuggestionTrie.Entry> completions = segment.suggest("dun", 10);
+        assertEquals(List.of("Dune Messiah", "Dune", "Dungeons Guide"),
+                completions.stream().map(SuggestionTrie.Entry::getText).toList());
+        assertEquals(30, completions.get(1).getWeight()); // Both books titled Dune count
+        assertEquals(1, segment.suggest("dun", 1).size());
+    }
+
+    @Test
+    void testSuggest_FollowsRenamesAndRemovals() {
+        BookSearchIndex.Segment segment = new BookSearchIndex.Segment();
+        segment.put(document(1L, "Dune", "Frank Herbert", "Science Fiction", 10));
+        segment.put(document(2L, "Dune Messiah", "Frank Herbert", "Science Fiction", 40));
+
+        segment.put(document(2L, "Children of Dune", "Frank Herbert", "Science Fiction", 40));
+        segment.remove(1L);
+
+        assertTrue(segment.suggest("dune", 10).isEmpty());
+        assertEquals("Children of Dune", segment.suggest("chi", 10).get(0).getText());
+        assertEquals(40, segment.suggest("frank", 10).get(0).getWeight());
+        assertEquals(3, segment.suggestionCount());
+
+        segment.put(document(3L, "Dune", "Frank Herbert", "Science Fiction", 5));
+        segment.compact();
+        segment.remove(2L);
+
+        assertEquals(List.of("Dune"), segment.suggest("d", 10).stream()
+                .map(SuggestionTrie.Entry::getText).toList());
+        assertEquals(5, segment.suggest("frank", 10).get(0).getWeight());
+    }
+
+    @Test
+    void testAddViews_ReordersRankingAndCompletions() {
+        BookSearchIndex.Segment segment = new BookSearchIndex.Segment();
+        segment.put(document(1L, "Dune", "Frank Herbert", "Science Fiction", 10));
+        segment.put(document(2L, "Dune Messiah", "Frank Herbert", "Science Fiction", 20));
+        segment.put(document(3L, "Dune", "Brian Herbert", "Science Fiction", 5));
+
+        segment.addViews(1L, 15);
+        segment.addViews(9L, 100); // Not indexed
+
+        assertEquals(List.of("Dune", "Dune Messiah"), segment.suggest("dune", 10).stream()
+                .map(SuggestionTrie.Entry::getText).toList());
+        assertEquals(30, segment.suggest("dune", 1).get(0).getWeight());
+
+        segment.remove(1L); // Takes back the added views too
+        assertEquals(5, segment.suggest("dune", 10).get(1).getWeight());
+    }
+
+    @Test
+    void testAddViews_BreaksRankTies() {
+        BookSearchIndex.Segment segment = new BookSearchIndex.Segment();
+        segment.put(document(1L, "Dune", "Frank Herbert", "Science Fiction", 5));
+        segment.put(document(2L, "Dune", "Frank Herbert", "Science Fiction", 50));
+
+        segment.addViews(1L, 100);
+
+        assertArrayEquals(new long[]{1L, 2L}, segment.rank(List.of("dune"), 10));
+    }
+
+    private static List<String> texts(List<BookSuggestion> suggestions) {
+        return suggestions.stream().map(BookSuggestion::getText).toList();
+    }
+
+    @Test
+    void testTokenize() {
+        assertEquals(List.of("j", "r", "r", "tolkien"), TextAnalyzer.tokenize("J.R.R. Tolkien"));
+        assertEquals(List.of("emile", "zola"), TextAnalyzer.tokenize("  Émile Zola!"));
+        assertTrue(TextAnalyzer.tokenize(null).isEmpty());
+        assertEquals("j r r tolkien", TextAnalyzer.fold(" J.R.R.  Tolkien "));
+    }
+}
@@ -0,0 +1,95 @@
+package org.example.booksfrog.service;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.example.booksfrog.repository.ContentBlobRepository;
+import org.example.booksfrog.storage.BlobStore;
+import org.example.booksfrog.storage.ContentHash;
+import org.example.booksfrog.storage.FileSystemBlobStore;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.datasource.url=jdbc:h2:mem:content;MODE=MySQL;NON_KEYWORDS=USER;LOCK_TIMEOUT=10000",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Import({BookContentService.class, BookContentServiceConcurrencyTest.Storage.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // Each upload and delete commits on its own
+class BookContentServiceConcurrencyTest {
+
+    private static final int ROUNDS = 100;
+
+    @TestConfiguration
+    static class Storage {
+
+        @Bean
+        BlobStore blobStore() throws Exception {
+            return new FileSystemBlobStore(Files.createTempDirectory("blobs").toString());
+        }
+    }
+
+    @Autowired
+    private BookContentService bookContentService;
+
+    @Autowired
+    private ContentBlobRepository contentBlobRepository;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Test
+    void testStoreAndDelete_SameFileUploadedAndRemovedConcurrently() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (PDDocument document = new PDDocument()) {
+            document.addPage(new PDPage());
+            document.save(outputStream);
+        }
+        byte[] pdf = outputStream.toByteArray();
+
+        // Each book uploads then deletes the same file, so one's release races the other's acquire
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<Integer>> books = new ArrayList<>();
+        for (long bookId = 1; bookId <= 4; bookId++) {
+            long id = bookId;
+            books.add(pool.submit(() -> {
+                int missing = 0;
+                for (int round = 0; round < ROUNDS; round++) {
+                    bookContentService.store(id, pdf, null);
+                    if (bookContentService.getContent(id).isEmpty()) {
+                        missing++;
+                    }
+                    bookContentService.delete(id);
+                }
+                return missing;
+            }));
+        }
+        pool.shutdown();
+
+        for (Future<Integer> book : books) {
+            assertEquals(0, book.get()); // Never a book pointing at deleted bytes, nor a failed upload
+        }
+        assertEquals(0, contentBlobRepository.count());
+        assertFalse(blobStore.exists(ContentHash.sha256(pdf)));
+    }
+}
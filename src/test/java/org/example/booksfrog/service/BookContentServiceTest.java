@@ -0,0 +1,189 @@
+package org.example.booksfrog.service;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.example.booksfrog.model.BookContent;
+import org.example.booksfrog.repository.BookContentRepository;
+import org.example.booksfrog.repository.ContentBlobRepository;
+import org.example.booksfrog.storage.BlobStore;
+import org.example.booksfrog.storage.ContentHash;
+import org.example.booksfrog.storage.StoredContent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class BookContentServiceTest {
+
+    @Mock
+    private BookContentRepository bookContentRepository;
+
+    @Mock
+    private ContentBlobRepository contentBlobRepository;
+
+    @Mock
+    private BlobStore blobStore;
+
+    private BookContentService bookContentService;
+
+    private byte[] pdf;
+
+    private final byte[] cover = new byte[]{4, 5};
+
+    private String pdfHash;
+
+    private String coverHash;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        bookContentService = new BookContentService(bookContentRepository, contentBlobRepository, blobStore,
+                mock(PlatformTransactionManager.class), 1024);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (PDDocument document = new PDDocument()) {
+            document.addPage(new PDPage());
+            document.addPage(new PDPage());
+            document.save(outputStream);
+        }
+        pdf = outputStream.toByteArray();
+        pdfHash = ContentHash.sha256(pdf);
+        coverHash = ContentHash.sha256(cover);
+        when(contentBlobRepository.lockRefCount(anyString())).thenReturn(Optional.of(1));
+    }
+
+    @Test
+    void testStore_NewPdfIsCountedOnce() {
+        when(bookContentRepository.findById(1L)).thenReturn(Optional.empty());
+        when(contentBlobRepository.findPageCountByHash(pdfHash)).thenReturn(Optional.empty());
+
+        bookContentService.store(1L, pdf, null);
+
+        verify(contentBlobRepository, times(1)).acquireReference(pdfHash, pdf.length);
+        verify(contentBlobRepository, times(1)).updatePageCount(pdfHash, 2);
+        verify(bookContentRepository, times(1)).save(new BookContent(1L, pdfHash, null));
+        verify(blobStore, never()).delete(anyString());
+    }
+
+    @Test
+    void testStore_ReferenceIsTakenBeforeBytesAreWritten() {
+        when(bookContentRepository.findById(1L)).thenReturn(Optional.empty());
+
+        bookContentService.store(1L, null, cover);
+
+        InOrder inOrder = inOrder(contentBlobRepository, blobStore);
+        inOrder.verify(contentBlobRepository).acquireReference(coverHash, cover.length);
+        inOrder.verify(blobStore).put(cover);
+    }
+
+    @Test
+    void testStore_ReferenceLostToAConcurrentPurgeIsTakenAgain() {
+        when(bookContentRepository.findById(1L)).thenReturn(Optional.empty());
+        when(contentBlobRepository.lockRefCount(coverHash)).thenReturn(Optional.empty(), Optional.of(1));
+
+        bookContentService.store(1L, null, cover);
+
+        InOrder inOrder = inOrder(contentBlobRepository, blobStore);
+        inOrder.verify(contentBlobRepository, times(2)).acquireReference(coverHash, cover.length);
+        inOrder.verify(blobStore).put(cover);
+    }
+
+    @Test
+    void testStore_DuplicatePdfSharesBlobAndPageCount() {
+        when(bookContentRepository.findById(2L)).thenReturn(Optional.empty());
+        when(contentBlobRepository.findPageCountByHash(pdfHash)).thenReturn(Optional.of(2));
+
+        bookContentService.store(2L, pdf, null);
+
+        verify(contentBlobRepository, never()).updatePageCount(anyString(), any());
+        verify(bookContentRepository, times(1)).save(new BookContent(2L, pdfHash, null));
+    }
+
+    @Test
+    void testStore_ReplacedBlobIsDeletedWithLastReference() {
+        when(bookContentRepository.findById(1L)).thenReturn(Optional.of(new BookContent(1L, "old-hash", coverHash)));
+        when(contentBlobRepository.findPageCountByHash(pdfHash)).thenReturn(Optional.of(2));
+        when(contentBlobRepository.lockRefCount("old-hash")).thenReturn(Optional.of(0));
+        when(contentBlobRepository.deleteIfUnreferenced("old-hash")).thenReturn(1);
+
+        bookContentService.store(1L, pdf, null);
+
+        verify(contentBlobRepository, times(1)).decrementRefCount("old-hash");
+        verify(blobStore, times(1)).delete("old-hash");
+        verify(contentBlobRepository, never()).decrementRefCount(coverHash);
+        verify(bookContentRepository, times(1)).save(new BookContent(1L, pdfHash, coverHash));
+    }
+
+    @Test
+    void testStore_SharedBlobIsKept() {
+        when(bookContentRepository.findById(1L)).thenReturn(Optional.of(new BookContent(1L, "old-hash", null)));
+        when(contentBlobRepository.findPageCountByHash(pdfHash)).thenReturn(Optional.of(2));
+        when(contentBlobRepository.lockRefCount("old-hash")).thenReturn(Optional.of(1));
+
+        bookContentService.store(1L, pdf, null);
+
+        verify(contentBlobRepository, times(1)).decrementRefCount("old-hash");
+        verify(blobStore, never()).delete(anyString());
+    }
+
+    @Test
+    void testStore_SameFileAgainTakesReferenceBeforeDroppingIt() {
+        when(bookContentRepository.findById(1L)).thenReturn(Optional.of(new BookContent(1L, null, coverHash)));
+
+        bookContentService.store(1L, null, cover);
+
+        InOrder inOrder = inOrder(contentBlobRepository);
+        inOrder.verify(contentBlobRepository).acquireReference(coverHash, cover.length);
+        inOrder.verify(contentBlobRepository).decrementRefCount(coverHash);
+        verify(blobStore, never()).delete(anyString());
+    }
+
+    @Test
+    void testStore_CoverIsNotParsed() {
+        when(bookContentRepository.findById(1L)).thenReturn(Optional.empty());
+
+        bookContentService.store(1L, null, cover);
+
+        verify(contentBlobRepository, never()).findPageCountByHash(anyString());
+        verify(contentBlobRepository, never()).updatePageCount(anyString(), any());
+    }
+
+    @Test
+    void testFindContent() {
+        when(bookContentRepository.findContentHashByBookId(1L)).thenReturn(Optional.of("pdf-hash"));
+        when(blobStore.size("pdf-hash")).thenReturn(Optional.of(3L));
+
+        StoredContent stored = bookContentService.findContent(1L).orElseThrow();
+
+        assertEquals("pdf-hash", stored.getHash());
+        assertEquals(3L, stored.getLength());
+    }
+
+    @Test
+    void testFindContent_MissingBlob() {
+        when(bookContentRepository.findContentHashByBookId(1L)).thenReturn(Optional.of("pdf-hash"));
+        when(blobStore.size("pdf-hash")).thenReturn(Optional.empty());
+
+        assertTrue(bookContentService.findContent(1L).isEmpty());
+    }
+
+    @Test
+    void testDelete_ReleasesBothBlobs() {
+        when(bookContentRepository.findById(1L)).thenReturn(Optional.of(new BookContent(1L, "pdf-hash", "cover-hash")));
+        when(contentBlobRepository.lockRefCount(anyString())).thenReturn(Optional.of(0));
+        when(contentBlobRepository.deleteIfUnreferenced(anyString())).thenReturn(1);
+
+        bookContentService.delete(1L);
+
+        verify(bookContentRepository, times(1)).deleteByBookId(1L);
+        verify(blobStore, times(1)).delete("pdf-hash");
+        verify(blobStore, times(1)).delete("cover-hash");
+    }
+}
@@ -1,10 +1,22 @@
 package org.example.booksfrog.service;
 
 import org.example.booksfrog.dto.BookDTO;
+import org.example.booksfrog.dto.BookCursor;
+import org.example.booksfrog.dto.BookSuggestion;
+import org.example.booksfrog.dto.BookSuggestion;
+import org.example.booksfrog.dto.BookSummary;
+import org.example.booksfrog.dto.CursorPage;
+import org.example.booksfrog.exception.InvalidCursorException;
 import org.example.booksfrog.model.Book;
 import org.example.booksfrog.model.Category;
 import org.example.booksfrog.repository.BookRepository;
 import org.example.booksfrog.repository.CategoryRepository;
+import org.example.booksfrog.search.BookSearchIndex;
+import org.example.booksfrog.search.SearchField;
+import org.example.booksfrog.trending.TrendingTracker;
+import org.example.booksfrog.trending.TrendingWindow;
+import org.example.booksfrog.util.PageImageCache;
+import org.example.booksfrog.util.PdfDocumentPool;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
@@ -13,6 +25,7 @@ import org.mockito.MockitoAnnotations;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 
 import java.util.Collections;
 import java.util.List;
@@ -26,13 +39,32 @@ class BookServiceTest {
     @Mock
     private BookRepository bookRepository;
 
+    @Mock
+    private BookContentService bookContentService;
+
     @Mock
     private CategoryRepository categoryRepository;
 
+    @Mock
+    private PageImageCache pageImageCache;
+
+    @Mock
+    private PdfDocumentPool pdfDocumentPool;
+
+    @Mock
+    private BookSearchIndex bookSearchIndex;
+
+    @Mock
+    private LatestBooksFeed latestBooksFeed;
+
+    @Mock
+    private TrendingTracker trendingTracker;
+
     @InjectMocks
     private BookService bookService;
 
     private Book book;
+    private BookSummary bookSummary;
     private Category category;
 
     @BeforeEach
@@ -48,6 +80,8 @@ class BookServiceTest {
                 .views(10)
                 .totalPages(100)
                 .build();
+        bookSummary = new BookSummary(1L, "Test Book", "Test Author", "Test Summary", true, 2L,
+                1L, "Test Category", 10, 100);
     }
 
     @Test
@@ -73,18 +107,26 @@ class BookServiceTest {
 
     @Test
     void testGetBookContentById_BookExists() {
-        book.setContent(new byte[]{1, 2, 3});
-        when(bookRepository.findById(1L)).thenReturn(Optional.of(book));
+        when(bookContentService.getContent(1L)).thenReturn(Optional.of(new byte[]{1, 2, 3}));
 
         byte[] content = bookService.getBookContentById(1L);
 
         assertArrayEquals(new byte[]{1, 2, 3}, content);
-        verify(bookRepository, times(1)).findById(1L);
+        verify(bookRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    void testGetBookContentById_NoContent() {
+        when(bookContentService.getContent(1L)).thenReturn(Optional.empty());
+        when(bookRepository.existsById(1L)).thenReturn(true);
+
+        assertNull(bookService.getBookContentById(1L));
     }
 
     @Test
     void testGetBookContentById_BookNotFound() {
-        when(bookRepository.findById(1L)).thenReturn(Optional.empty());
+        when(bookContentService.getContent(1L)).thenReturn(Optional.empty());
+        when(bookRepository.existsById(1L)).thenReturn(false);
 
         Exception exception = assertThrows(RuntimeException.class, () -> bookService.getBookContentById(1L));
         assertEquals("Book not found with ID 1", exception.getMessage());
@@ -98,18 +140,60 @@ class BookServiceTest {
 
         assertNotNull(createdBook);
         assertEquals(book.getTitle(), createdBook.getTitle());
+        assertFalse(book.getHasCover());
         verify(bookRepository, times(1)).save(any(Book.class));
+        verify(bookContentService, never()).store(anyLong(), any(), any());
+    }
+
+    @Test
+    void testCreateBook_StoresBinariesSeparately() {
+        book.setCover(new byte[]{4, 5});
+        when(bookRepository.save(any(Book.class))).thenReturn(book);
+
+        bookService.createBook(book);
+
+        assertTrue(book.getHasCover());
+        verify(bookContentService, times(1)).store(1L, null, new byte[]{4, 5});
+    }
+
+    @Test
+    void testCreateBook_TakesPageCountFromStoredContent() {
+        book.setContent(new byte[]{1, 2, 3});
+        when(bookRepository.save(any(Book.class))).thenReturn(book);
+        when(bookContentService.getPageCount(1L)).thenReturn(Optional.of(42));
+
+        bookService.createBook(book);
+
+        assertEquals(42, book.getTotalPages());
+        verify(bookContentService, times(1)).store(1L, new byte[]{1, 2, 3}, null);
     }
 
     @Test
     void testUpdateBook() {
+        when(bookRepository.findContentVersionById(1L)).thenReturn(Optional.of(4L));
         when(bookRepository.save(any(Book.class))).thenReturn(book);
 
         Book updatedBook = bookService.updateBook(book);
 
+        assertEquals(5L, book.getContentVersion());
+
         assertNotNull(updatedBook);
         assertEquals(book.getTitle(), updatedBook.getTitle());
         verify(bookRepository, times(1)).save(any(Book.class));
+        verify(pageImageCache, times(1)).invalidateBook(1L);
+        verify(pdfDocumentPool, times(1)).invalidate(1L);
+    }
+
+    @Test
+    void testUpdateBook_KeepsFlushedViews() {
+        Book stored = Book.builder().id(1L).title("Test Book").views(250).totalPages(100).build();
+        when(bookRepository.findById(1L)).thenReturn(Optional.of(stored));
+        when(bookRepository.save(any(Book.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // The edit form sends the views it loaded, long since stale
+        Book updatedBook = bookService.updateBook(book);
+
+        assertEquals(250, updatedBook.getViews());
     }
 
     @Test
@@ -118,19 +202,25 @@ class BookServiceTest {
 
         bookService.deleteBook(1L);
 
+        verify(bookContentService, times(1)).delete(1L);
+        verify(bookSearchIndex, times(1)).refreshBook(1L);
         verify(bookRepository, times(1)).deleteById(1L);
+        verify(latestBooksFeed, times(1)).invalidate();
+        verify(pageImageCache, times(1)).invalidateBook(1L);
+        verify(pdfDocumentPool, times(1)).invalidate(1L);
     }
 
     @Test
     void testGetBooksByCategoryId() {
-        when(bookRepository.findByCategory_Id(1L)).thenReturn(Collections.singletonList(book));
+        when(bookRepository.findSummariesByCategoryId(1L)).thenReturn(Collections.singletonList(bookSummary));
 
-        List<Book> books = bookService.getBooksByCategoryId(1L);
+        List<BookDTO> books = bookService.getBooksByCategoryId(1L);
 
         assertNotNull(books);
         assertEquals(1, books.size());
         assertEquals(book.getTitle(), books.get(0).getTitle());
-        verify(bookRepository, times(1)).findByCategory_Id(1L);
+        assertEquals("/api/books/1/cover?v=2", books.get(0).getCoverImage());
+        verify(bookRepository, times(1)).findSummariesByCategoryId(1L);
     }
 
 
@@ -149,102 +239,239 @@ class BookServiceTest {
 
     @Test
     void testRecalculateTotalPages_WithContentAndPagesNull() {
-        book.setContent(new byte[]{1, 2, 3});
         book.setTotalPages(null);
-        when(bookRepository.findAll()).thenReturn(Collections.singletonList(book));
+        when(bookRepository.findIdsWithoutTotalPages()).thenReturn(Collections.singletonList(1L));
+        when(pdfDocumentPool.getPageCount(eq(1L), any())).thenReturn(3);
+        when(bookRepository.findById(1L)).thenReturn(Optional.of(book));
         when(bookRepository.save(any(Book.class))).thenReturn(book);
 
         bookService.recalculateTotalPages();
 
-        assertNotNull(book.getTotalPages());
-        verify(bookRepository, times(1)).findAll();
+        assertEquals(3, book.getTotalPages());
+        verify(bookRepository, times(1)).findIdsWithoutTotalPages();
         verify(bookRepository, times(1)).save(any(Book.class));
     }
 
+    @Test
+    void testRecalculateTotalPages_UsesSharedPageCount() {
+        when(bookRepository.findIdsWithoutTotalPages()).thenReturn(Collections.singletonList(1L));
+        when(bookContentService.getPageCount(1L)).thenReturn(Optional.of(7));
+        when(bookRepository.findById(1L)).thenReturn(Optional.of(book));
+
+        bookService.recalculateTotalPages();
+
+        assertEquals(7, book.getTotalPages());
+        verify(pdfDocumentPool, never()).getPageCount(anyLong(), any());
+    }
+
     @Test
     void testRecalculateTotalPages_WithContentAndPagesNotNull() {
-        book.setContent(new byte[]{1, 2, 3});
-        book.setTotalPages(100);
-        when(bookRepository.findAll()).thenReturn(Collections.singletonList(book));
+        when(bookRepository.findIdsWithoutTotalPages()).thenReturn(Collections.emptyList());
 
         bookService.recalculateTotalPages();
 
-        verify(bookRepository, times(1)).findAll();
+        verify(bookRepository, times(1)).findIdsWithoutTotalPages();
+        verify(pdfDocumentPool, never()).getPageCount(anyLong(), any());
         verify(bookRepository, never()).save(any(Book.class));
     }
 
     @Test
     void testRecalculateTotalPages_WithoutContent() {
-        book.setContent(null);
-        when(bookRepository.findAll()).thenReturn(Collections.singletonList(book));
+        when(bookRepository.findIdsWithoutTotalPages()).thenReturn(Collections.singletonList(1L));
+        when(pdfDocumentPool.getPageCount(eq(1L), any())).thenReturn(0);
 
         bookService.recalculateTotalPages();
 
-        verify(bookRepository, times(1)).findAll();
+        verify(bookRepository, times(1)).findIdsWithoutTotalPages();
         verify(bookRepository, never()).save(any(Book.class));
     }
 
     @Test
     void testGetAllBooks() {
-        Page<Book> bookPage = new PageImpl<>(Collections.singletonList(book));
-        when(bookRepository.findAll(PageRequest.of(0, 10))).thenReturn(bookPage);
+        Page<BookSummary> bookPage = new PageImpl<>(Collections.singletonList(bookSummary));
+        when(bookRepository.findAllSummaries(PageRequest.of(0, 10))).thenReturn(bookPage);
 
         Page<BookDTO> result = bookService.getAllBooks(0, 10);
 
         assertNotNull(result);
         assertEquals(1, result.getContent().size());
         assertEquals(book.getTitle(), result.getContent().get(0).getTitle());
-        verify(bookRepository, times(1)).findAll(PageRequest.of(0, 10));
+        verify(bookRepository, times(1)).findAllSummaries(PageRequest.of(0, 10));
+    }
+
+    @Test
+    void testGetBooksAfter_ReturnsCursorToNextPage() {
+        BookSummary next = new BookSummary(2L, "Next Book", "Test Author", "Test Summary", false, 1L,
+                1L, "Test Category", 4, 50);
+        when(bookRepository.findSummariesBeforeViews(Integer.MAX_VALUE, Long.MAX_VALUE, PageRequest.of(0, 2)))
+                .thenReturn(List.of(bookSummary, next));
+
+        CursorPage<BookDTO> first = bookService.getBooksAfter(null, 1, BookCursor.Order.POPULAR, false);
+
+        assertEquals(1, first.getItems().size());
+        assertNull(first.getTotalElements());
+        assertNotNull(first.getNextCursor());
+        verify(bookRepository, never()).count();
+
+        bookService.getBooksAfter(first.getNextCursor(), 1, BookCursor.Order.POPULAR, true);
+
+        // Seeks past the views and id of the last book of the first page
+        verify(bookRepository, times(1)).findSummariesBeforeViews(10, 1L, PageRequest.of(0, 2));
+        verify(bookRepository, times(1)).count();
+    }
+
+    @Test
+    void testGetBooksAfter_LastPageHasNoCursor() {
+        when(bookRepository.findSummariesAfterId(0L, PageRequest.of(0, 11))).thenReturn(List.of(bookSummary));
+
+        CursorPage<BookDTO> page = bookService.getBooksAfter("", 10, BookCursor.Order.ID, false);
+
+        assertEquals(1, page.getItems().size());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void testGetBooksAfter_RejectsForeignCursor() {
+        String titleCursor = new BookCursor(BookCursor.Order.TITLE, 5L, "Dune").encode();
+
+        assertThrows(InvalidCursorException.class,
+                () -> bookService.getBooksAfter(titleCursor, 10, BookCursor.Order.ID, false));
+        assertThrows(InvalidCursorException.class,
+                () -> bookService.getBooksAfter("not-a-cursor", 10, BookCursor.Order.ID, false));
+    }
+
+    @Test
+    void testSearchBooksAfter_UsesIndexOnceBuilt() {
+        when(bookSearchIndex.isReady()).thenReturn(true);
+        when(bookSearchIndex.searchAfter(SearchField.AUTHOR, "test", 0L, 2)).thenReturn(List.of(1L, 2L));
+        when(bookRepository.findSummariesByIds(List.of(1L))).thenReturn(List.of(bookSummary));
+
+        CursorPage<BookDTO> page = bookService.searchBooksAfter(SearchField.AUTHOR, "test", null, 1, false);
+
+        assertEquals("Test Book", page.getItems().get(0).getTitle());
+        assertEquals(1L, BookCursor.decode(page.getNextCursor(), BookCursor.Order.ID).getId());
+        verify(bookRepository, never()).searchSummariesByAuthorAfter(anyString(), anyLong(), any());
     }
 
     @Test
     void testSearchBooksByTitle() {
-        Page<Book> bookPage = new PageImpl<>(Collections.singletonList(book));
-        when(bookRepository.findByTitleContainingIgnoreCase(eq("Test"), any(PageRequest.class))).thenReturn(bookPage);
+        Page<BookSummary> bookPage = new PageImpl<>(Collections.singletonList(bookSummary));
+        when(bookRepository.searchSummariesByTitle(eq("Test"), any(PageRequest.class))).thenReturn(bookPage);
 
         Page<BookDTO> result = bookService.searchBooksByTitle("Test", PageRequest.of(0, 10));
 
         assertNotNull(result);
         assertEquals(1, result.getContent().size());
         assertEquals(book.getTitle(), result.getContent().get(0).getTitle());
-        verify(bookRepository, times(1)).findByTitleContainingIgnoreCase(eq("Test"), any(PageRequest.class));
+        verify(bookRepository, times(1)).searchSummariesByTitle(eq("Test"), any(PageRequest.class));
+    }
+
+    @Test
+    void testSearchBooksByTitle_UsesIndexOnceBuilt() {
+        when(bookSearchIndex.isReady()).thenReturn(true);
+        when(bookSearchIndex.search(SearchField.TITLE, "Test", PageRequest.of(0, 10)))
+                .thenReturn(new PageImpl<>(List.of(1L), PageRequest.of(0, 10), 11));
+        when(bookRepository.findSummariesByIds(List.of(1L))).thenReturn(List.of(bookSummary));
+
+        Page<BookDTO> result = bookService.searchBooksByTitle("Test", PageRequest.of(0, 10));
+
+        assertEquals(11, result.getTotalElements());
+        assertEquals("Test Book", result.getContent().get(0).getTitle());
+        verify(bookRepository, never()).searchSummariesByTitle(anyString(), any());
+    }
+
+    @Test
+    void testSearchBooksByTitle_SortedPageUsesDatabase() {
+        PageRequest sorted = PageRequest.of(0, 10, Sort.by("views").descending());
+        when(bookSearchIndex.isReady()).thenReturn(true);
+        when(bookRepository.searchSummariesByTitle("Test", sorted)).thenReturn(new PageImpl<>(List.of(bookSummary)));
+
+        Page<BookDTO> result = bookService.searchBooksByTitle("Test", sorted);
+
+        assertEquals("Test Book", result.getContent().get(0).getTitle());
+        verify(bookSearchIndex, never()).search(any(), anyString(), any());
+    }
+
+    @Test
+    void testSuggest_FallsBackToTitles() {
+        when(bookRepository.findTitlesStartingWith("Tes", PageRequest.of(0, 5))).thenReturn(List.of("Test Book"));
+
+        List<BookSuggestion> result = bookService.suggest("Tes", 5);
+
+        assertEquals("Test Book", result.get(0).getText());
+        assertEquals(SearchField.TITLE, result.get(0).getField());
+        verify(bookSearchIndex, never()).suggest(anyString(), anyInt());
+    }
+
+    @Test
+    void testGetTrendingBooks() {
+        when(trendingTracker.trending(TrendingWindow.WEEK, 5)).thenReturn(new long[]{1L});
+        when(bookRepository.findSummariesByIds(List.of(1L))).thenReturn(List.of(bookSummary));
+
+        List<BookDTO> result = bookService.getTrendingBooks(TrendingWindow.WEEK, 5);
+
+        assertEquals("Test Book", result.get(0).getTitle());
+    }
+
+    @Test
+    void testQueryBooks_KeepsRankedOrder() {
+        BookSummary other = new BookSummary(2L, "Other Book", "Test Author", "Test Summary", false, 1L,
+                1L, "Test Category", 0, 50);
+        when(bookSearchIndex.isReady()).thenReturn(true);
+        when(bookSearchIndex.rank("test", 5)).thenReturn(new long[]{2L, 1L});
+        when(bookRepository.findSummariesByIds(List.of(2L, 1L))).thenReturn(List.of(bookSummary, other));
+
+        List<BookDTO> result = bookService.queryBooks("test", 5);
+
+        assertEquals(List.of(2L, 1L), result.stream().map(BookDTO::getId).toList());
+    }
+
+    @Test
+    void testQueryBooks_FallsBackToTitleSearch() {
+        when(bookRepository.searchSummariesByTitle("Test", PageRequest.of(0, 5)))
+                .thenReturn(new PageImpl<>(List.of(bookSummary)));
+
+        List<BookDTO> result = bookService.queryBooks("Test", 5);
+
+        assertEquals(1, result.size());
+        verify(bookSearchIndex, never()).rank(anyString(), anyInt());
     }
 
     @Test
     void testSearchBooksByAuthor() {
-        Page<Book> bookPage = new PageImpl<>(Collections.singletonList(book));
-        when(bookRepository.findByAuthorContainingIgnoreCase(eq("Author"), any(PageRequest.class))).thenReturn(bookPage);
+        Page<BookSummary> bookPage = new PageImpl<>(Collections.singletonList(bookSummary));
+        when(bookRepository.searchSummariesByAuthor(eq("Author"), any(PageRequest.class))).thenReturn(bookPage);
 
         Page<BookDTO> result = bookService.searchBooksByAuthor("Author", PageRequest.of(0, 10));
 
         assertNotNull(result);
         assertEquals(1, result.getContent().size());
         assertEquals(book.getAuthor(), result.getContent().get(0).getAuthor());
-        verify(bookRepository, times(1)).findByAuthorContainingIgnoreCase(eq("Author"), any(PageRequest.class));
+        verify(bookRepository, times(1)).searchSummariesByAuthor(eq("Author"), any(PageRequest.class));
     }
 
     @Test
     void testSearchBooksByCategory() {
-        Page<Book> bookPage = new PageImpl<>(Collections.singletonList(book));
-        when(bookRepository.findByCategoryNameContainingIgnoreCase(eq("Category"), any(PageRequest.class))).thenReturn(bookPage);
+        Page<BookSummary> bookPage = new PageImpl<>(Collections.singletonList(bookSummary));
+        when(bookRepository.searchSummariesByCategoryName(eq("Category"), any(PageRequest.class))).thenReturn(bookPage);
 
         Page<BookDTO> result = bookService.searchBooksByCategory("Category", PageRequest.of(0, 10));
 
         assertNotNull(result);
         assertEquals(1, result.getContent().size());
         assertEquals(book.getCategory().getName(), result.getContent().get(0).getCategoryName());
-        verify(bookRepository, times(1)).findByCategoryNameContainingIgnoreCase(eq("Category"), any(PageRequest.class));
+        verify(bookRepository, times(1)).searchSummariesByCategoryName(eq("Category"), any(PageRequest.class));
     }
 
     @Test
     void testGetLast12Books() {
-        when(bookRepository.findLast12Books()).thenReturn(Collections.singletonList(book));
+        when(bookRepository.findLatestSummaries(PageRequest.of(0, 12))).thenReturn(Collections.singletonList(bookSummary));
 
         List<BookDTO> books = bookService.getLast12Books();
 
         assertNotNull(books);
         assertEquals(1, books.size());
         assertEquals(book.getTitle(), books.get(0).getTitle());
-        verify(bookRepository, times(1)).findLast12Books();
+        verify(bookRepository, times(1)).findLatestSummaries(PageRequest.of(0, 12));
     }
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package org.example.booksfrog.service;
 
 import org.example.booksfrog.model.Category;
 import org.example.booksfrog.repository.CategoryRepository;
+import org.example.booksfrog.search.BookSearchIndex;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
@@ -22,6 +23,12 @@ class CategoryServiceTest {
     @Mock
     private CategoryRepository categoryRepository;
 
+    @Mock
+    private BookSearchIndex bookSearchIndex;
+
+    @Mock
+    private LatestBooksFeed latestBooksFeed;
+
     @InjectMocks
     private CategoryService categoryService;
 
@@ -88,6 +95,7 @@ class CategoryServiceTest {
         assertNotNull(updatedCategory);
         assertEquals(category.getName(), updatedCategory.getName());
         verify(categoryRepository, times(1)).save(any(Category.class));
+        verify(bookSearchIndex, times(1)).refreshCategory(1L);
     }
 
     @Test
@@ -56,4 +56,17 @@ class CustomUserDetailsServiceTest {
         assertEquals("User not found", exception.getMessage());
         verify(userRepository, times(1)).findByUsername("nonExistentUser");
     }
+
+    @Test
+    void testUpdatePassword_SavesRehashedPassword() {
+        when(userRepository.findByUsername("testUser")).thenReturn(Optional.of(sampleUser));
+        when(userRepository.save(sampleUser)).thenReturn(sampleUser);
+
+        UserDetails userDetails = customUserDetailsService.updatePassword(
+                customUserDetailsService.loadUserByUsername("testUser"), "rehashed");
+
+        assertEquals("rehashed", sampleUser.getPassword());
+        assertEquals("rehashed", userDetails.getPassword());
+        verify(userRepository, times(1)).save(sampleUser);
+    }
 }
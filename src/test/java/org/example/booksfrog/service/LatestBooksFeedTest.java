@@ -0,0 +1,114 @@
+package org.example.booksfrog.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.booksfrog.dto.BookSummary;
+import org.example.booksfrog.repository.BookRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class LatestBooksFeedTest {
+
+    @Mock
+    private BookRepository bookRepository;
+
+    private LatestBooksFeed latestBooksFeed;
+
+    private final BookSummary summary = new BookSummary(1L, "Dune", "Frank Herbert", "Spice", false, 1L,
+            2L, "Science Fiction", 5, 400);
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(bookRepository.findLatestSummaries(PageRequest.of(0, LatestBooksFeed.SIZE))).thenReturn(List.of(summary));
+        latestBooksFeed = new LatestBooksFeed(bookRepository, new ObjectMapper());
+    }
+
+    @Test
+    void testGet_BuildsOnceUntilInvalidated() {
+        LatestBooksFeed.Snapshot first = latestBooksFeed.get();
+
+        assertSame(first, latestBooksFeed.get());
+        assertTrue(new String(first.getBody(), StandardCharsets.UTF_8).contains("\"title\":\"Dune\""));
+        verify(bookRepository, times(1)).findLatestSummaries(any());
+
+        latestBooksFeed.invalidate();
+        LatestBooksFeed.Snapshot rebuilt = latestBooksFeed.get();
+
+        assertNotSame(first, rebuilt);
+        assertEquals(first.getEtag(), rebuilt.getEtag()); // Same books, same tag
+        verify(bookRepository, times(2)).findLatestSummaries(any());
+    }
+
+    @Test
+    void testGet_EtagFollowsContent() {
+        String before = latestBooksFeed.get().getEtag();
+        when(bookRepository.findLatestSummaries(any())).thenReturn(List.of());
+
+        latestBooksFeed.invalidate();
+
+        assertNotEquals(before, latestBooksFeed.get().getEtag());
+    }
+
+    @Test
+    void testInvalidate_WaitsForCommit() {
+        latestBooksFeed.get();
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            latestBooksFeed.invalidate();
+            latestBooksFeed.get();
+            verify(bookRepository, times(1)).findLatestSummaries(any());
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(s -> s.afterCommit());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        latestBooksFeed.get();
+        verify(bookRepository, times(2)).findLatestSummaries(any());
+    }
+
+    @Test
+    void testGet_ConcurrentMissesShareOneRebuild() throws Exception {
+        CountDownLatch queried = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(bookRepository.findLatestSummaries(any())).thenAnswer(invocation -> {
+            queried.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return List.of(summary);
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<LatestBooksFeed.Snapshot>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(latestBooksFeed::get));
+            }
+            assertTrue(queried.await(5, TimeUnit.SECONDS));
+            release.countDown();
+
+            LatestBooksFeed.Snapshot first = results.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<LatestBooksFeed.Snapshot> result : results) {
+                assertSame(first, result.get(5, TimeUnit.SECONDS));
+            }
+            verify(bookRepository, times(1)).findLatestSummaries(any());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package org.example.booksfrog.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class PagePrefetcherTest {
+
+    @Mock
+    private PageRenderService pageRenderService;
+
+    // Runs prefetches inline so the renders can be verified right away
+    private final Executor directExecutor = Runnable::run;
+
+    private double load;
+
+    private PagePrefetcher pagePrefetcher;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        load = 0.1;
+        pagePrefetcher = new PagePrefetcher(pageRenderService, directExecutor, () -> load,
+                true, 4, 10_000, 0.8);
+    }
+
+    @Test
+    void testOnPageViewed_FirstViewWarmsNextPage() throws Exception {
+        pagePrefetcher.onPageViewed(1L, 10L, 0, 100);
+
+        verify(pageRenderService, times(1)).prefetchPage(10L, 1);
+        verify(pageRenderService, never()).prefetchPage(10L, 2);
+        assertEquals(1, pagePrefetcher.getScheduledCount());
+    }
+
+    @Test
+    void testOnPageViewed_FastReaderGetsDeeperLookAhead() throws Exception {
+        pagePrefetcher.onPageViewed(1L, 10L, 0, 100);
+        pagePrefetcher.onPageViewed(1L, 10L, 1, 100); // Turned almost instantly
+
+        verify(pageRenderService, times(1)).prefetchPage(10L, 2);
+        verify(pageRenderService, times(1)).prefetchPage(10L, 5);
+        verify(pageRenderService, never()).prefetchPage(10L, 6);
+    }
+
+    @Test
+    void testOnPageViewed_StopsAtLastPage() throws Exception {
+        pagePrefetcher.onPageViewed(1L, 10L, 8, 10);
+        pagePrefetcher.onPageViewed(1L, 10L, 9, 10);
+
+        verify(pageRenderService, times(1)).prefetchPage(10L, 9);
+        verify(pageRenderService, never()).prefetchPage(10L, 10);
+    }
+
+    @Test
+    void testOnPageViewed_SkipsCachedPages() throws Exception {
+        when(pageRenderService.isCached(10L, 1)).thenReturn(true);
+
+        pagePrefetcher.onPageViewed(1L, 10L, 0, 100);
+
+        verify(pageRenderService, never()).prefetchPage(anyLong(), anyInt());
+    }
+
+    @Test
+    void testOnPageViewed_BacksOffUnderCpuPressure() throws Exception {
+        load = 2.0;
+
+        pagePrefetcher.onPageViewed(1L, 10L, 0, 100);
+
+        verify(pageRenderService, never()).prefetchPage(anyLong(), anyInt());
+        assertEquals(1, pagePrefetcher.getThrottledCount());
+    }
+
+    @Test
+    void testOnPageViewed_YieldsToQueuedRenders() throws Exception {
+        when(pageRenderService.isBusy()).thenReturn(true);
+
+        pagePrefetcher.onPageViewed(1L, 10L, 0, 100);
+
+        verify(pageRenderService, never()).prefetchPage(anyLong(), anyInt());
+        assertEquals(1, pagePrefetcher.getThrottledCount());
+    }
+
+    @Test
+    void testOnPageViewed_NoPrefetchWhenReadingBackwards() throws Exception {
+        pagePrefetcher.onPageViewed(1L, 10L, 5, 100);
+        clearInvocations(pageRenderService);
+
+        pagePrefetcher.onPageViewed(1L, 10L, 3, 100);
+
+        verify(pageRenderService, never()).prefetchPage(anyLong(), anyInt());
+    }
+
+    @Test
+    void testOnPageViewed_Disabled() throws Exception {
+        pagePrefetcher = new PagePrefetcher(pageRenderService, directExecutor, () -> load,
+                false, 4, 10_000, 0.8);
+
+        pagePrefetcher.onPageViewed(1L, 10L, 0, 100);
+
+        verify(pageRenderService, never()).prefetchPage(anyLong(), anyInt());
+        assertEquals(0, pagePrefetcher.getActiveSessions());
+    }
+}
@@ -0,0 +1,124 @@
+package org.example.booksfrog.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.example.booksfrog.dto.RenderedPage;
+import org.example.booksfrog.exception.PageOutOfRangeException;
+import org.example.booksfrog.util.PageImageCache;
+import org.example.booksfrog.util.PdfDocumentPool;
+import org.example.booksfrog.util.RenderExecutor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class PageRenderServiceTest {
+
+    @Mock
+    private BookService bookService;
+
+    private PageImageCache pageImageCache;
+
+    private PdfDocumentPool pdfDocumentPool;
+
+    private RenderExecutor renderExecutor;
+
+    private PageRenderService pageRenderService;
+
+    private byte[] pdfBytes;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        pageImageCache = new PageImageCache(16 * 1024 * 1024);
+        pdfDocumentPool = new PdfDocumentPool(16 * 1024 * 1024, 60_000, 2);
+        renderExecutor = new RenderExecutor(new SimpleMeterRegistry(), 2, 4, 10_000, 1);
+        pageRenderService = new PageRenderService(bookService, pageImageCache, pdfDocumentPool, renderExecutor, 20);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (PDDocument document = new PDDocument()) {
+            document.addPage(new PDPage());
+            document.addPage(new PDPage());
+            document.save(outputStream);
+        }
+        pdfBytes = outputStream.toByteArray();
+    }
+
+    @AfterEach
+    void tearDown() {
+        renderExecutor.shutdown();
+    }
+
+    @Test
+    void testRenderPage_RendersOnceThenServesFromCache() throws Exception {
+        when(bookService.getBookContentById(1L)).thenReturn(pdfBytes);
+
+        Optional<RenderedPage> first = pageRenderService.renderPage(1L, 1);
+        Optional<RenderedPage> second = pageRenderService.renderPage(1L, 1);
+
+        assertTrue(first.isPresent());
+        assertEquals(2, first.get().getTotalPages());
+        assertTrue(first.get().getImage().length > 0);
+        assertSame(first.get(), second.get());
+        verify(bookService, times(1)).getBookContentById(1L);
+    }
+
+    @Test
+    void testRenderPage_OtherPagesReuseTheOpenDocument() throws Exception {
+        when(bookService.getBookContentById(1L)).thenReturn(pdfBytes);
+
+        pageRenderService.renderPage(1L, 0);
+        pageRenderService.renderPage(1L, 1);
+
+        verify(bookService, times(1)).getBookContentById(1L);
+        assertEquals(1, pdfDocumentPool.getLoadCount());
+        assertEquals(1, pdfDocumentPool.getReuseCount());
+    }
+
+    @Test
+    void testRenderPage_RendersAgainAfterInvalidation() throws Exception {
+        when(bookService.getBookContentById(1L)).thenReturn(pdfBytes);
+
+        pageRenderService.renderPage(1L, 0);
+        pdfDocumentPool.invalidate(1L);
+        pageImageCache.invalidateBook(1L);
+        pageRenderService.renderPage(1L, 0);
+
+        verify(bookService, times(2)).getBookContentById(1L);
+    }
+
+    @Test
+    void testRenderPage_NoContent() throws Exception {
+        when(bookService.getBookContentById(1L)).thenReturn(null);
+
+        assertTrue(pageRenderService.renderPage(1L, 0).isEmpty());
+    }
+
+    @Test
+    void testRenderPage_PageOutOfRange() {
+        when(bookService.getBookContentById(1L)).thenReturn(pdfBytes);
+
+        assertThrows(PageOutOfRangeException.class, () -> pageRenderService.renderPage(1L, 2));
+    }
+
+    @Test
+    void testPrefetchPage_RendersIntoCacheWithoutTheRenderPool() throws Exception {
+        RenderExecutor requestPool = mock(RenderExecutor.class);
+        PageRenderService prefetching = new PageRenderService(bookService, pageImageCache, pdfDocumentPool,
+                requestPool, 20);
+        when(bookService.getBookContentById(1L)).thenReturn(pdfBytes);
+
+        prefetching.prefetchPage(1L, 1);
+
+        assertTrue(prefetching.isCached(1L, 1));
+        verifyNoInteractions(requestPool);
+    }
+}
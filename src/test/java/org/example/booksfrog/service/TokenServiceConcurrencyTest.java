@@ -0,0 +1,112 @@
+package org.example.booksfrog.service;
+
+import org.example.booksfrog.exception.InsufficientTokensException;
+import org.example.booksfrog.ledger.DatabaseTokenLedger;
+import org.example.booksfrog.model.Token;
+import org.example.booksfrog.model.User;
+import org.example.booksfrog.repository.TokenRepository;
+import org.example.booksfrog.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.datasource.url=jdbc:h2:mem:tokens;MODE=MySQL;NON_KEYWORDS=USER",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Import({TokenService.class, DatabaseTokenLedger.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // Each deduction commits on its own
+class TokenServiceConcurrencyTest {
+
+    private static final int BALANCE = 1000;
+
+    private static final int DEDUCTIONS = 4000;
+
+    @Autowired
+    private TokenService tokenService;
+
+    @Autowired
+    private TokenRepository tokenRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void testDeductTokens_ParallelDeductionsNeverOverdraw() throws Exception {
+        User user = userRepository.save(User.builder().username("reader").password("pw").isPremium(false).build());
+        tokenService.grantDailyTokens(user.getId()); // Creates the row, with the daily 50 due
+        tokenService.grantDailyTokens(user.getId());
+        tokenService.addTokens(user.getId(), BALANCE - 50);
+        assertEquals(BALANCE - 50, tokenRepository.findById(user.getId()).orElseThrow().getTotalTokens());
+        assertEquals(BALANCE, tokenService.getTotalTokens(user.getId()));
+
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<?>> deductions = new ArrayList<>();
+            for (int i = 0; i < DEDUCTIONS; i++) {
+                deductions.add(executor.submit(() -> {
+                    try {
+                        tokenService.deductTokens(user.getId(), 1);
+                        succeeded.incrementAndGet();
+                    } catch (InsufficientTokensException e) {
+                        rejected.incrementAndGet();
+                    }
+                }));
+            }
+            for (Future<?> deduction : deductions) {
+                deduction.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // Every token is spent exactly once, the daily ones included, and nothing is lost
+        assertEquals(BALANCE, succeeded.get());
+        assertEquals(DEDUCTIONS - BALANCE, rejected.get());
+        assertEquals(0, tokenRepository.findById(user.getId()).orElseThrow().getTotalTokens());
+        assertNotNull(tokenRepository.findById(user.getId()).orElseThrow().getLastReset());
+        assertEquals(0, tokenService.getTotalTokens(user.getId())); // Not due again until tomorrow
+
+        tokenService.addTokens(user.getId(), 7);
+        assertEquals(7, tokenRepository.findById(user.getId()).orElseThrow().getTotalTokens());
+    }
+
+    @Test
+    void testDeductTokens_GrantKeepsTheDailySchedule() {
+        User user = userRepository.save(User.builder().username("returning").password("pw").isPremium(false).build());
+        tokenService.grantDailyTokens(user.getId());
+        LocalDateTime lastReset = LocalDateTime.now().minusDays(2).minusHours(3).truncatedTo(ChronoUnit.SECONDS);
+        Token token = tokenRepository.findById(user.getId()).orElseThrow();
+        token.setLastReset(lastReset);
+        tokenRepository.save(token);
+        long countdown = tokenService.getTimeLeftForDailyToken(user.getId());
+
+        tokenService.deductTokens(user.getId(), 10);
+
+        // Taken two days late, the grant still counts from the day it was due, not from the debit
+        assertEquals(lastReset.plusDays(2), tokenRepository.findById(user.getId()).orElseThrow().getLastReset());
+        assertEquals(40, tokenService.getTotalTokens(user.getId()));
+        assertTrue(Math.abs(tokenService.getTimeLeftForDailyToken(user.getId()) - countdown) <= 1);
+    }
+}
@@ -0,0 +1,88 @@
+package org.example.booksfrog.service;
+
+import org.example.booksfrog.exception.InsufficientTokensException;
+import org.example.booksfrog.ledger.TokenLedger;
+import org.example.booksfrog.model.Token;
+import org.example.booksfrog.model.User;
+import org.example.booksfrog.repository.TokenRepository;
+import org.example.booksfrog.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class TokenServiceTest {
+
+    @Mock
+    private TokenRepository tokenRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private TokenLedger tokenLedger;
+
+    @InjectMocks
+    private TokenService tokenService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    void testDeductTokens_GoesThroughTheLedger() {
+        doThrow(new InsufficientTokensException("User ID 1 has insufficient tokens.")).when(tokenLedger).debit(1L, 5);
+
+        assertThrows(InsufficientTokensException.class, () -> tokenService.deductTokens(1L, 5));
+        verify(tokenRepository, never()).save(any());
+    }
+
+    @Test
+    void testGetTimeLeftForDailyToken() {
+        when(tokenLedger.lastReset(1L)).thenReturn(null);
+        when(tokenLedger.lastReset(2L)).thenReturn(LocalDateTime.now().minusHours(1));
+        when(tokenLedger.lastReset(3L)).thenReturn(LocalDateTime.now().minusHours(50));
+
+        // Due tokens are already in the balance, so the countdown is to the grant after them
+        assertEquals(24 * 3600, tokenService.getTimeLeftForDailyToken(1L), 1);
+        long timeLeft = tokenService.getTimeLeftForDailyToken(2L);
+        assertTrue(timeLeft > 22 * 3600 && timeLeft <= 23 * 3600);
+        timeLeft = tokenService.getTimeLeftForDailyToken(3L);
+        assertTrue(timeLeft > 21 * 3600 && timeLeft <= 22 * 3600); // A day after the due one, 48 hours on
+    }
+
+    @Test
+    void testGrantDailyTokens_CreatesMissingToken() {
+        User user = User.builder().id(1L).username("premium").password("pw").isPremium(true).build();
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        when(tokenRepository.existsById(1L)).thenReturn(false);
+
+        tokenService.grantDailyTokens(1L);
+
+        ArgumentCaptor<Token> captor = ArgumentCaptor.forClass(Token.class);
+        verify(tokenRepository).save(captor.capture());
+        assertEquals(0, captor.getValue().getTotalTokens());
+        assertEquals(100, captor.getValue().getDailyTokens());
+        assertNull(captor.getValue().getLastReset()); // The first daily tokens are due right away
+    }
+
+    @Test
+    void testGrantDailyTokens_NothingToWrite() {
+        when(tokenRepository.existsById(2L)).thenReturn(true);
+
+        tokenService.grantDailyTokens(2L);
+
+        verify(tokenRepository, never()).save(any());
+        verifyNoInteractions(userRepository, tokenLedger);
+    }
+}
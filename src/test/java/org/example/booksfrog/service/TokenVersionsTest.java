@@ -0,0 +1,74 @@
+package org.example.booksfrog.service;
+
+import org.example.booksfrog.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class TokenVersionsTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    private long now;
+
+    private TokenVersions tokenVersions;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        now = 1_000_000;
+        tokenVersions = new TokenVersions(userRepository, 30_000, 2, () -> now);
+    }
+
+    @Test
+    void testIsCurrent_CachedUntilTheTtl() {
+        when(userRepository.findTokenVersionById(1L)).thenReturn(Optional.of(0), Optional.of(1));
+
+        assertTrue(tokenVersions.isCurrent(1L, 0));
+        now += 29_000;
+        assertTrue(tokenVersions.isCurrent(1L, 0));
+        verify(userRepository, times(1)).findTokenVersionById(1L);
+
+        now += 1_000; // Revoked meanwhile on another instance
+        assertFalse(tokenVersions.isCurrent(1L, 0));
+        assertTrue(tokenVersions.isCurrent(1L, 1));
+    }
+
+    @Test
+    void testIsCurrent_DeletedUser() {
+        when(userRepository.findTokenVersionById(1L)).thenReturn(Optional.empty());
+
+        assertFalse(tokenVersions.isCurrent(1L, 0));
+    }
+
+    @Test
+    void testInvalidate_ReloadsAtOnce() {
+        when(userRepository.findTokenVersionById(1L)).thenReturn(Optional.of(0), Optional.of(1));
+        assertTrue(tokenVersions.isCurrent(1L, 0));
+
+        tokenVersions.invalidate(1L);
+
+        assertFalse(tokenVersions.isCurrent(1L, 0));
+    }
+
+    @Test
+    void testIsCurrent_BoundedCache() {
+        when(userRepository.findTokenVersionById(anyLong())).thenReturn(Optional.of(0));
+        tokenVersions.isCurrent(1L, 0);
+        tokenVersions.isCurrent(2L, 0);
+
+        tokenVersions.isCurrent(3L, 0); // Full of fresh entries: user 1, the least recently used, makes room
+        tokenVersions.isCurrent(3L, 0);
+        tokenVersions.isCurrent(1L, 0);
+
+        verify(userRepository, times(1)).findTokenVersionById(3L);
+        verify(userRepository, times(2)).findTokenVersionById(1L);
+    }
+}
@@ -7,7 +7,9 @@ import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
 
 import java.util.Optional;
 
@@ -19,6 +21,12 @@ class UserServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private TokenVersions tokenVersions;
+
+    @Spy
+    private PasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
+
     @InjectMocks
     private UserService userService;
 
@@ -79,6 +87,47 @@ class UserServiceTest {
         verify(userRepository, times(1)).save(any(User.class));
     }
 
+    @Test
+    void testUpdateUser_NewPasswordRevokesTokens() {
+        User existing = User.builder().id(1L).username("testuser").password("stored-hash").tokenVersion(2).build();
+        when(userRepository.findById(1L)).thenReturn(Optional.of(existing));
+        when(userRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        User updatedUser = userService.updateUser(User.builder().id(1L).password("newpassword").build());
+
+        assertTrue(passwordEncoder.matches("newpassword", updatedUser.getPassword()));
+        assertEquals(3, updatedUser.getTokenVersion());
+        verify(tokenVersions, times(1)).invalidate(1L);
+    }
+
+    @Test
+    void testUpdateUser_NewUsernameRevokesTokens() {
+        User existing = User.builder().id(1L).username("testuser").password("stored-hash").build();
+        when(userRepository.findById(1L)).thenReturn(Optional.of(existing));
+        when(userRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        User updatedUser = userService.updateUser(User.builder().id(1L).username("renamed").build());
+
+        assertEquals("renamed", updatedUser.getUsername());
+        assertEquals(1, updatedUser.getTokenVersion());
+        verify(tokenVersions, times(1)).invalidate(1L);
+    }
+
+    @Test
+    void testUpdateUser_OtherFieldsKeepTokens() {
+        User existing = User.builder().id(1L).username("testuser").password("stored-hash").tokenVersion(2).build();
+        when(userRepository.findById(1L)).thenReturn(Optional.of(existing));
+        when(userRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // As uploadUserImage does: the loaded user comes back with its stored hash and a new picture
+        User updatedUser = userService.updateUser(User.builder().id(1L).username("testuser")
+                .password("stored-hash").email("new@example.com").build());
+
+        assertEquals("stored-hash", updatedUser.getPassword());
+        assertEquals(2, updatedUser.getTokenVersion());
+        verifyNoInteractions(tokenVersions);
+    }
+
     @Test
     void testDeleteUser() {
         doNothing().when(userRepository).deleteById(1L);
@@ -86,6 +135,7 @@ class UserServiceTest {
         userService.deleteUser(1L);
 
         verify(userRepository, times(1)).deleteById(1L);
+        verify(tokenVersions, times(1)).invalidate(1L); // Its tokens stop working right away here
     }
 
     @Test
@@ -125,4 +175,21 @@ class UserServiceTest {
 
         assertFalse(userService.checkPassword(rawPassword, encodedPassword));
     }
-}
\ No newline at end of file
+
+    @Test
+    void testRevokeTokens() {
+        when(userRepository.incrementTokenVersion(1L)).thenReturn(1);
+
+        userService.revokeTokens(1L);
+
+        verify(tokenVersions, times(1)).invalidate(1L);
+    }
+
+    @Test
+    void testRevokeTokens_UserNotFound() {
+        when(userRepository.incrementTokenVersion(1L)).thenReturn(0);
+
+        assertThrows(RuntimeException.class, () -> userService.revokeTokens(1L));
+        verifyNoInteractions(tokenVersions);
+    }
+}
@@ -0,0 +1,103 @@
+package org.example.booksfrog.service;
+
+import org.example.booksfrog.search.BookSearchIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ViewCounterTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private BookSearchIndex bookSearchIndex;
+
+    private ViewCounter viewCounter;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        viewCounter = new ViewCounter(jdbcTemplate, bookSearchIndex);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<List<Object>> flushedUpdates() {
+        ArgumentCaptor<List<Object[]>> captor = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, atLeastOnce()).batchUpdate(anyString(), captor.capture());
+        List<List<Object>> updates = new ArrayList<>();
+        captor.getValue().forEach(args -> updates.add(List.of(args)));
+        return updates;
+    }
+
+    @Test
+    void testFlush_BatchesCountsPerBook() throws Exception {
+        List<Thread> readers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread reader = new Thread(() -> {
+                for (int view = 0; view < 1000; view++) {
+                    viewCounter.record(7L);
+                }
+            });
+            readers.add(reader);
+            reader.start();
+        }
+        viewCounter.record(3L);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        viewCounter.flush();
+
+        // One statement per book, in id order
+        assertEquals(List.of(List.of(1L, 3L), List.of(4000L, 7L)), flushedUpdates());
+        verify(bookSearchIndex).addViews(3L, 1L);
+        verify(bookSearchIndex).addViews(7L, 4000L);
+    }
+
+    @Test
+    void testFlush_NothingToWrite() {
+        viewCounter.flush();
+
+        verifyNoInteractions(jdbcTemplate, bookSearchIndex);
+    }
+
+    @Test
+    void testFlush_DropsIdleCounters() {
+        viewCounter.record(1L);
+        viewCounter.flush();
+        assertEquals(1, viewCounter.pendingBooks());
+
+        viewCounter.flush(); // Idle for a whole interval
+
+        assertEquals(0, viewCounter.pendingBooks());
+        verify(jdbcTemplate, times(1)).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    void testFlush_KeepsCountsWhenTheUpdateFails() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyList()))
+                .thenThrow(new DataAccessResourceFailureException("Database down"))
+                .thenReturn(new int[]{1});
+        viewCounter.record(5L);
+        viewCounter.record(5L);
+
+        viewCounter.flush();
+        viewCounter.record(5L);
+        viewCounter.flush();
+
+        assertEquals(List.of(List.of(3L, 5L)), flushedUpdates());
+        verify(bookSearchIndex, times(1)).addViews(anyLong(), anyLong()); // Only once the views are saved
+        verify(bookSearchIndex).addViews(5L, 3L);
+    }
+}
@@ -0,0 +1,70 @@
+package org.example.booksfrog.storage;
+
+import org.example.booksfrog.repository.BookContentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class BlobConsistencyCheckerTest {
+
+    @TempDir
+    Path root;
+
+    @Mock
+    private BookContentRepository bookContentRepository;
+
+    private FileSystemBlobStore blobStore;
+
+    private BlobConsistencyChecker checker;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        blobStore = new FileSystemBlobStore(root.toString());
+        checker = new BlobConsistencyChecker(blobStore, bookContentRepository, false);
+    }
+
+    @Test
+    void testCheck_Consistent() {
+        String content = blobStore.put(new byte[]{1, 2, 3});
+        String cover = blobStore.put(new byte[]{4, 5});
+        when(bookContentRepository.findReferencedContentHashes()).thenReturn(List.of(content));
+        when(bookContentRepository.findReferencedCoverHashes()).thenReturn(List.of(cover));
+
+        assertTrue(checker.check(true).isConsistent());
+    }
+
+    @Test
+    void testCheck_FindsMissingAndOrphanedBlobs() {
+        String orphan = blobStore.put(new byte[]{1, 2, 3});
+        String missing = ContentHash.sha256(new byte[]{7});
+        when(bookContentRepository.findReferencedContentHashes()).thenReturn(List.of(missing));
+        when(bookContentRepository.findReferencedCoverHashes()).thenReturn(List.of());
+
+        BlobConsistencyReport report = checker.check(false);
+
+        assertEquals(List.of(missing), report.getMissing());
+        assertEquals(List.of(orphan), report.getOrphaned());
+        assertTrue(report.getCorrupt().isEmpty());
+    }
+
+    @Test
+    void testCheck_FindsCorruptBlobsWhenVerifying() throws Exception {
+        String hash = blobStore.put(new byte[]{1, 2, 3});
+        Files.write(blobStore.localFile(hash).orElseThrow(), new byte[]{1, 2, 4});
+        when(bookContentRepository.findReferencedContentHashes()).thenReturn(List.of(hash));
+        when(bookContentRepository.findReferencedCoverHashes()).thenReturn(List.of());
+
+        assertTrue(checker.check(false).isConsistent());
+        assertEquals(List.of(hash), checker.check(true).getCorrupt());
+    }
+}
@@ -0,0 +1,98 @@
+package org.example.booksfrog.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileSystemBlobStoreTest {
+
+    @TempDir
+    Path root;
+
+    private FileSystemBlobStore blobStore;
+
+    private final byte[] data = "%PDF-1.4 test content".getBytes(StandardCharsets.US_ASCII);
+
+    @BeforeEach
+    void setUp() {
+        blobStore = new FileSystemBlobStore(root.toString());
+    }
+
+    @Test
+    void testPut_StoresUnderHashWithFanOut() {
+        String hash = blobStore.put(data);
+
+        assertEquals(ContentHash.sha256(data), hash);
+        Path file = root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+        assertTrue(Files.isRegularFile(file));
+        assertEquals(file, blobStore.localFile(hash).orElseThrow());
+        assertArrayEquals(data, blobStore.get(hash).orElseThrow());
+        assertEquals(data.length, blobStore.size(hash).orElseThrow());
+    }
+
+    @Test
+    void testPut_SameBytesAreStoredOnce() {
+        String first = blobStore.put(data);
+        String second = blobStore.put(data.clone());
+
+        assertEquals(first, second);
+        try (Stream<String> hashes = blobStore.hashes()) {
+            assertEquals(List.of(first), hashes.toList());
+        }
+    }
+
+    @Test
+    void testRead_ReturnsRangeAndStopsAtEnd() {
+        String hash = blobStore.put(data);
+
+        assertArrayEquals("PDF".getBytes(StandardCharsets.US_ASCII), blobStore.read(hash, 1, 3));
+        assertEquals(4, blobStore.read(hash, data.length - 4, 100).length);
+        assertEquals(0, blobStore.read(hash, data.length, 100).length);
+    }
+
+    @Test
+    void testMissingBlob() {
+        String hash = ContentHash.sha256(new byte[]{9});
+
+        assertFalse(blobStore.exists(hash));
+        assertTrue(blobStore.get(hash).isEmpty());
+        assertTrue(blobStore.size(hash).isEmpty());
+        assertTrue(blobStore.localFile(hash).isEmpty());
+    }
+
+    @Test
+    void testPathOf_RejectsNonHashNames() {
+        assertThrows(IllegalArgumentException.class, () -> blobStore.get("../../etc/passwd"));
+    }
+
+    @Test
+    void testDelete_InsideTransactionIsImmediate() {
+        String hash = blobStore.put(data);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            blobStore.delete(hash);
+
+            assertFalse(blobStore.exists(hash));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void testDelete_OutsideTransaction() {
+        String hash = blobStore.put(data);
+
+        blobStore.delete(hash);
+
+        assertFalse(blobStore.exists(hash));
+    }
+}
@@ -0,0 +1,143 @@
+package org.example.booksfrog.trending;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrendingTrackerTest {
+
+    private long now;
+
+    private TrendingTracker trendingTracker;
+
+    @BeforeEach
+    void setUp() {
+        now = Duration.ofDays(100).toMillis();
+        trendingTracker = new TrendingTracker(4, 256, 10, () -> now);
+    }
+
+    private void open(long bookId, int times) {
+        for (int i = 0; i < times; i++) {
+            trendingTracker.record(bookId);
+        }
+    }
+
+    @Test
+    void testTrending_MostOpenedFirst() {
+        open(1L, 5);
+        open(2L, 20);
+        open(3L, 10);
+
+        trendingTracker.refresh();
+
+        assertArrayEquals(new long[]{2L, 3L, 1L}, trendingTracker.trending(TrendingWindow.DAY, 10));
+        assertArrayEquals(new long[]{2L, 3L}, trendingTracker.trending(TrendingWindow.WEEK, 2));
+    }
+
+    @Test
+    void testTrending_ServesLastRefresh() {
+        open(1L, 3);
+
+        assertEquals(0, trendingTracker.trending(TrendingWindow.DAY, 10).length);
+
+        trendingTracker.refresh();
+
+        assertArrayEquals(new long[]{1L}, trendingTracker.trending(TrendingWindow.DAY, 10));
+    }
+
+    @Test
+    void testTrending_OldOpensExpire() {
+        open(1L, 50);
+        now += Duration.ofHours(12).toMillis();
+        open(2L, 5);
+
+        now += Duration.ofHours(13).toMillis(); // The opens of book 1 are now more than a day old
+        trendingTracker.refresh();
+
+        assertArrayEquals(new long[]{2L}, trendingTracker.trending(TrendingWindow.DAY, 10));
+        assertArrayEquals(new long[]{1L, 2L}, trendingTracker.trending(TrendingWindow.WEEK, 10));
+
+        now += Duration.ofDays(8).toMillis();
+        trendingTracker.refresh();
+
+        assertEquals(0, trendingTracker.trending(TrendingWindow.WEEK, 10).length);
+    }
+
+    @Test
+    void testTrending_FindsHeavyHittersAmongManyBooks() {
+        Random random = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            trendingTracker.record(1_000L + random.nextInt(50_000)); // Long tail of books opened once or twice
+        }
+        open(7L, 300);
+        open(8L, 200);
+        open(9L, 100);
+
+        trendingTracker.refresh();
+
+        long[] top = trendingTracker.trending(TrendingWindow.DAY, 3);
+        assertArrayEquals(new long[]{7L, 8L, 9L}, top);
+        assertEquals(10, trendingTracker.trending(TrendingWindow.DAY, 50).length); // Never more than the candidates
+    }
+
+    @Test
+    void testRecord_ConcurrentOpensAreAllCounted() throws Exception {
+        List<Thread> readers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread reader = new Thread(() -> {
+                open(1L, 1_000);
+                open(2L, 2_000);
+                for (long bookId = 100; bookId < 200; bookId++) {
+                    trendingTracker.record(bookId);
+                }
+            });
+            readers.add(reader);
+            reader.start();
+        }
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        trendingTracker.refresh();
+
+        assertArrayEquals(new long[]{2L, 1L}, trendingTracker.trending(TrendingWindow.DAY, 2));
+    }
+
+    @Test
+    void testSketch_ConcurrentAddsAreNotLost() throws Exception {
+        CountMinSketch sketch = new CountMinSketch(4, 64);
+        List<Thread> writers = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Thread writer = new Thread(() -> {
+                for (int add = 0; add < 10_000; add++) {
+                    sketch.add(5L, 1);
+                }
+            });
+            writers.add(writer);
+            writer.start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        assertEquals(80_000, sketch.estimate(5L));
+    }
+
+    @Test
+    void testSketch_NeverUndercounts() {
+        CountMinSketch sketch = new CountMinSketch(4, 64);
+        for (long key = 0; key < 1_000; key++) {
+            sketch.add(key, key % 7 + 1);
+        }
+
+        for (long key = 0; key < 1_000; key++) {
+            assertTrue(sketch.estimate(key) >= key % 7 + 1);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package org.example.booksfrog.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.booksfrog.exception.PasswordHashingOverloadedException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedPasswordEncoderTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private BoundedPasswordEncoder passwordEncoder;
+
+    private final CountDownLatch started = new CountDownLatch(1);
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    // Hashes "slow" only once released, to keep the hashing thread busy
+    private final PasswordEncoder blockingEncoder = new PasswordEncoder() {
+        @Override
+        public String encode(CharSequence rawPassword) {
+            if ("slow".contentEquals(rawPassword)) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return "hashed:" + rawPassword;
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return encode(rawPassword).equals(encodedPassword);
+        }
+    };
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        passwordEncoder = new BoundedPasswordEncoder(meterRegistry, 4, 1, 1, 5_000, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        passwordEncoder.shutdown();
+    }
+
+    @Test
+    void testEncodeAndMatches_RecordsLatency() {
+        String hash = passwordEncoder.encode("secret");
+
+        assertTrue(passwordEncoder.matches("secret", hash));
+        assertFalse(passwordEncoder.matches("other", hash));
+        assertEquals(1, meterRegistry.get("booksfrog.password.hash").tag("operation", "encode").timer().count());
+        assertEquals(2, meterRegistry.get("booksfrog.password.hash").tag("operation", "matches").timer().count());
+        assertEquals(3, meterRegistry.get("booksfrog.password.executor.wait").timer().count());
+    }
+
+    @Test
+    void testUpgradeEncoding_WhenCostFactorChanges() {
+        String hash = new BCryptPasswordEncoder(5).encode("secret");
+
+        assertTrue(passwordEncoder.upgradeEncoding(hash));
+        assertFalse(passwordEncoder.upgradeEncoding(passwordEncoder.encode("secret")));
+        assertFalse(passwordEncoder.upgradeEncoding("not a bcrypt hash"));
+        assertFalse(passwordEncoder.upgradeEncoding(null));
+    }
+
+    @Test
+    void testEncode_RejectsWhenQueueIsFull() throws Exception {
+        useBlockingEncoder(5_000);
+        startBackground("slow");
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        startBackground("queued"); // Takes the only queue slot
+        waitForQueueSize(1);
+
+        PasswordHashingOverloadedException thrown = assertThrows(PasswordHashingOverloadedException.class,
+                () -> passwordEncoder.encode("secret"));
+
+        assertEquals(2, thrown.getRetryAfterSeconds());
+        assertEquals(1.0, meterRegistry.get("booksfrog.password.executor.rejected")
+                .tag("reason", "queue_full").counter().count());
+    }
+
+    @Test
+    void testEncode_RejectsWhenWaitTimesOut() {
+        useBlockingEncoder(100);
+
+        assertThrows(PasswordHashingOverloadedException.class, () -> passwordEncoder.encode("slow"));
+
+        assertEquals(1.0, meterRegistry.get("booksfrog.password.executor.rejected")
+                .tag("reason", "timeout").counter().count());
+    }
+
+    private void useBlockingEncoder(long maxWaitMillis) {
+        passwordEncoder.shutdown();
+        meterRegistry = new SimpleMeterRegistry();
+        passwordEncoder = new BoundedPasswordEncoder(blockingEncoder, 4, meterRegistry, 1, 1, maxWaitMillis, 2);
+    }
+
+    // Hashes from another thread, since encode blocks the caller until the hash is done
+    private void startBackground(String rawPassword) {
+        Thread thread = new Thread(() -> {
+            try {
+                passwordEncoder.encode(rawPassword);
+            } catch (Exception ignored) {
+                // The test only cares about occupying the pool
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void waitForQueueSize(int size) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (queueSize() < size && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(size, queueSize());
+    }
+
+    private int queueSize() {
+        return (int) meterRegistry.get("booksfrog.password.executor.queue").gauge().value();
+    }
+}
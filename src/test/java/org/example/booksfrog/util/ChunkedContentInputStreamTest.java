@@ -0,0 +1,55 @@
+package org.example.booksfrog.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkedContentInputStreamTest {
+
+    private final byte[] content = new byte[10];
+
+    private final List<long[]> reads = new ArrayList<>();
+
+    private final ChunkedContentInputStream.ChunkReader reader = (offset, length) -> {
+        reads.add(new long[]{offset, length});
+        int end = (int) Math.min(content.length, offset + length);
+        return Arrays.copyOfRange(content, (int) offset, end);
+    };
+
+    ChunkedContentInputStreamTest() {
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+    }
+
+    @Test
+    void testReadsRangeInChunks() throws IOException {
+        InputStream stream = new ChunkedContentInputStream(reader, 2, 7, 3);
+
+        assertArrayEquals(new byte[]{2, 3, 4, 5, 6, 7, 8}, stream.readAllBytes());
+        assertEquals(3, reads.size());
+        assertArrayEquals(new long[]{8, 1}, reads.get(2));
+    }
+
+    @Test
+    void testSkipDoesNotReadSkippedChunks() throws IOException {
+        InputStream stream = new ChunkedContentInputStream(reader, 0, 10, 2);
+
+        assertEquals(8, stream.skip(8));
+        assertEquals(8, stream.read());
+        assertEquals(1, reads.size());
+    }
+
+    @Test
+    void testShortContentFails() {
+        InputStream stream = new ChunkedContentInputStream(reader, 5, 20, 4);
+
+        assertThrows(IOException.class, stream::readAllBytes);
+    }
+}
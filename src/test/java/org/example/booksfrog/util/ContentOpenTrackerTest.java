@@ -0,0 +1,49 @@
+package org.example.booksfrog.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContentOpenTrackerTest {
+
+    @Test
+    void testRegisterAccess_OnlyFirstAccessOpens() {
+        ContentOpenTracker tracker = new ContentOpenTracker(60_000);
+
+        assertTrue(tracker.registerAccess(1L, 10L, 1));
+        assertFalse(tracker.registerAccess(1L, 10L, 1));
+        assertTrue(tracker.registerAccess(2L, 10L, 1)); // Another reader
+        assertTrue(tracker.registerAccess(1L, 10L, 2)); // New version of the book
+    }
+
+    @Test
+    void testRegisterAccess_ExpiredOpen() throws InterruptedException {
+        ContentOpenTracker tracker = new ContentOpenTracker(10);
+
+        assertTrue(tracker.registerAccess(1L, 10L, 1));
+        Thread.sleep(30);
+
+        assertTrue(tracker.registerAccess(1L, 10L, 1));
+    }
+
+    @Test
+    void testForget() {
+        ContentOpenTracker tracker = new ContentOpenTracker(60_000);
+        tracker.registerAccess(1L, 10L, 1);
+
+        tracker.forget(1L, 10L, 1);
+
+        assertTrue(tracker.registerAccess(1L, 10L, 1));
+    }
+
+    @Test
+    void testEvictExpired() throws InterruptedException {
+        ContentOpenTracker tracker = new ContentOpenTracker(10);
+        tracker.registerAccess(1L, 10L, 1);
+        Thread.sleep(30);
+
+        tracker.evictExpired();
+
+        assertEquals(0, tracker.size());
+    }
+}
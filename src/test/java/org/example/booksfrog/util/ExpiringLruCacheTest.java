@@ -0,0 +1,54 @@
+package org.example.booksfrog.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpiringLruCacheTest {
+
+    private long now;
+
+    private ExpiringLruCache<String, String> cache;
+
+    @BeforeEach
+    void setUp() {
+        now = 1_000;
+        cache = new ExpiringLruCache<>(2, () -> now);
+    }
+
+    @Test
+    void testGet_UntilExpiry() {
+        cache.put("a", "1", 2_000);
+
+        now = 1_999;
+        assertEquals("1", cache.get("a"));
+
+        now = 2_000;
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testPut_EvictsLeastRecentlyUsedWhenFull() {
+        cache.put("a", "1", 5_000);
+        cache.put("b", "2", 5_000);
+        cache.get("a");
+
+        cache.put("c", "3", 5_000);
+
+        assertEquals(2, cache.size());
+        assertEquals("1", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals("3", cache.get("c"));
+    }
+
+    @Test
+    void testRemove() {
+        cache.put("a", "1", 5_000);
+
+        cache.remove("a");
+
+        assertNull(cache.get("a"));
+    }
+}
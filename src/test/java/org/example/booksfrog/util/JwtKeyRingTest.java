@@ -0,0 +1,97 @@
+package org.example.booksfrog.util;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SignatureException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtKeyRingTest {
+
+    private static final long DAY = Duration.ofDays(1).toMillis();
+
+    private static final long HOUR = Duration.ofHours(1).toMillis();
+
+    @TempDir
+    Path directory;
+
+    private long now = 100 * DAY;
+
+    private JwtKeyRing fileRing(boolean rotation) {
+        return new JwtKeyRing(null, directory.resolve("jwt-keys"), rotation, 7 * DAY, 12 * HOUR, 2 * 60_000,
+                () -> now);
+    }
+
+    private static String encoded(byte fill) {
+        byte[] secret = new byte[32];
+        Arrays.fill(secret, fill);
+        return Base64.getEncoder().encodeToString(secret);
+    }
+
+    @Test
+    void testConfiguredKeys_FirstSignsAllVerify() {
+        JwtKeyRing keyRing = new JwtKeyRing("new:" + encoded((byte) 1) + ", old:" + encoded((byte) 2), null,
+                false, 0, 0, 0, () -> now);
+        JwtUtil jwtUtil = new JwtUtil(keyRing, 100);
+        String oldToken = Jwts.builder().setHeaderParam("kid", "old").setSubject("reader")
+                .setExpiration(new Date(System.currentTimeMillis() + HOUR))
+                .signWith(keyRing.verificationKey("old").orElseThrow(), SignatureAlgorithm.HS256).compact();
+
+        assertEquals("new", keyRing.signingKey().id());
+        assertEquals("reader", jwtUtil.extractUsername(oldToken));
+        assertEquals("reader", jwtUtil.extractUsername(jwtUtil.generateToken("reader")));
+    }
+
+    @Test
+    void testKeyFile_SharedByInstances() {
+        JwtUtil first = new JwtUtil(fileRing(false), 100);
+        JwtUtil second = new JwtUtil(fileRing(false), 100); // Another instance, or the same one restarted
+
+        assertEquals("reader", second.extractUsername(first.generateToken("reader")));
+    }
+
+    @Test
+    void testVerify_RejectsUnknownKey() {
+        JwtUtil jwtUtil = new JwtUtil(fileRing(false), 100);
+        String forged = Jwts.builder().setHeaderParam("kid", "unknown").setSubject("reader")
+                .signWith(Keys.secretKeyFor(SignatureAlgorithm.HS256)).compact();
+
+        assertThrows(SignatureException.class, () -> jwtUtil.verify(forged));
+    }
+
+    @Test
+    void testRotation_PublishesAheadAndRetiresAfterTokensExpire() {
+        JwtKeyRing rotating = fileRing(true);
+        JwtKeyRing follower = fileRing(false);
+        String original = rotating.signingKey().id();
+        JwtUtil issuer = new JwtUtil(rotating, 100);
+        String token = issuer.generateToken("reader");
+
+        now += 7 * DAY;
+        rotating.refresh();
+        List<String> published = rotating.keyIds();
+        assertEquals(2, published.size());
+        assertEquals(original, rotating.signingKey().id()); // Not signing until every instance has it
+
+        follower.refresh();
+        assertEquals(published, follower.keyIds());
+
+        now += 2 * 60_000;
+        assertEquals(published.get(0), rotating.signingKey().id());
+        assertEquals("reader", new JwtUtil(follower, 100).extractUsername(token));
+
+        now += 12 * HOUR;
+        rotating.refresh();
+        assertEquals(List.of(published.get(0)), rotating.keyIds());
+    }
+}
@@ -2,13 +2,16 @@ package org.example.booksfrog.util;
 
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 
 import javax.crypto.SecretKey;
 import java.util.Date;
+import java.util.List;
 import java.util.function.Function;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -71,4 +74,55 @@ class JwtUtilTest {
         Claims claims = jwtUtil.extractClaim(token, Function.identity());
         assertEquals(username, claims.getSubject());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testVerify_ParsesEachTokenOnce() {
+        Claims first = jwtUtil.verify(token);
+        Claims second = jwtUtil.verify(token);
+
+        assertSame(first, second);
+        assertTrue(jwtUtil.validateToken(second, username));
+    }
+
+    @Test
+    void testVerify_RejectsTamperedTokenOfACachedOne() {
+        jwtUtil.verify(token);
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+
+        assertThrows(JwtException.class, () -> jwtUtil.verify(tampered));
+    }
+
+    @Test
+    void testVerify_CacheIsBounded() {
+        JwtUtil smallCache = new JwtUtil(2);
+        String mine = smallCache.generateToken(username);
+        String other = smallCache.generateToken("other");
+        String third = smallCache.generateToken("third");
+        Claims first = smallCache.verify(mine);
+        smallCache.verify(other);
+
+        // Full of live tokens: the least recently used one makes room
+        assertSame(smallCache.verify(third), smallCache.verify(third));
+        assertNotSame(first, smallCache.verify(mine));
+    }
+
+    @Test
+    void testToPrincipal_FromTokenClaims() {
+        CustomUserDetails user = new CustomUserDetails(42L, username, "hashed",
+                List.of(new SimpleGrantedAuthority("ROLE_READER")), true, 3);
+
+        CustomUserDetails principal = jwtUtil.toPrincipal(jwtUtil.verify(jwtUtil.generateToken(user)));
+
+        assertEquals(42L, principal.getId());
+        assertEquals(username, principal.getUsername());
+        assertTrue(principal.isPremium());
+        assertEquals(3, principal.getTokenVersion());
+        assertEquals("ROLE_READER", principal.getAuthorities().iterator().next().getAuthority());
+        assertNull(principal.getPassword());
+    }
+
+    @Test
+    void testToPrincipal_TokenWithoutDetails() {
+        assertNull(jwtUtil.toPrincipal(jwtUtil.verify(token)));
+    }
+}
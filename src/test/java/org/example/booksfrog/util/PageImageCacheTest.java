@@ -0,0 +1,83 @@
+package org.example.booksfrog.util;
+
+import org.example.booksfrog.dto.RenderedPage;
+import org.example.booksfrog.util.PageImageCache.PageKey;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PageImageCacheTest {
+
+    private PageImageCache cache;
+
+    @BeforeEach
+    void setUp() {
+        // Room for two 1000-byte pages plus their bookkeeping overhead, not three
+        cache = new PageImageCache(2500);
+    }
+
+    private static RenderedPage page(int size) {
+        return new RenderedPage(new byte[size], 10, "png");
+    }
+
+    @Test
+    void testGet_MissThenHit() {
+        PageKey key = new PageKey(1L, 0, 80, "png");
+        assertNull(cache.get(key));
+
+        RenderedPage rendered = page(1000);
+        assertTrue(cache.put(key, rendered, cache.generation(1L)));
+
+        assertSame(rendered, cache.get(key));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    void testPut_EvictsLeastRecentlyUsedWhenOverBudget() {
+        PageKey first = new PageKey(1L, 0, 80, "png");
+        PageKey second = new PageKey(1L, 1, 80, "png");
+        PageKey third = new PageKey(1L, 2, 80, "png");
+
+        cache.put(first, page(1000), 0);
+        cache.put(second, page(1000), 0);
+        cache.get(first); // first is now more recently used than second
+        cache.put(third, page(1000), 0);
+
+        assertNotNull(cache.get(first));
+        assertNull(cache.get(second));
+        assertNotNull(cache.get(third));
+        assertEquals(1, cache.getEvictionCount());
+        assertTrue(cache.getCurrentBytes() <= cache.getMaxBytes());
+    }
+
+    @Test
+    void testPut_RejectsEntryLargerThanBudget() {
+        assertFalse(cache.put(new PageKey(1L, 0, 80, "png"), page(5000), 0));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testInvalidateBook_RemovesOnlyThatBook() {
+        PageKey bookOne = new PageKey(1L, 0, 80, "png");
+        PageKey bookTwo = new PageKey(2L, 0, 80, "png");
+        cache.put(bookOne, page(100), 0);
+        cache.put(bookTwo, page(100), 0);
+
+        cache.invalidateBook(1L);
+
+        assertNull(cache.get(bookOne));
+        assertNotNull(cache.get(bookTwo));
+        assertEquals(1, cache.getInvalidationCount());
+    }
+
+    @Test
+    void testPut_IgnoresRenderStartedBeforeInvalidation() {
+        long generation = cache.generation(1L);
+        cache.invalidateBook(1L);
+
+        assertFalse(cache.put(new PageKey(1L, 0, 80, "png"), page(100), generation));
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,126 @@
+package org.example.booksfrog.util;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PdfDocumentPoolTest {
+
+    private byte[] pdfBytes;
+
+    private final AtomicInteger contentLoads = new AtomicInteger();
+
+    private Supplier<byte[]> loader;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (PDDocument document = new PDDocument()) {
+            document.addPage(new PDPage());
+            document.addPage(new PDPage());
+            document.addPage(new PDPage());
+            document.save(outputStream);
+        }
+        pdfBytes = outputStream.toByteArray();
+        loader = () -> {
+            contentLoads.incrementAndGet();
+            return pdfBytes;
+        };
+    }
+
+    @Test
+    void testBorrow_ReusesReturnedDocument() throws Exception {
+        PdfDocumentPool pool = new PdfDocumentPool(1024 * 1024, 60_000, 2);
+
+        PDDocument first;
+        try (PdfDocumentPool.Lease lease = pool.borrow(1L, loader)) {
+            first = lease.getDocument();
+        }
+        try (PdfDocumentPool.Lease lease = pool.borrow(1L, loader)) {
+            assertSame(first, lease.getDocument());
+        }
+
+        assertEquals(1, contentLoads.get());
+        assertEquals(1, pool.getIdleDocuments());
+    }
+
+    @Test
+    void testBorrow_ConcurrentBorrowersGetSeparateDocuments() throws Exception {
+        PdfDocumentPool pool = new PdfDocumentPool(1024 * 1024, 60_000, 2);
+
+        try (PdfDocumentPool.Lease first = pool.borrow(1L, loader);
+             PdfDocumentPool.Lease second = pool.borrow(1L, loader)) {
+            assertNotSame(first.getDocument(), second.getDocument());
+            assertEquals(2, pool.getOpenDocuments());
+        }
+        assertEquals(2, pool.getIdleDocuments());
+    }
+
+    @Test
+    void testBorrow_NoContent() throws Exception {
+        PdfDocumentPool pool = new PdfDocumentPool(1024 * 1024, 60_000, 2);
+
+        assertNull(pool.borrow(1L, () -> null));
+        assertNull(pool.borrow(1L, () -> new byte[0]));
+    }
+
+    @Test
+    void testRelease_EvictsLeastRecentlyUsedOverMemoryBudget() throws Exception {
+        // Budget fits a single document
+        PdfDocumentPool pool = new PdfDocumentPool(pdfBytes.length, 60_000, 2);
+
+        pool.borrow(1L, loader).close();
+        pool.borrow(2L, loader).close();
+
+        assertEquals(1, pool.getIdleDocuments());
+        assertTrue(pool.getOpenBytes() <= pdfBytes.length);
+
+        pool.borrow(2L, loader).close();
+        assertEquals(2, contentLoads.get()); // Book 2 is still open, book 1 was evicted
+    }
+
+    @Test
+    void testInvalidate_ClosesIdleAndDiscardsLentDocuments() throws Exception {
+        PdfDocumentPool pool = new PdfDocumentPool(1024 * 1024, 60_000, 2);
+        pool.borrow(1L, loader).close();
+        PdfDocumentPool.Lease lent = pool.borrow(1L, loader);
+
+        pool.invalidate(1L);
+        lent.close();
+
+        assertEquals(0, pool.getOpenDocuments());
+        pool.borrow(1L, loader).close();
+        assertEquals(2, contentLoads.get());
+    }
+
+    @Test
+    void testEvictIdle_ClosesDocumentsPastIdleTimeout() throws Exception {
+        PdfDocumentPool pool = new PdfDocumentPool(1024 * 1024, 0, 2);
+        pool.borrow(1L, loader).close();
+
+        Thread.sleep(5);
+        pool.evictIdle();
+
+        assertEquals(0, pool.getIdleDocuments());
+        assertEquals(0, pool.getOpenBytes());
+    }
+
+    @Test
+    void testGetPageCount_UsesIdleDocumentWhenAvailable() throws Exception {
+        PdfDocumentPool pool = new PdfDocumentPool(1024 * 1024, 60_000, 2);
+
+        assertEquals(3, pool.getPageCount(1L, loader));
+        assertEquals(0, pool.getIdleDocuments()); // Not pooled by a page count on its own
+
+        pool.borrow(1L, loader).close();
+        assertEquals(3, pool.getPageCount(1L, loader));
+        assertEquals(2, contentLoads.get());
+    }
+}
@@ -0,0 +1,140 @@
+package org.example.booksfrog.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.booksfrog.exception.RenderOverloadedException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenderExecutorTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private RenderExecutor renderExecutor;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        // One render thread and room for one waiting render
+        renderExecutor = new RenderExecutor(meterRegistry, 1, 1, 5_000, 3);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        renderExecutor.shutdown();
+    }
+
+    @Test
+    void testExecute_ReturnsResult() throws Exception {
+        assertEquals("page", renderExecutor.execute(() -> "page"));
+        assertEquals(1, meterRegistry.get("booksfrog.render.executor.render").timer().count());
+        assertEquals(1, meterRegistry.get("booksfrog.render.executor.wait").timer().count());
+    }
+
+    @Test
+    void testExecute_PropagatesRenderFailure() {
+        IOException thrown = assertThrows(IOException.class,
+                () -> renderExecutor.execute(() -> {
+                    throw new IOException("Broken PDF");
+                }));
+
+        assertEquals("Broken PDF", thrown.getMessage());
+    }
+
+    @Test
+    void testExecute_RejectsWhenQueueIsFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        startBackground(() -> {
+            started.countDown();
+            release.await();
+            return null;
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        startBackground(() -> null); // Takes the only queue slot
+        waitForQueueSize(1);
+
+        RenderOverloadedException thrown = assertThrows(RenderOverloadedException.class,
+                () -> renderExecutor.execute(() -> "page"));
+
+        assertEquals(3, thrown.getRetryAfterSeconds());
+        assertEquals(1.0, meterRegistry.get("booksfrog.render.executor.rejected")
+                .tag("reason", "queue_full").counter().count());
+    }
+
+    @Test
+    void testExecute_RejectsWhenWaitTimesOut() {
+        renderExecutor.shutdown();
+        renderExecutor = new RenderExecutor(meterRegistry, 1, 1, 100, 3);
+
+        assertThrows(RenderOverloadedException.class, () -> renderExecutor.execute(() -> {
+            awaitRelease();
+            return "page";
+        }));
+
+        assertEquals(1.0, meterRegistry.get("booksfrog.render.executor.rejected")
+                .tag("reason", "timeout").counter().count());
+    }
+
+    @Test
+    void testIsSaturated_WhileEveryThreadIsBusy() throws Exception {
+        assertFalse(renderExecutor.isSaturated());
+        CountDownLatch started = new CountDownLatch(1);
+        startBackground(() -> {
+            started.countDown();
+            release.await();
+            return null;
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        assertTrue(renderExecutor.isSaturated()); // No thread left, though nothing is queued
+        assertEquals(0, renderExecutor.getQueueSize());
+    }
+
+    private void awaitRelease() {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // Cancelled after the timeout
+        }
+    }
+
+    private interface BlockingTask {
+        Object call() throws Exception;
+    }
+
+    // Submits from another thread, since execute blocks the caller until the render is done
+    private void startBackground(BlockingTask task) {
+        Thread thread = new Thread(() -> {
+            try {
+                renderExecutor.execute(() -> {
+                    try {
+                        return task.call();
+                    } catch (Exception e) {
+                        return null;
+                    }
+                });
+            } catch (Exception ignored) {
+                // The test only cares about occupying the pool
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void waitForQueueSize(int size) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (renderExecutor.getQueueSize() < size && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(size, renderExecutor.getQueueSize());
+    }
+}